@@ -1,35 +1,144 @@
 package grpc.demo;
 
+import grpc.demo.interactions.InteractionConfiguration;
+import grpc.demo.interactions.InteractionEngine;
+import grpc.demo.interactions.InteractionReport;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.beans.factory.annotation.Qualifier;
 
-import java.util.Map;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @GrpcService
 public class DrugInteractionServiceImpl extends DrugInteractionServiceGrpc.DrugInteractionServiceImplBase {
 
-    private static final Map<String, List<String>> INTERACTION_DB = new HashMap<>();
+    // Партии до этого размера проверяются прямо в потоке gRPC: передача в пул дороже самой проверки
+    private static final int INLINE_BATCH = 16;
+    // Сколько запросов одного потока может быть в работе одновременно
+    private static final int STREAM_WINDOW = 32;
 
-    static {
-        INTERACTION_DB.put("warfarin", List.of("aspirin", "ibuprofen", "naproxen"));
-        INTERACTION_DB.put("simvastatin", List.of("clarithromycin", "itraconazole", "cyclosporine"));
-        INTERACTION_DB.put("digoxin", List.of("quinidine", "verapamil", "amiodarone"));
-        INTERACTION_DB.put("levothyroxine", List.of("calcium", "iron", "omeprazole"));
+    private final InteractionEngine interactionEngine;
+    private final ThreadPoolExecutor workers;
+
+    public DrugInteractionServiceImpl(InteractionEngine interactionEngine,
+                                      @Qualifier(InteractionConfiguration.WORKERS) ThreadPoolExecutor workers) {
+        this.interactionEngine = interactionEngine;
+        this.workers = workers;
     }
 
     @Override
     public void checkDrugInteraction(DrugInteractionRequest request,
                                      StreamObserver<DrugInteractionResponse> responseObserver) {
+        responseObserver.onNext(check(request));
+        responseObserver.onCompleted();
+    }
+
+    // Большая партия делится на части по числу потоков пула; ответ уходит, когда готовы все части
+    @Override
+    public void checkDrugInteractionsBatch(DrugInteractionBatchRequest request,
+                                           StreamObserver<DrugInteractionBatchResponse> responseObserver) {
+        List<DrugInteractionRequest> requests = request.getRequestsList();
+        int size = requests.size();
+        DrugInteractionResponse[] responses = new DrugInteractionResponse[size];
+        if (size <= INLINE_BATCH) {
+            checkRange(requests, responses, 0, size);
+            completeBatch(responseObserver, responses);
+            return;
+        }
+
+        int parts = Math.min(workers.getMaximumPoolSize(), (size + INLINE_BATCH - 1) / INLINE_BATCH);
+        int partSize = (size + parts - 1) / parts;
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[(size + partSize - 1) / partSize];
+        for (int part = 0, from = 0; from < size; part++, from += partSize) {
+            int start = from;
+            int end = Math.min(size, from + partSize);
+            futures[part] = CompletableFuture.runAsync(() -> checkRange(requests, responses, start, end), workers);
+        }
+        CompletableFuture.allOf(futures).whenComplete((ignored, error) -> {
+            if (error != null) {
+                responseObserver.onError(Status.INTERNAL
+                        .withDescription("Interaction check failed").withCause(error).asRuntimeException());
+            } else {
+                completeBatch(responseObserver, responses);
+            }
+        });
+    }
+
+    // Запросы потока проверяются в пуле параллельно, а ответы отправляются строго по порядку:
+    // каждый следующий ответ ждёт отправки предыдущего. Клиенту разрешено держать в работе
+    // не больше STREAM_WINDOW запросов — следующий запрашивается после отправки ответа
+    @Override
+    public StreamObserver<DrugInteractionRequest> checkDrugInteractionsStream(
+            StreamObserver<DrugInteractionResponse> responseObserver) {
+        ServerCallStreamObserver<DrugInteractionResponse> responses =
+                (ServerCallStreamObserver<DrugInteractionResponse>) responseObserver;
+        responses.disableAutoRequest();
+        responses.request(STREAM_WINDOW);
+
+        return new StreamObserver<>() {
+            // gRPC вызывает onNext/onCompleted последовательно, поэтому хвост цепочки без синхронизации
+            private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+            @Override
+            public void onNext(DrugInteractionRequest request) {
+                CompletableFuture<DrugInteractionResponse> result =
+                        CompletableFuture.supplyAsync(() -> check(request), workers);
+                tail = tail.thenCombine(result, (ignored, response) -> {
+                    responses.onNext(response);
+                    responses.request(1);
+                    return null;
+                });
+            }
 
+            @Override
+            public void onError(Throwable t) {
+                // Клиент отменил вызов: оставшиеся ответы отправлять некому
+            }
+
+            @Override
+            public void onCompleted() {
+                tail.whenComplete((ignored, error) -> {
+                    if (error == null) {
+                        responses.onCompleted();
+                    } else if (!responses.isCancelled()) {
+                        responses.onError(Status.INTERNAL
+                                .withDescription("Interaction check failed").withCause(error).asRuntimeException());
+                    }
+                });
+            }
+        };
+    }
+
+    private void checkRange(List<DrugInteractionRequest> requests, DrugInteractionResponse[] responses,
+                            int from, int to) {
+        for (int i = from; i < to; i++) {
+            responses[i] = check(requests.get(i));
+        }
+    }
+
+    private static void completeBatch(StreamObserver<DrugInteractionBatchResponse> responseObserver,
+                                      DrugInteractionResponse[] responses) {
+        responseObserver.onNext(DrugInteractionBatchResponse.newBuilder()
+                .addAllResponses(Arrays.asList(responses))
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    private DrugInteractionResponse check(DrugInteractionRequest request) {
         String drugName = request.getDrugName().toLowerCase();
-        List<String> contraindications = INTERACTION_DB.getOrDefault(drugName, List.of());
+        InteractionReport report = interactionEngine.check(
+                drugName, request.getConcurrentDrugsList(), request.getPatientAge());
+        List<String> contraindications = report.contraindications();
 
-        int riskLevel = calculateRiskLevel(drugName);
+        int riskLevel = report.riskLevel();
         String recommendation = generateRecommendation(riskLevel, contraindications);
 
-        DrugInteractionResponse response = DrugInteractionResponse.newBuilder()
+        return DrugInteractionResponse.newBuilder()
                 .setDrugId(request.getDrugId())
                 .setDrugName(drugName)
                 .setRiskLevel(riskLevel)
@@ -37,15 +146,6 @@ public class DrugInteractionServiceImpl extends DrugInteractionServiceGrpc.DrugI
                 .setRecommendation(recommendation)
                 .setSeverity(riskLevel > 7 ? "HIGH" : riskLevel > 4 ? "MEDIUM" : "LOW")
                 .build();
-
-        responseObserver.onNext(response);
-        responseObserver.onCompleted();
-    }
-
-    private int calculateRiskLevel(String drugName) {
-        // Имитация расчета уровня риска
-        int baseScore = Math.abs(drugName.hashCode() % 10);
-        return baseScore + 1; // 1-10
     }
 
     private String generateRecommendation(int riskLevel, List<String> contraindications) {
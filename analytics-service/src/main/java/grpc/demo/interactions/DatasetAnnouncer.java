@@ -0,0 +1,41 @@
+package grpc.demo.interactions;
+
+import edu.rutmiit.demo.events.InteractionDatasetChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+// Сообщает клиентам о версии набора данных: при запуске (перезапуск мог принести другой файл)
+// и после каждой перезагрузки с новым содержимым. Клиенты сбрасывают кэш результатов проверок.
+// Брокер недоступен — клиентский кэш устареет не дольше чем на свой TTL
+@Component
+public class DatasetAnnouncer {
+
+    private static final Logger log = LoggerFactory.getLogger(DatasetAnnouncer.class);
+
+    private final RabbitTemplate rabbitTemplate;
+    private final InteractionEngine interactionEngine;
+
+    public DatasetAnnouncer(RabbitTemplate rabbitTemplate, InteractionEngine interactionEngine) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.interactionEngine = interactionEngine;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void announceOnStartup() {
+        announce(interactionEngine.changedEvent());
+    }
+
+    @EventListener
+    public void announce(InteractionDatasetChangedEvent event) {
+        try {
+            rabbitTemplate.convertAndSend(InteractionConfiguration.DATASET_EXCHANGE, "", event);
+        } catch (AmqpException e) {
+            log.warn("Failed to announce interaction dataset {}: {}", event.datasetVersion(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package grpc.demo.interactions;
+
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Периодическая проверка файла с данными о взаимодействиях (InteractionEngine.reloadIfChanged)
+// пул для проверки партий и потоков запросов и exchange для объявлений о смене набора данных
+@Configuration
+@EnableScheduling
+public class InteractionConfiguration {
+
+    public static final String WORKERS = "interactionWorkers";
+    public static final String DATASET_EXCHANGE = "interactions-dataset";
+
+    // Очередь ограничена: при переполнении задачу выполняет поток gRPC, что притормаживает клиента
+    @Bean(name = WORKERS, destroyMethod = "shutdown")
+    public ThreadPoolExecutor interactionWorkers(@Value("${interactions.workers:0}") int workers) {
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1024),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "interaction-worker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Bean
+    public FanoutExchange datasetExchange() {
+        return new FanoutExchange(DATASET_EXCHANGE, true, false);
+    }
+
+    // События читают сервисы на Jackson: JSON, а не сериализация Java по умолчанию
+    @Bean
+    public MessageConverter messageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+}
@@ -0,0 +1,190 @@
+package grpc.demo.interactions;
+
+import edu.rutmiit.demo.events.InteractionDatasetChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Проверка взаимодействий по графу из файла interactions.dataset.
+// Запрос берёт текущий граф один раз и работает с ним до конца, поэтому перезагрузка
+// не блокирует и не ломает идущие RPC: новый граф строится целиком в фоне и подменяет
+// старый одной volatile-записью. Файл с ошибкой не применяется, остаётся прежний граф.
+// О смене содержимого сообщается событием InteractionDatasetChangedEvent (см. DatasetAnnouncer)
+@Component
+public class InteractionEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(InteractionEngine.class);
+
+    private static final int MAX_RISK = 10;
+
+    private final Resource dataset;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Timer checkTimer;
+    private final Counter reloads;
+    private final Counter reloadFailures;
+
+    private volatile Loaded current;
+    private volatile long loadedModified;
+
+    public InteractionEngine(@Value("${interactions.dataset:classpath:interactions.csv}") Resource dataset,
+                             MeterRegistry meterRegistry, ApplicationEventPublisher eventPublisher) {
+        this.dataset = dataset;
+        this.eventPublisher = eventPublisher;
+        this.loadedModified = lastModified();
+        this.current = load();
+        log.info("Loaded interaction graph {} from {}: {} drugs, {} pairs",
+                current.version(), dataset, current.graph().drugs(), current.graph().pairs());
+
+        Gauge.builder("analytics.interactions.drugs", this, engine -> engine.current.graph().drugs()).register(meterRegistry);
+        Gauge.builder("analytics.interactions.pairs", this, engine -> engine.current.graph().pairs()).register(meterRegistry);
+        this.checkTimer = Timer.builder("analytics.interactions.check")
+                .description("Pairwise check of one request against the interaction graph")
+                .register(meterRegistry);
+        this.reloads = Counter.builder("analytics.interactions.reloads").tag("result", "success")
+                .register(meterRegistry);
+        this.reloadFailures = Counter.builder("analytics.interactions.reloads").tag("result", "failure")
+                .register(meterRegistry);
+    }
+
+    // Проверяет все пары из препарата и сопутствующих препаратов.
+    // Без сопутствующих препаратов возвращает все известные взаимодействия препарата с риском 1.
+    // Пожилым (65+) и детям (до 12) риск найденных взаимодействий повышается на 1
+    public InteractionReport check(String drugName, List<String> concurrentDrugs, int patientAge) {
+        long start = System.nanoTime();
+        InteractionGraph snapshot = current.graph();
+        String primary = InteractionGraph.normalize(drugName);
+        int primaryId = snapshot.idOf(primary);
+
+        InteractionReport report;
+        if (concurrentDrugs.isEmpty()) {
+            report = new InteractionReport(1, knownInteractions(snapshot, primaryId));
+        } else {
+            Set<String> distinct = new LinkedHashSet<>();
+            distinct.add(primary);
+            for (String concurrent : concurrentDrugs) {
+                distinct.add(InteractionGraph.normalize(concurrent));
+            }
+            String[] names = distinct.toArray(String[]::new);
+            int[] ids = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                ids[i] = snapshot.idOf(names[i]);
+            }
+
+            int maxRisk = 0;
+            List<String> contraindications = new ArrayList<>();
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == InteractionGraph.NOT_FOUND) {
+                    continue;
+                }
+                for (int j = i + 1; j < ids.length; j++) {
+                    int risk = ids[j] == InteractionGraph.NOT_FOUND ? 0 : snapshot.risk(ids[i], ids[j]);
+                    if (risk > 0) {
+                        maxRisk = Math.max(maxRisk, risk);
+                        contraindications.add(i == 0 ? names[j] : names[i] + " + " + names[j]);
+                    }
+                }
+            }
+            if (maxRisk > 0 && (patientAge >= 65 || (patientAge > 0 && patientAge < 12))) {
+                maxRisk = Math.min(maxRisk + 1, MAX_RISK);
+            }
+            report = new InteractionReport(Math.max(maxRisk, 1), contraindications);
+        }
+        checkTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return report;
+    }
+
+    @Scheduled(fixedDelayString = "${interactions.reload-interval:30s}",
+            initialDelayString = "${interactions.reload-interval:30s}")
+    public void reloadIfChanged() {
+        long modified = lastModified();
+        if (modified == loadedModified) {
+            return;
+        }
+        try {
+            Loaded loaded = load();
+            Loaded previous = current;
+            current = loaded;
+            loadedModified = modified;
+            reloads.increment();
+            log.info("Reloaded interaction graph {} from {}: {} drugs, {} pairs",
+                    loaded.version(), dataset, loaded.graph().drugs(), loaded.graph().pairs());
+            if (!loaded.version().equals(previous.version())) {
+                eventPublisher.publishEvent(changedEvent());
+            }
+        } catch (RuntimeException e) {
+            // Повторим, только когда файл снова изменится
+            loadedModified = modified;
+            reloadFailures.increment();
+            log.error("Failed to reload interaction graph from {}, keeping the previous one", dataset, e);
+        }
+    }
+
+    public InteractionDatasetChangedEvent changedEvent() {
+        Loaded loaded = current;
+        return new InteractionDatasetChangedEvent(
+                loaded.version(), loaded.graph().drugs(), loaded.graph().pairs());
+    }
+
+    private static List<String> knownInteractions(InteractionGraph graph, int id) {
+        if (id == InteractionGraph.NOT_FOUND) {
+            return List.of();
+        }
+        // Сначала самые опасные
+        int degree = graph.degree(id);
+        long[] byRisk = new long[degree];
+        for (int i = 0; i < degree; i++) {
+            byRisk[i] = ((long) (MAX_RISK - graph.neighborRisk(id, i)) << 32) | graph.neighbor(id, i);
+        }
+        Arrays.sort(byRisk);
+        List<String> names = new ArrayList<>(degree);
+        for (long entry : byRisk) {
+            names.add(graph.nameOf((int) entry));
+        }
+        return names;
+    }
+
+    private Loaded load() {
+        try (InputStream in = dataset.getInputStream()) {
+            byte[] content = in.readAllBytes();
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            InteractionGraph graph = InteractionGraph.parse(
+                    new StringReader(new String(content, StandardCharsets.UTF_8)));
+            return new Loaded(graph, String.format("%08x", crc.getValue()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read interaction dataset " + dataset, e);
+        }
+    }
+
+    private long lastModified() {
+        try {
+            return dataset.lastModified();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // Граф и версия меняются вместе одной записью
+    private record Loaded(InteractionGraph graph, String version) {}
+}
@@ -0,0 +1,175 @@
+package grpc.demo.interactions;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Неизменяемый граф попарных взаимодействий препаратов.
+// Названия интернированы в int-идентификаторы, смежность — в CSR: соседи препарата i лежат
+// в neighbors[offsets[i] .. offsets[i + 1]) по возрастанию, риск ребра — в weights по тому же индексу.
+// Проверка пары — двоичный поиск в строке препарата, без объектов и упаковки
+public final class InteractionGraph {
+
+    public static final int NOT_FOUND = -1;
+
+    private final String[] names;
+    private final Map<String, Integer> ids;
+    private final int[] offsets;
+    private final int[] neighbors;
+    private final byte[] weights;
+
+    private InteractionGraph(String[] names, Map<String, Integer> ids, int[] offsets, int[] neighbors,
+                             byte[] weights) {
+        this.names = names;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.weights = weights;
+    }
+
+    // Строки вида «препарат_a,препарат_b,риск» (риск 1–10); пустые строки и строки с # пропускаются.
+    // Связь симметрична; повтор пары оставляет наибольший риск
+    public static InteractionGraph parse(Reader source) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        int[] from = new int[64];
+        int[] to = new int[64];
+        byte[] risk = new byte[64];
+        int edges = 0;
+
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split(",");
+            if (columns.length != 3) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected drug_a,drug_b,risk");
+            }
+            int a = intern(normalize(columns[0]), ids, names);
+            int b = intern(normalize(columns[1]), ids, names);
+            int weight;
+            try {
+                weight = Integer.parseInt(columns[2].strip());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": risk is not a number", e);
+            }
+            if (a == b || weight < 1 || weight > 10) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": invalid pair or risk");
+            }
+            if (edges + 2 > from.length) {
+                from = Arrays.copyOf(from, from.length * 2);
+                to = Arrays.copyOf(to, to.length * 2);
+                risk = Arrays.copyOf(risk, risk.length * 2);
+            }
+            from[edges] = a;
+            to[edges] = b;
+            risk[edges++] = (byte) weight;
+            from[edges] = b;
+            to[edges] = a;
+            risk[edges++] = (byte) weight;
+        }
+        return build(names.toArray(String[]::new), ids, from, to, risk, edges);
+    }
+
+    public static String normalize(String name) {
+        return name.strip().toLowerCase(Locale.ROOT);
+    }
+
+    // Идентификатор препарата или NOT_FOUND; name должен быть нормализован
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        return id == null ? NOT_FOUND : id;
+    }
+
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    // Риск взаимодействия пары или 0, если взаимодействие неизвестно
+    public int risk(int a, int b) {
+        int index = Arrays.binarySearch(neighbors, offsets[a], offsets[a + 1], b);
+        return index < 0 ? 0 : weights[index];
+    }
+
+    public int degree(int id) {
+        return offsets[id + 1] - offsets[id];
+    }
+
+    public int neighbor(int id, int index) {
+        return neighbors[offsets[id] + index];
+    }
+
+    public int neighborRisk(int id, int index) {
+        return weights[offsets[id] + index];
+    }
+
+    public int drugs() {
+        return names.length;
+    }
+
+    public int pairs() {
+        return neighbors.length / 2;
+    }
+
+    private static int intern(String name, Map<String, Integer> ids, List<String> names) {
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Empty drug name");
+        }
+        return ids.computeIfAbsent(name, key -> {
+            names.add(key);
+            return names.size() - 1;
+        });
+    }
+
+    private static InteractionGraph build(String[] names, Map<String, Integer> ids,
+                                          int[] from, int[] to, byte[] risk, int edges) {
+        int drugs = names.length;
+        // Рёбра строки упаковываются в long (сосед << 8 | риск) и сортируются по соседу
+        int[] degree = new int[drugs + 1];
+        for (int i = 0; i < edges; i++) {
+            degree[from[i] + 1]++;
+        }
+        for (int i = 0; i < drugs; i++) {
+            degree[i + 1] += degree[i];
+        }
+        long[] packed = new long[edges];
+        int[] fill = Arrays.copyOf(degree, drugs);
+        for (int i = 0; i < edges; i++) {
+            packed[fill[from[i]]++] = ((long) to[i] << 8) | risk[i];
+        }
+
+        int[] offsets = new int[drugs + 1];
+        int[] neighbors = new int[edges];
+        byte[] weights = new byte[edges];
+        int size = 0;
+        for (int drug = 0; drug < drugs; drug++) {
+            offsets[drug] = size;
+            Arrays.sort(packed, degree[drug], degree[drug + 1]);
+            for (int i = degree[drug]; i < degree[drug + 1]; i++) {
+                int neighbor = (int) (packed[i] >>> 8);
+                byte weight = (byte) (packed[i] & 0xFF);
+                if (size > offsets[drug] && neighbors[size - 1] == neighbor) {
+                    // Отсортировано и по риску, поэтому последний повтор пары — с наибольшим риском
+                    weights[size - 1] = weight;
+                } else {
+                    neighbors[size] = neighbor;
+                    weights[size++] = weight;
+                }
+            }
+        }
+        offsets[drugs] = size;
+        return new InteractionGraph(names, Map.copyOf(ids), offsets,
+                Arrays.copyOf(neighbors, size), Arrays.copyOf(weights, size));
+    }
+}
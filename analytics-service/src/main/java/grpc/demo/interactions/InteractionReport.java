@@ -0,0 +1,7 @@
+package grpc.demo.interactions;
+
+import java.util.List;
+
+// Итог проверки: наибольший риск среди найденных пар (1, если взаимодействий нет)
+// и найденные противопоказания в порядке проверки
+public record InteractionReport(int riskLevel, List<String> contraindications) {}
@@ -0,0 +1,117 @@
+package grpc.demo;
+
+import grpc.demo.interactions.InteractionConfiguration;
+import grpc.demo.interactions.InteractionEngine;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DrugInteractionServiceImplTests {
+
+    private static final String DATASET = """
+            warfarin,aspirin,9
+            warfarin,ibuprofen,8
+            levothyroxine,calcium,4
+            """;
+
+    private final ThreadPoolExecutor workers = new InteractionConfiguration().interactionWorkers(4);
+    private Server server;
+    private ManagedChannel channel;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        InteractionEngine engine = new InteractionEngine(new ByteArrayResource(DATASET.getBytes(StandardCharsets.UTF_8)),
+                new SimpleMeterRegistry(), event -> { });
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .addService(new DrugInteractionServiceImpl(engine, workers))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+    }
+
+    @AfterEach
+    void stopServer() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        workers.shutdown();
+    }
+
+    @Test
+    void batchAnswersEveryRequestInOrder() {
+        DrugInteractionBatchRequest.Builder batch = DrugInteractionBatchRequest.newBuilder();
+        for (int i = 0; i < 100; i++) {
+            batch.addRequests(request(i, i % 2 == 0 ? "warfarin" : "levothyroxine",
+                    i % 2 == 0 ? "aspirin" : "calcium"));
+        }
+
+        List<DrugInteractionResponse> responses = DrugInteractionServiceGrpc.newBlockingStub(channel)
+                .checkDrugInteractionsBatch(batch.build())
+                .getResponsesList();
+
+        assertThat(responses).extracting(DrugInteractionResponse::getDrugId)
+                .containsExactlyElementsOf(IntStream.range(0, 100).mapToObj(Long::valueOf).toList());
+        assertThat(responses.get(0).getRiskLevel()).isEqualTo(9);
+        assertThat(responses.get(1).getRiskLevel()).isEqualTo(4);
+    }
+
+    @Test
+    void streamAnswersEveryRequestInOrder() {
+        List<DrugInteractionResponse> received = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        StreamObserver<DrugInteractionRequest> requests = DrugInteractionServiceGrpc.newStub(channel)
+                .checkDrugInteractionsStream(new StreamObserver<>() {
+                    @Override
+                    public void onNext(DrugInteractionResponse response) {
+                        received.add(response);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        done.completeExceptionally(t);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        done.complete(null);
+                    }
+                });
+        for (int i = 0; i < 200; i++) {
+            requests.onNext(request(i, "warfarin", i % 3 == 0 ? "ibuprofen" : "paracetamol"));
+        }
+        requests.onCompleted();
+
+        done.orTimeout(10, TimeUnit.SECONDS).join();
+        assertThat(received).extracting(DrugInteractionResponse::getDrugId)
+                .containsExactlyElementsOf(IntStream.range(0, 200).mapToObj(Long::valueOf).toList());
+        assertThat(received.get(0).getContraindicationsList()).containsExactly("ibuprofen");
+        assertThat(received.get(1).getRiskLevel()).isEqualTo(1);
+    }
+
+    private static DrugInteractionRequest request(long id, String drug, String concurrent) {
+        return DrugInteractionRequest.newBuilder()
+                .setDrugId(id)
+                .setDrugName(drug)
+                .addConcurrentDrugs(concurrent)
+                .setPatientAge(40)
+                .build();
+    }
+}
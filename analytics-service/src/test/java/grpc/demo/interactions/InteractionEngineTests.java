@@ -0,0 +1,101 @@
+package grpc.demo.interactions;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InteractionEngineTests {
+
+    @TempDir
+    Path directory;
+
+    private final List<Object> published = new ArrayList<>();
+
+    @Test
+    void buildsSymmetricGraphKeepingHighestRiskOfRepeatedPair() throws IOException {
+        InteractionGraph graph = InteractionGraph.parse(new StringReader("""
+                # comment
+                Warfarin, Aspirin ,9
+                warfarin,ibuprofen,8
+                aspirin,warfarin,5
+                digoxin,verapamil,7
+                """));
+
+        int warfarin = graph.idOf("warfarin");
+        int aspirin = graph.idOf("aspirin");
+        assertThat(graph.drugs()).isEqualTo(5);
+        assertThat(graph.pairs()).isEqualTo(3);
+        assertThat(graph.risk(warfarin, aspirin)).isEqualTo(9);
+        assertThat(graph.risk(aspirin, warfarin)).isEqualTo(9);
+        assertThat(graph.risk(aspirin, graph.idOf("digoxin"))).isZero();
+        assertThat(graph.idOf("paracetamol")).isEqualTo(InteractionGraph.NOT_FOUND);
+        assertThatThrownBy(() -> InteractionGraph.parse(new StringReader("warfarin,aspirin,11")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void checksAllPairsOfConcurrentDrugs() throws IOException {
+        InteractionEngine engine = engine("""
+                warfarin,aspirin,9
+                warfarin,ibuprofen,8
+                aspirin,ibuprofen,4
+                levothyroxine,calcium,4
+                """);
+
+        InteractionReport report = engine.check("Warfarin", List.of("Ibuprofen", "aspirin", "unknown"), 40);
+        assertThat(report.riskLevel()).isEqualTo(9);
+        assertThat(report.contraindications()).containsExactly("ibuprofen", "aspirin", "ibuprofen + aspirin");
+
+        assertThat(engine.check("levothyroxine", List.of("calcium"), 70).riskLevel()).isEqualTo(5);
+        assertThat(engine.check("levothyroxine", List.of("warfarin"), 70))
+                .isEqualTo(new InteractionReport(1, List.of()));
+        // Без сопутствующих препаратов — все известные взаимодействия, самые опасные первыми
+        assertThat(engine.check("warfarin", List.of(), 40).contraindications())
+                .containsExactly("aspirin", "ibuprofen");
+    }
+
+    @Test
+    void reloadsChangedDatasetAndKeepsPreviousGraphOnError() throws IOException {
+        InteractionEngine engine = engine("warfarin,aspirin,9\n");
+        String initialVersion = engine.changedEvent().datasetVersion();
+
+        write("warfarin,aspirin,9\nwarfarin,ibuprofen,8\n", 1);
+        engine.reloadIfChanged();
+        assertThat(engine.check("warfarin", List.of("ibuprofen"), 0).riskLevel()).isEqualTo(8);
+        assertThat(published).containsExactly(engine.changedEvent());
+        assertThat(engine.changedEvent().datasetVersion()).isNotEqualTo(initialVersion);
+
+        // Только дата изменения: содержимое то же, объявлять нечего
+        write("warfarin,aspirin,9\nwarfarin,ibuprofen,8\n", 2);
+        engine.reloadIfChanged();
+        write("warfarin,aspirin\n", 3);
+        engine.reloadIfChanged();
+        assertThat(engine.check("warfarin", List.of("ibuprofen"), 0).riskLevel()).isEqualTo(8);
+        assertThat(published).hasSize(1);
+    }
+
+    private InteractionEngine engine(String dataset) throws IOException {
+        write(dataset, 0);
+        return new InteractionEngine(new FileSystemResource(directory.resolve("interactions.csv")),
+                new SimpleMeterRegistry(), published::add);
+    }
+
+    private void write(String dataset, int version) throws IOException {
+        Path file = directory.resolve("interactions.csv");
+        Files.writeString(file, dataset);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2026-10-01T00:00:00Z").plusSeconds(version)));
+    }
+}
@@ -0,0 +1,73 @@
+package edu.rutmiit.demo.audit_service.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.rutmiit.demo.audit_service.store.AuditEventType;
+import edu.rutmiit.demo.audit_service.store.AuditQuery;
+import edu.rutmiit.demo.audit_service.store.AuditStore;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+
+// Выборка из хранилища аудита, например:
+// /api/audit/events?type=MEDICATION_CREATED&prescriptionRequired=true&from=2026-10-11T00:00:00Z
+// /api/audit/events?type=INTERACTION_CHECKED&severity=HIGH&medicationId=42
+// Результат отдаётся в NDJSON по мере чтения сегментов, без накопления в памяти
+@RestController
+@RequestMapping("/api/audit")
+public class AuditQueryController {
+
+    private final AuditStore auditStore;
+    private final ObjectMapper objectMapper;
+
+    public AuditQueryController(AuditStore auditStore, ObjectMapper objectMapper) {
+        this.auditStore = auditStore;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping(value = "/events", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> findEvents(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) AuditEventType type,
+            @RequestParam(required = false) Long medicationId,
+            @RequestParam(required = false) String severity,
+            @RequestParam(required = false) Boolean prescriptionRequired,
+            @RequestParam(required = false) Long limit) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Параметр from должен быть раньше to");
+        }
+        if (limit != null && limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Параметр limit должен быть положительным");
+        }
+        AuditQuery query = new AuditQuery(from, to, type, medicationId,
+                severity == null || severity.isBlank() ? null : severity, prescriptionRequired,
+                limit == null ? Long.MAX_VALUE : limit);
+
+        StreamingResponseBody body = out -> {
+            try {
+                auditStore.query(query, record -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(record));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+}
@@ -1,49 +1,141 @@
 package edu.rutmiit.demo.audit_service.listeners;
 
+import edu.rutmiit.demo.audit_service.store.AuditRecord;
+import edu.rutmiit.demo.audit_service.store.AuditStore;
+import edu.rutmiit.demo.events.EventHeaders;
 import edu.rutmiit.demo.events.MedicationCreatedEvent;
 import edu.rutmiit.demo.events.DrugInteractionCheckedEvent;
+import edu.rutmiit.demo.events.RecentEventIds;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.annotation.Exchange;
-import org.springframework.amqp.rabbit.annotation.Queue;
-import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
+// События читаются партиями (см. RabbitMQConfig.auditBatchContainerFactory): партия целиком
+// записывается в хранилище аудита, и только после этого контейнер подтверждает её брокеру.
+// Уже записанные события (повтор партии отправителем, возврат партии в очередь) пропускаются
+// по заголовку event-id. Идентификаторы захватываются атомарно до записи, поэтому копия, которую
+// параллельный потребитель получил во время записи оригинала, не запишется второй раз;
+// если запись не удалась, захват снимается и повторная доставка будет записана.
+// Сообщения разбираются по одному: неразборчивое уходит в DLQ своей очереди, а не валит всю партию
 @Component
 public class MedicationEventListener {
 
     private static final Logger log = LoggerFactory.getLogger(MedicationEventListener.class);
 
-    // Слушаем создание препарата из medications-exchange
-    @RabbitListener(bindings = @QueueBinding(
-            value = @Queue(name = "medication-audit-queue", durable = "true"),
-            exchange = @Exchange(name = "medications-exchange", type = "topic"),
-            key = "medication.created"
-    ))
-    public void handleMedicationCreatedEvent(MedicationCreatedEvent event) {
-        log.info("АУДИТ: Создано новое лекарство: ID={}, Название={}, МНН={}, Рецептурный={}",
-                event.medicationId(), event.medicationName(), event.inn(), event.prescriptionRequired());
-
-        if (event.prescriptionRequired()) {
-            log.warn("ВНИМАНИЕ: Создан рецептурный препарат {}. Требуется усиленный контроль.",
-                    event.medicationName());
+    static final String DEAD_LETTER_REASON = "x-audit-error";
+
+    private final AuditStore auditStore;
+    private final RecentEventIds recentEventIds;
+    private final MessageConverter messageConverter;
+    private final RabbitTemplate rabbitTemplate;
+
+    public MedicationEventListener(AuditStore auditStore, RecentEventIds recentEventIds,
+                                   MessageConverter messageConverter, RabbitTemplate rabbitTemplate) {
+        this.auditStore = auditStore;
+        this.recentEventIds = recentEventIds;
+        this.messageConverter = messageConverter;
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    // Слушаем создание препарата из medications-exchange (очередь и биндинг — в RabbitMQConfig)
+    @RabbitListener(queues = RabbitMQConfig.MEDICATION_AUDIT_QUEUE,
+            containerFactory = RabbitMQConfig.BATCH_CONTAINER_FACTORY)
+    public void handleMedicationCreatedEvents(List<Message> messages) {
+        List<Received<MedicationCreatedEvent>> fresh = withoutDuplicates(
+                decode(messages, MedicationCreatedEvent.class, RabbitMQConfig.MEDICATION_AUDIT_QUEUE));
+        List<MedicationCreatedEvent> events = fresh.stream().map(Received::event).toList();
+        append(fresh, events.stream().map(AuditRecord::medicationCreated).toList());
+        log.info("АУДИТ: Записано событий создания лекарств: {}", events.size());
+
+        for (MedicationCreatedEvent event : events) {
+            if (event.prescriptionRequired()) {
+                log.warn("ВНИМАНИЕ: Создан рецептурный препарат {}. Требуется усиленный контроль.",
+                        event.medicationName());
+            }
+        }
+    }
+
+    // Слушаем проверку взаимодействий из interactions-exchange (очередь и биндинг — в RabbitMQConfig)
+    @RabbitListener(queues = RabbitMQConfig.INTERACTION_AUDIT_QUEUE,
+            containerFactory = RabbitMQConfig.BATCH_CONTAINER_FACTORY)
+    public void handleInteractionCheckedEvents(List<Message> messages) {
+        List<Received<DrugInteractionCheckedEvent>> fresh = withoutDuplicates(
+                decode(messages, DrugInteractionCheckedEvent.class, RabbitMQConfig.INTERACTION_AUDIT_QUEUE));
+        List<DrugInteractionCheckedEvent> events = fresh.stream().map(Received::event).toList();
+        append(fresh, events.stream().map(AuditRecord::interactionChecked).toList());
+        log.info("АУДИТ: Записано проверок взаимодействий: {}", events.size());
+
+        for (DrugInteractionCheckedEvent event : events) {
+            if ("HIGH".equals(event.severity()) || event.riskLevel() > 7) {
+                log.error("КРИТИЧЕСКОЕ ВЗАИМОДЕЙСТВИЕ: {} — {}",
+                        event.medicationName(), event.recommendation());
+            }
         }
     }
 
-    // Слушаем проверку взаимодействий из interactions-exchange ← ИСПРАВЛЕНО!
-    @RabbitListener(bindings = @QueueBinding(
-            value = @Queue(name = "interaction-audit-queue", durable = "true"),
-            exchange = @Exchange(name = "interactions-exchange", type = "topic"), // ← БЫЛО medications-exchange!
-            key = "interaction.checked"
-    ))
-    public void handleInteractionCheckedEvent(DrugInteractionCheckedEvent event) {
-        log.info("АУДИТ: Проверка взаимодействий для препарата ID={}, Название={}, Уровень риска={}, Серьезность={}",
-                event.medicationId(), event.medicationName(), event.riskLevel(), event.severity());
-
-        if ("HIGH".equals(event.severity()) || event.riskLevel() > 7) {
-            log.error("КРИТИЧЕСКОЕ ВЗАИМОДЕЙСТВИЕ: {} — {}",
-                    event.medicationName(), event.recommendation());
+    // Тип события задаёт слушатель, как при преобразовании аргумента @RabbitListener
+    private <T> List<Received<T>> decode(List<Message> messages, Class<T> type, String queue) {
+        List<Received<T>> received = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            MessageProperties properties = message.getMessageProperties();
+            try {
+                properties.setInferredArgumentType(type);
+                Object payload = messageConverter.fromMessage(message);
+                if (!type.isInstance(payload)) {
+                    throw new MessageConversionException("Unexpected payload type: "
+                            + (payload == null ? null : payload.getClass().getName()));
+                }
+                received.add(new Received<>(properties.getHeader(EventHeaders.EVENT_ID), type.cast(payload)));
+            } catch (MessageConversionException e) {
+                deadLetter(message, queue, e);
+            }
         }
+        return received;
     }
-}
\ No newline at end of file
+
+    // Отправка в DLX не удалась — исключение вернёт партию на повтор, сообщение не потеряется
+    private void deadLetter(Message message, String queue, MessageConversionException e) {
+        log.error("АУДИТ: Сообщение {} из {} не разобрано, отправлено в DLQ: {}",
+                message.getMessageProperties().getMessageId(), queue, e.getMessage());
+        message.getMessageProperties().setHeader(DEAD_LETTER_REASON, e.getMessage());
+        rabbitTemplate.send(RabbitMQConfig.AUDIT_DLX, queue, message);
+    }
+
+    // Захват отсекает и повтор внутри одной партии
+    private <T> List<Received<T>> withoutDuplicates(List<Received<T>> messages) {
+        List<Received<T>> fresh = new ArrayList<>(messages.size());
+        for (Received<T> message : messages) {
+            if (message.eventId() == null || recentEventIds.addIfAbsent(message.eventId())) {
+                fresh.add(message);
+            }
+        }
+        if (fresh.size() < messages.size()) {
+            log.info("АУДИТ: Пропущено повторно доставленных событий: {}", messages.size() - fresh.size());
+        }
+        return fresh;
+    }
+
+    private void append(List<? extends Received<?>> fresh, List<AuditRecord> records) {
+        try {
+            auditStore.append(records);
+        } catch (RuntimeException | Error e) {
+            for (Received<?> message : fresh) {
+                if (message.eventId() != null) {
+                    recentEventIds.remove(message.eventId());
+                }
+            }
+            throw e;
+        }
+    }
+
+    private record Received<T>(String eventId, T event) {}
+}
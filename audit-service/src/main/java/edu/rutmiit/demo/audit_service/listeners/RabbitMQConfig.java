@@ -2,15 +2,31 @@ package edu.rutmiit.demo.audit_service.listeners;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import edu.rutmiit.demo.audit_service.store.AuditProperties;
+import edu.rutmiit.demo.events.BinaryEventMessageConverter;
+import edu.rutmiit.demo.events.RecentEventIds;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
+@EnableConfigurationProperties(AuditProperties.class)
 public class RabbitMQConfig {
 
     private static final Logger log = LoggerFactory.getLogger(RabbitMQConfig.class);
@@ -23,6 +39,14 @@ public class RabbitMQConfig {
     public static final String MEDICATION_AUDIT_QUEUE = "medication-audit-queue";
     public static final String INTERACTION_AUDIT_QUEUE = "interaction-audit-queue";
 
+    // Dead letter: партии, которые не удалось записать после повторов, и сообщения, которые не разобрать.
+    // Ключ маршрутизации — имя исходной очереди, у каждой очереди своя DLQ
+    public static final String AUDIT_DLX = "audit-dlx";
+    public static final String MEDICATION_AUDIT_DLQ = MEDICATION_AUDIT_QUEUE + ".dlq";
+    public static final String INTERACTION_AUDIT_DLQ = INTERACTION_AUDIT_QUEUE + ".dlq";
+
+    public static final String BATCH_CONTAINER_FACTORY = "auditBatchContainerFactory";
+
     // === Exchange'ы ===
     @Bean
     public TopicExchange medicationsExchange() {
@@ -34,15 +58,37 @@ public class RabbitMQConfig {
         return new TopicExchange(INTERACTIONS_EXCHANGE, true, false);
     }
 
+    @Bean
+    public DirectExchange auditDeadLetterExchange() {
+        return new DirectExchange(AUDIT_DLX, true, false);
+    }
+
     // === Очереди ===
+    // Аргументы очереди нельзя поменять у существующей: очереди без DLX нужно удалить до запуска
     @Bean
     public Queue medicationAuditQueue() {
-        return QueueBuilder.durable(MEDICATION_AUDIT_QUEUE).build();
+        return QueueBuilder.durable(MEDICATION_AUDIT_QUEUE)
+                .deadLetterExchange(AUDIT_DLX)
+                .deadLetterRoutingKey(MEDICATION_AUDIT_QUEUE)
+                .build();
     }
 
     @Bean
     public Queue interactionAuditQueue() {
-        return QueueBuilder.durable(INTERACTION_AUDIT_QUEUE).build();
+        return QueueBuilder.durable(INTERACTION_AUDIT_QUEUE)
+                .deadLetterExchange(AUDIT_DLX)
+                .deadLetterRoutingKey(INTERACTION_AUDIT_QUEUE)
+                .build();
+    }
+
+    @Bean
+    public Queue medicationAuditDeadLetterQueue() {
+        return QueueBuilder.durable(MEDICATION_AUDIT_DLQ).build();
+    }
+
+    @Bean
+    public Queue interactionAuditDeadLetterQueue() {
+        return QueueBuilder.durable(INTERACTION_AUDIT_DLQ).build();
     }
 
     // === Биндинги ===
@@ -64,10 +110,80 @@ public class RabbitMQConfig {
                 .with("interaction.checked");
     }
 
+    @Bean
+    public Binding medicationAuditDeadLetterBinding(DirectExchange auditDeadLetterExchange,
+                                                    Queue medicationAuditDeadLetterQueue) {
+        return BindingBuilder.bind(medicationAuditDeadLetterQueue)
+                .to(auditDeadLetterExchange)
+                .with(MEDICATION_AUDIT_QUEUE);
+    }
+
+    @Bean
+    public Binding interactionAuditDeadLetterBinding(DirectExchange auditDeadLetterExchange,
+                                                     Queue interactionAuditDeadLetterQueue) {
+        return BindingBuilder.bind(interactionAuditDeadLetterQueue)
+                .to(auditDeadLetterExchange)
+                .with(INTERACTION_AUDIT_QUEUE);
+    }
+
+    // === Пакетное чтение очередей аудита ===
+    // Контейнер сам набирает партию из batchSize сообщений и подтверждает её целиком (AUTO)
+    // после успешного возврата из слушателя. Ошибка записи повторяется в том же потоке
+    // с растущей паузой; после retryAttempts попыток партия отклоняется без возврата в очередь
+    // и уходит в DLQ. Сообщения, которые не разобрать, слушатель сам отправляет в DLQ по одному
+    @Bean(BATCH_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory auditBatchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            AuditProperties properties) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(properties.batchSize());
+        factory.setReceiveTimeout(properties.receiveTimeout().toMillis());
+        // Брокер должен успевать выдать следующую партию, пока текущая пишется на диск
+        factory.setPrefetchCount(Math.max(properties.prefetch(), properties.batchSize()));
+        factory.setConcurrentConsumers(properties.concurrency());
+        factory.setMaxConcurrentConsumers(Math.max(properties.maxConcurrency(), properties.concurrency()));
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        factory.setAdviceChain(RetryInterceptorBuilder.stateless()
+                .maxAttempts(properties.retryAttempts())
+                .backOffOptions(properties.retryBackoff().toMillis(), 2.0, properties.retryMaxBackoff().toMillis())
+                .recoverer((MessageBatchRecoverer) (messages, cause) -> {
+                    log.error("АУДИТ: Партия из {} сообщений не записана, отправлена в DLQ", messages.size(), cause);
+                    throw new AmqpRejectAndDontRequeueException("Audit batch failed after retries", cause);
+                })
+                .build());
+        return factory;
+    }
+
+    // === Отбрасывание повторных доставок ===
+    // Партия, вернувшаяся в очередь, и повтор партии на стороне отправителя приходят снова:
+    // события с уже записанным event-id пропускаются. Доля дубликатов — duplicates / lookups
+    @Bean
+    public RecentEventIds recentEventIds(@Value("${events.dedup.window:2m}") Duration window,
+                                         @Value("${events.dedup.max-entries:1000000}") int maxEntries,
+                                         MeterRegistry meterRegistry) {
+        RecentEventIds recentEventIds = new RecentEventIds(window, maxEntries);
+        FunctionCounter.builder("events.dedup.lookups", recentEventIds, RecentEventIds::lookups)
+                .register(meterRegistry);
+        FunctionCounter.builder("events.dedup.duplicates", recentEventIds, RecentEventIds::duplicates)
+                .register(meterRegistry);
+        Gauge.builder("events.dedup.hit.ratio", recentEventIds,
+                        ids -> ids.lookups() == 0 ? 0 : (double) ids.duplicates() / ids.lookups())
+                .register(meterRegistry);
+        Gauge.builder("events.dedup.size", recentEventIds, RecentEventIds::size)
+                .register(meterRegistry);
+        return recentEventIds;
+    }
+
     // === Конвертер и шаблон ===
+    // Входящие сообщения разбираются по content-type: двоичные события и JSON принимаются одновременно,
+    // поэтому отправителей можно переключать по одному. Формат отправки — events.wire-format (json по умолчанию | binary)
     @Bean
-    public MessageConverter messageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter messageConverter(@Value("${events.wire-format:json}") String wireFormat) {
+        return BinaryEventMessageConverter.byContentType(new Jackson2JsonMessageConverter(), wireFormat);
     }
 
     @Bean
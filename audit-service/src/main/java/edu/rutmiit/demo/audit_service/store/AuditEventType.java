@@ -0,0 +1,6 @@
+package edu.rutmiit.demo.audit_service.store;
+
+public enum AuditEventType {
+    MEDICATION_CREATED,
+    INTERACTION_CHECKED
+}
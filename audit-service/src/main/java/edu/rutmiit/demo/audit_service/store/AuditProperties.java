@@ -0,0 +1,25 @@
+package edu.rutmiit.demo.audit_service.store;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+// batchSize и receiveTimeout: партия отдаётся слушателю, когда набрано batchSize сообщений
+// или новых сообщений не было дольше receiveTimeout.
+// partition — длительность интервала, события которого попадают в один сегмент хранилища.
+// retryAttempts, retryBackoff, retryMaxBackoff: попытки записи партии и паузы между ними (пауза удваивается)
+@ConfigurationProperties(prefix = "audit")
+public record AuditProperties(
+        @DefaultValue("200") int batchSize,
+        @DefaultValue("500ms") Duration receiveTimeout,
+        @DefaultValue("400") int prefetch,
+        @DefaultValue("2") int concurrency,
+        @DefaultValue("4") int maxConcurrency,
+        @DefaultValue("data/audit") Path directory,
+        @DefaultValue("1h") Duration partition,
+        @DefaultValue("5") int retryAttempts,
+        @DefaultValue("1s") Duration retryBackoff,
+        @DefaultValue("30s") Duration retryMaxBackoff
+) {}
@@ -0,0 +1,31 @@
+package edu.rutmiit.demo.audit_service.store;
+
+import java.time.Instant;
+import java.util.Locale;
+
+// Условия выборки из хранилища аудита; null означает «без ограничения».
+// Интервал [from, to) отсекает сегменты целиком, medicationId и severity отбираются по индексу сегмента,
+// остальные условия проверяются на прочитанных записях
+public record AuditQuery(
+        Instant from,
+        Instant to,
+        AuditEventType type,
+        Long medicationId,
+        String severity,
+        Boolean prescriptionRequired,
+        long limit
+) {
+
+    public boolean matches(AuditRecord record) {
+        return (from == null || !record.timestamp().isBefore(from))
+                && (to == null || record.timestamp().isBefore(to))
+                && (type == null || type == record.type())
+                && (medicationId == null || medicationId.equals(record.medicationId()))
+                && (severity == null || severity.equalsIgnoreCase(record.severity()))
+                && (prescriptionRequired == null || prescriptionRequired.equals(record.prescriptionRequired()));
+    }
+
+    static String severityKey(String severity) {
+        return severity.trim().toUpperCase(Locale.ROOT);
+    }
+}
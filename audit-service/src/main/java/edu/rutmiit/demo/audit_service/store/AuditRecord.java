@@ -0,0 +1,45 @@
+package edu.rutmiit.demo.audit_service.store;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import edu.rutmiit.demo.events.DrugInteractionCheckedEvent;
+import edu.rutmiit.demo.events.MedicationCreatedEvent;
+
+import java.time.Instant;
+import java.util.List;
+
+// Запись хранилища аудита. Общие поля заполнены всегда, остальные — только для своего типа события:
+// inn, manufacturerName, prescriptionRequired — для MEDICATION_CREATED,
+// riskLevel, severity, contraindications, recommendation — для INTERACTION_CHECKED.
+// timestamp проставляет хранилище в момент записи
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AuditRecord(
+        Instant timestamp,
+        AuditEventType type,
+        Long medicationId,
+        String medicationName,
+        String inn,
+        String manufacturerName,
+        Boolean prescriptionRequired,
+        Integer riskLevel,
+        String severity,
+        List<String> contraindications,
+        String recommendation
+) {
+
+    public static AuditRecord medicationCreated(MedicationCreatedEvent event) {
+        return new AuditRecord(null, AuditEventType.MEDICATION_CREATED, event.medicationId(),
+                event.medicationName(), event.inn(), event.manufacturerName(), event.prescriptionRequired(),
+                null, null, null, null);
+    }
+
+    public static AuditRecord interactionChecked(DrugInteractionCheckedEvent event) {
+        return new AuditRecord(null, AuditEventType.INTERACTION_CHECKED, event.medicationId(),
+                event.medicationName(), null, null, null, event.riskLevel(), event.severity(),
+                event.contraindications(), event.recommendation());
+    }
+
+    AuditRecord withTimestamp(Instant timestamp) {
+        return new AuditRecord(timestamp, type, medicationId, medicationName, inn, manufacturerName,
+                prescriptionRequired, riskLevel, severity, contraindications, recommendation);
+    }
+}
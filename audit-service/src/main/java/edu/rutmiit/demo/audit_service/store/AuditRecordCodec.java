@@ -0,0 +1,137 @@
+package edu.rutmiit.demo.audit_service.store;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// Двоичный формат записи аудита: тип, байт флагов отсутствующих полей, затем поля своего типа.
+// Числа пишутся в формате varint, строки — длиной varint (0 для null) и байтами UTF-8,
+// поэтому типичная запись занимает несколько десятков байт против сотен в JSON
+final class AuditRecordCodec {
+
+    private static final int HAS_MEDICATION_ID = 1;
+    private static final int HAS_PRESCRIPTION = 1 << 1;
+    private static final int PRESCRIPTION_REQUIRED = 1 << 2;
+    private static final int HAS_RISK_LEVEL = 1 << 3;
+    private static final int HAS_CONTRAINDICATIONS = 1 << 4;
+
+    private static final AuditEventType[] TYPES = AuditEventType.values();
+
+    private AuditRecordCodec() {
+    }
+
+    static void write(DataOutput out, AuditRecord record) throws IOException {
+        int flags = 0;
+        if (record.medicationId() != null) {
+            flags |= HAS_MEDICATION_ID;
+        }
+        if (record.prescriptionRequired() != null) {
+            flags |= HAS_PRESCRIPTION;
+            if (record.prescriptionRequired()) {
+                flags |= PRESCRIPTION_REQUIRED;
+            }
+        }
+        if (record.riskLevel() != null) {
+            flags |= HAS_RISK_LEVEL;
+        }
+        if (record.contraindications() != null) {
+            flags |= HAS_CONTRAINDICATIONS;
+        }
+        out.writeByte(record.type().ordinal());
+        out.writeByte(flags);
+        writeVarLong(out, record.timestamp().toEpochMilli());
+        if (record.medicationId() != null) {
+            writeVarLong(out, zigZag(record.medicationId()));
+        }
+        writeString(out, record.medicationName());
+        writeString(out, record.inn());
+        writeString(out, record.manufacturerName());
+        if (record.riskLevel() != null) {
+            writeVarLong(out, zigZag(record.riskLevel()));
+        }
+        writeString(out, record.severity());
+        if (record.contraindications() != null) {
+            writeVarLong(out, record.contraindications().size());
+            for (String contraindication : record.contraindications()) {
+                writeString(out, contraindication);
+            }
+        }
+        writeString(out, record.recommendation());
+    }
+
+    static AuditRecord read(DataInput in) throws IOException {
+        AuditEventType type = TYPES[in.readUnsignedByte()];
+        int flags = in.readUnsignedByte();
+        Instant timestamp = Instant.ofEpochMilli(readVarLong(in));
+        Long medicationId = (flags & HAS_MEDICATION_ID) != 0 ? unZigZag(readVarLong(in)) : null;
+        String medicationName = readString(in);
+        String inn = readString(in);
+        String manufacturerName = readString(in);
+        Boolean prescriptionRequired = (flags & HAS_PRESCRIPTION) != 0 ? (flags & PRESCRIPTION_REQUIRED) != 0 : null;
+        Integer riskLevel = (flags & HAS_RISK_LEVEL) != 0 ? (int) unZigZag(readVarLong(in)) : null;
+        String severity = readString(in);
+        List<String> contraindications = null;
+        if ((flags & HAS_CONTRAINDICATIONS) != 0) {
+            int size = (int) readVarLong(in);
+            contraindications = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                contraindications.add(readString(in));
+            }
+        }
+        String recommendation = readString(in);
+        return new AuditRecord(timestamp, type, medicationId, medicationName, inn, manufacturerName,
+                prescriptionRequired, riskLevel, severity, contraindications, recommendation);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) (length - 1)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,413 @@
+package edu.rutmiit.demo.audit_service.store;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Хранилище аудита из сегментов, разбитых по времени: события интервала partition
+// дописываются в segment-<начало интервала>.seg кадрами [длина][crc32][запись].
+// Когда начинается следующий интервал, текущий сегмент закрывается и рядом записывается
+// его индекс segment-<начало>.idx. Запрос читает только сегменты своего интервала времени,
+// а при условии на medicationId или severity — только записи по смещениям из индекса.
+// Партия записывается одним вызовом write и сбрасывается на диск до возврата из append
+@Component
+public class AuditStore {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditStore.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int FRAME_HEADER = Integer.BYTES * 2;
+
+    private final Path directory;
+    private final long partitionMillis;
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+
+    // Закрытые сегменты по началу интервала; сегменты идут подряд, каждый покрывает время до начала следующего
+    private final NavigableMap<Long, Path> sealed = new ConcurrentSkipListMap<>();
+
+    // Под this: текущий сегмент, его индекс и время последней записи
+    private long activePartition;
+    private Path activePath;
+    private FileChannel activeChannel;
+    private SegmentIndex activeIndex;
+    private long lastTimestamp;
+
+    @Autowired
+    public AuditStore(AuditProperties properties, MeterRegistry meterRegistry) {
+        this(properties.directory(), properties.partition(), Clock.systemUTC(), meterRegistry);
+    }
+
+    AuditStore(Path directory, Duration partition, Clock clock, MeterRegistry meterRegistry) {
+        this.directory = directory;
+        this.partitionMillis = partition.toMillis();
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+        recover();
+    }
+
+    // Записывает партию в текущий сегмент. Время записи не убывает даже при переводе часов назад,
+    // поэтому записи сегмента всегда относятся к его интервалу или более позднему времени
+    public void append(List<AuditRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        synchronized (this) {
+            long timestamp = Math.max(clock.millis(), lastTimestamp);
+            long partition = Math.floorDiv(timestamp, partitionMillis) * partitionMillis;
+            try {
+                if (activeChannel == null || partition != activePartition) {
+                    rollTo(partition);
+                }
+                Instant stamp = Instant.ofEpochMilli(timestamp);
+                List<AuditRecord> stamped = new ArrayList<>(records.size());
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(records.size() * 64);
+                long[] offsets = new long[records.size() + 1];
+                long start = activeIndex.size();
+                for (int i = 0; i < records.size(); i++) {
+                    AuditRecord record = records.get(i).withTimestamp(stamp);
+                    stamped.add(record);
+                    offsets[i] = start + buffer.size();
+                    writeFrame(buffer, record);
+                }
+                offsets[records.size()] = start + buffer.size();
+
+                ByteBuffer batch = ByteBuffer.wrap(buffer.toByteArray());
+                try {
+                    while (batch.hasRemaining()) {
+                        activeChannel.write(batch);
+                    }
+                    activeChannel.force(false);
+                } catch (IOException e) {
+                    // Не оставляем после себя половину партии: следующая запись пойдёт с той же границы
+                    activeChannel.truncate(start);
+                    throw e;
+                }
+                for (int i = 0; i < stamped.size(); i++) {
+                    activeIndex.add(stamped.get(i), offsets[i], offsets[i + 1] - offsets[i]);
+                }
+                lastTimestamp = timestamp;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to append audit records to " + activePath, e);
+            }
+        }
+        sample.stop(meterRegistry.timer("audit.store.append"));
+        meterRegistry.counter("audit.store.records").increment(records.size());
+    }
+
+    // Передаёт в consumer подходящие записи в порядке записи и возвращает их количество.
+    // Записи читаются с диска по одной, поэтому объём выборки не ограничен памятью
+    public long query(AuditQuery query, Consumer<AuditRecord> consumer) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        long matched = 0;
+        try {
+            for (SegmentView segment : segments(query)) {
+                matched = read(segment, query, consumer, matched);
+                if (matched >= query.limit()) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read audit store " + directory, e);
+        } finally {
+            sample.stop(meterRegistry.timer("audit.store.query"));
+        }
+        return matched;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (activeChannel == null) {
+            return;
+        }
+        try {
+            activeChannel.close();
+        } catch (IOException e) {
+            log.error("Failed to close audit segment {}", activePath, e);
+        } finally {
+            activeChannel = null;
+        }
+    }
+
+    // Сегменты, которые могут содержать записи из [from, to): последний начавшийся не позже from
+    // и все начавшиеся до to. Для текущего сегмента кандидаты из индекса копируются под блокировкой
+    private List<SegmentView> segments(AuditQuery query) throws IOException {
+        long from = query.from() == null ? Long.MIN_VALUE : query.from().toEpochMilli();
+        long to = query.to() == null ? Long.MAX_VALUE : query.to().toEpochMilli();
+        List<SegmentView> views = new ArrayList<>();
+
+        Long first = sealed.floorKey(from);
+        NavigableMap<Long, Path> range = sealed.tailMap(first == null ? Long.MIN_VALUE : first, true);
+        for (Map.Entry<Long, Path> entry : range.entrySet()) {
+            if (entry.getKey() >= to) {
+                break;
+            }
+            SegmentIndex index = loadIndex(entry.getValue());
+            if (index.overlaps(query.from(), query.to())) {
+                views.add(new SegmentView(entry.getValue(), index.size(), candidates(index, query)));
+            }
+        }
+        synchronized (this) {
+            if (activeChannel != null && activePartition < to && activeIndex.overlaps(query.from(), query.to())) {
+                views.add(new SegmentView(activePath, activeIndex.size(), candidates(activeIndex, query)));
+            }
+        }
+        return views;
+    }
+
+    // null — индекс не сужает выборку, сегмент читается целиком
+    private static long[] candidates(SegmentIndex index, AuditQuery query) {
+        long[] byMedication = query.medicationId() == null ? null : index.medicationOffsets(query.medicationId());
+        long[] bySeverity = query.severity() == null ? null : index.severityOffsets(query.severity());
+        if (byMedication == null) {
+            return bySeverity;
+        }
+        return bySeverity == null ? byMedication : intersect(byMedication, bySeverity);
+    }
+
+    private static long[] intersect(long[] left, long[] right) {
+        long[] result = new long[Math.min(left.length, right.length)];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] == right[j]) {
+                result[size++] = left[i];
+                i++;
+                j++;
+            } else if (left[i] < right[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private long read(SegmentView segment, AuditQuery query, Consumer<AuditRecord> consumer, long matched)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.path(), StandardOpenOption.READ)) {
+            if (segment.offsets() != null) {
+                ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER);
+                for (long offset : segment.offsets()) {
+                    header.clear();
+                    readFully(channel, header, offset);
+                    ByteBuffer payload = ByteBuffer.allocate(header.getInt(0));
+                    readFully(channel, payload, offset + FRAME_HEADER);
+                    AuditRecord record = decode(payload.array(), header.getInt(Integer.BYTES), segment.path());
+                    if (record != null && query.matches(record)) {
+                        consumer.accept(record);
+                        if (++matched >= query.limit()) {
+                            break;
+                        }
+                    }
+                }
+                return matched;
+            }
+            // Полный просмотр сегмента: последовательное чтение через буфер
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024));
+            long position = 0;
+            while (position + FRAME_HEADER <= segment.size()) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                byte[] payload = in.readNBytes(length);
+                position += FRAME_HEADER + length;
+                AuditRecord record = decode(payload, checksum, segment.path());
+                if (record == null) {
+                    break;
+                }
+                if (query.matches(record)) {
+                    consumer.accept(record);
+                    if (++matched >= query.limit()) {
+                        break;
+                    }
+                }
+            }
+            return matched;
+        }
+    }
+
+    private static AuditRecord decode(byte[] payload, int checksum, Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            log.warn("Corrupted audit record in {}", path);
+            return null;
+        }
+        return AuditRecordCodec.read(new DataInputStream(new ByteArrayInputStream(payload)));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of audit segment");
+            }
+        }
+    }
+
+    private static void writeFrame(ByteArrayOutputStream buffer, AuditRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            AuditRecordCodec.write(out, record);
+        }
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        DataOutputStream frame = new DataOutputStream(buffer);
+        frame.writeInt(payload.length);
+        frame.writeInt((int) crc.getValue());
+        frame.write(payload);
+    }
+
+    // Закрывает текущий сегмент с записью индекса и открывает сегмент нового интервала
+    private void rollTo(long partition) throws IOException {
+        if (activeChannel != null) {
+            activeChannel.force(false);
+            activeChannel.close();
+            activeChannel = null;
+            try {
+                activeIndex.write(indexPath(activePath));
+            } catch (IOException e) {
+                // Индекс будет построен заново при первом запросе к сегменту
+                log.error("Failed to write index for audit segment {}", activePath, e);
+            }
+            sealed.put(activePartition, activePath);
+        }
+        Files.createDirectories(directory);
+        activePartition = partition;
+        activePath = directory.resolve(SEGMENT_PREFIX + partition + SEGMENT_SUFFIX);
+        activeChannel = FileChannel.open(activePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        activeIndex = new SegmentIndex();
+    }
+
+    // Закрытыми считаются все сегменты, кроме последнего: он открывается для дописывания,
+    // его индекс строится по содержимому, а оборванный хвост обрезается
+    private synchronized void recover() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try {
+            List<Map.Entry<Long, Path>> segments = listSegments();
+            for (int i = 0; i < segments.size() - 1; i++) {
+                sealed.put(segments.get(i).getKey(), segments.get(i).getValue());
+            }
+            if (segments.isEmpty()) {
+                return;
+            }
+            Map.Entry<Long, Path> last = segments.getLast();
+            activePartition = last.getKey();
+            activePath = last.getValue();
+            activeIndex = scan(activePath);
+            activeChannel = FileChannel.open(activePath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (activeChannel.size() > activeIndex.size()) {
+                log.warn("Truncating {} bytes of incomplete audit records in {}",
+                        activeChannel.size() - activeIndex.size(), activePath);
+                activeChannel.truncate(activeIndex.size());
+            }
+            lastTimestamp = Math.max(activeIndex.maxTimestamp(), activePartition);
+            log.info("Audit store opened in {}: {} sealed segments, {} records in current segment",
+                    directory, sealed.size(), activeIndex.records());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open audit store " + directory, e);
+        }
+    }
+
+    private SegmentIndex loadIndex(Path segment) throws IOException {
+        Path indexPath = indexPath(segment);
+        SegmentIndex index = SegmentIndex.read(indexPath);
+        if (index == null) {
+            log.warn("Rebuilding index for audit segment {}", segment);
+            index = scan(segment);
+            try {
+                index.write(indexPath);
+            } catch (IOException e) {
+                log.error("Failed to write index for audit segment {}", segment, e);
+            }
+        }
+        return index;
+    }
+
+    // Строит индекс по целым кадрам сегмента; size индекса — длина целой части
+    private static SegmentIndex scan(Path segment) throws IOException {
+        SegmentIndex index = new SegmentIndex();
+        long fileSize = Files.size(segment);
+        long position = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment), 64 * 1024))) {
+            while (fileSize - position >= FRAME_HEADER) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || length > fileSize - position - FRAME_HEADER) {
+                    break;
+                }
+                byte[] payload = in.readNBytes(length);
+                AuditRecord record = decode(payload, checksum, segment);
+                if (record == null) {
+                    break;
+                }
+                index.add(record, position, FRAME_HEADER + length);
+                position += FRAME_HEADER + length;
+            }
+        }
+        return index;
+    }
+
+    private List<Map.Entry<Long, Path>> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .map(path -> {
+                        String name = path.getFileName().toString();
+                        String start = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                        return Map.entry(Long.parseLong(start), path);
+                    })
+                    .sorted(Map.Entry.comparingByKey())
+                    .toList();
+        }
+    }
+
+    private static Path indexPath(Path segment) {
+        String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    private record SegmentView(Path path, long size, long[] offsets) {
+    }
+}
@@ -0,0 +1,173 @@
+package edu.rutmiit.demo.audit_service.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Индекс одного сегмента: смещения записей по medicationId и по severity, границы времени записей
+// и длина целой части сегмента. Смещения возрастают, в файле хранятся разностями в формате varint
+final class SegmentIndex {
+
+    private static final int MAGIC = 0x41494458;
+    private static final byte VERSION = 1;
+
+    private final Map<Long, OffsetList> byMedication = new HashMap<>();
+    private final Map<String, OffsetList> bySeverity = new HashMap<>();
+    private long records;
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+    private long size;
+
+    void add(AuditRecord record, long offset, long frameLength) {
+        if (record.medicationId() != null) {
+            byMedication.computeIfAbsent(record.medicationId(), id -> new OffsetList()).add(offset);
+        }
+        if (record.severity() != null) {
+            bySeverity.computeIfAbsent(AuditQuery.severityKey(record.severity()), key -> new OffsetList()).add(offset);
+        }
+        long timestamp = record.timestamp().toEpochMilli();
+        minTimestamp = Math.min(minTimestamp, timestamp);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        records++;
+        size = offset + frameLength;
+    }
+
+    long[] medicationOffsets(long medicationId) {
+        OffsetList offsets = byMedication.get(medicationId);
+        return offsets == null ? new long[0] : offsets.toArray();
+    }
+
+    long[] severityOffsets(String severity) {
+        OffsetList offsets = bySeverity.get(AuditQuery.severityKey(severity));
+        return offsets == null ? new long[0] : offsets.toArray();
+    }
+
+    // Есть ли в сегменте записи из интервала [from, to)
+    boolean overlaps(Instant from, Instant to) {
+        return records > 0
+                && (from == null || maxTimestamp >= from.toEpochMilli())
+                && (to == null || minTimestamp < to.toEpochMilli());
+    }
+
+    long records() {
+        return records;
+    }
+
+    long maxTimestamp() {
+        return maxTimestamp;
+    }
+
+    long size() {
+        return size;
+    }
+
+    void write(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream raw = new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024)) {
+            CheckedOutputStream checked = new CheckedOutputStream(raw, new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(records);
+            out.writeLong(minTimestamp);
+            out.writeLong(maxTimestamp);
+            out.writeLong(size);
+            out.writeInt(byMedication.size());
+            for (Map.Entry<Long, OffsetList> entry : byMedication.entrySet()) {
+                out.writeLong(entry.getKey());
+                entry.getValue().write(out);
+            }
+            out.writeInt(bySeverity.size());
+            for (Map.Entry<String, OffsetList> entry : bySeverity.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().write(out);
+            }
+            out.flush();
+            new DataOutputStream(raw).writeLong(checked.getChecksum().getValue());
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // null, если индекса нет или он повреждён: тогда его строят заново по сегменту
+    static SegmentIndex read(Path path) throws IOException {
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(path), 64 * 1024)) {
+            CheckedInputStream checked = new CheckedInputStream(raw, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return null;
+            }
+            SegmentIndex index = new SegmentIndex();
+            index.records = in.readLong();
+            index.minTimestamp = in.readLong();
+            index.maxTimestamp = in.readLong();
+            index.size = in.readLong();
+            int medications = in.readInt();
+            for (int i = 0; i < medications; i++) {
+                index.byMedication.put(in.readLong(), OffsetList.read(in));
+            }
+            int severities = in.readInt();
+            for (int i = 0; i < severities; i++) {
+                index.bySeverity.put(in.readUTF(), OffsetList.read(in));
+            }
+            long expected = checked.getChecksum().getValue();
+            return new DataInputStream(raw).readLong() == expected ? index : null;
+        } catch (NoSuchFileException | EOFException e) {
+            return null;
+        }
+    }
+
+    private static final class OffsetList {
+
+        private long[] offsets = new long[4];
+        private int size;
+
+        void add(long offset) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = offset;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(offsets, size);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            AuditRecordCodec.writeVarLong(out, size);
+            long previous = 0;
+            for (int i = 0; i < size; i++) {
+                AuditRecordCodec.writeVarLong(out, offsets[i] - previous);
+                previous = offsets[i];
+            }
+        }
+
+        static OffsetList read(DataInputStream in) throws IOException {
+            OffsetList list = new OffsetList();
+            int count = (int) AuditRecordCodec.readVarLong(in);
+            list.offsets = new long[Math.max(count, 4)];
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += AuditRecordCodec.readVarLong(in);
+                list.offsets[i] = previous;
+            }
+            list.size = count;
+            return list;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package edu.rutmiit.demo.audit_service.listeners;
+
+import edu.rutmiit.demo.audit_service.store.AuditRecord;
+import edu.rutmiit.demo.audit_service.store.AuditStore;
+import edu.rutmiit.demo.events.BinaryEventMessageConverter;
+import edu.rutmiit.demo.events.EventCodec;
+import edu.rutmiit.demo.events.EventHeaders;
+import edu.rutmiit.demo.events.MedicationCreatedEvent;
+import edu.rutmiit.demo.events.RecentEventIds;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class MedicationEventListenerTests {
+
+    private final AuditStore auditStore = mock(AuditStore.class);
+    private final RecentEventIds recentEventIds = new RecentEventIds(Duration.ofMinutes(2), 1000);
+    private final MessageConverter converter =
+            BinaryEventMessageConverter.byContentType(new Jackson2JsonMessageConverter(), "json");
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final MedicationEventListener listener =
+            new MedicationEventListener(auditStore, recentEventIds, converter, rabbitTemplate);
+
+    @Test
+    void skipsEventsAlreadyWrittenAndRepeatedWithinBatch() {
+        listener.handleMedicationCreatedEvents(List.of(created("a", 1), created("b", 2)));
+        listener.handleMedicationCreatedEvents(List.of(created("b", 2), created("c", 3), created("c", 3),
+                created(null, 4)));
+
+        assertThat(appended(2))
+                .extracting(AuditRecord::medicationId)
+                .containsExactly(1L, 2L, 3L, 4L);
+        assertThat(recentEventIds.duplicates()).isEqualTo(2);
+    }
+
+    @Test
+    void redeliveredBatchIsWrittenWhenPreviousWriteFailed() {
+        doThrow(new UncheckedIOException(new IOException("disk full")))
+                .doNothing()
+                .when(auditStore).append(anyList());
+        List<Message> batch = List.of(created("a", 1), created("b", 2));
+
+        assertThatThrownBy(() -> listener.handleMedicationCreatedEvents(batch))
+                .isInstanceOf(UncheckedIOException.class);
+        listener.handleMedicationCreatedEvents(batch);
+
+        assertThat(appended(2))
+                .extracting(AuditRecord::medicationId)
+                .containsExactly(1L, 2L, 1L, 2L);
+    }
+
+    @Test
+    void copyReceivedByAnotherConsumerDuringWriteIsSkipped() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).doNothing().when(auditStore).append(anyList());
+
+        CompletableFuture<Void> original = CompletableFuture.runAsync(
+                () -> listener.handleMedicationCreatedEvents(List.of(created("a", 1))));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        // Повтор от outbox достаётся второму потребителю, пока оригинал ещё пишется
+        listener.handleMedicationCreatedEvents(List.of(created("a", 1), created("b", 2)));
+        release.countDown();
+        original.get(5, TimeUnit.SECONDS);
+
+        assertThat(appended(2))
+                .extracting(AuditRecord::medicationId)
+                .containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void undecodableMessageGoesToDeadLetterWithoutFailingBatch() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        Message corrupt = new Message("{\"medicationId\":".getBytes(StandardCharsets.UTF_8), properties);
+        MessageProperties binaryProperties = new MessageProperties();
+        binaryProperties.setContentType(EventCodec.CONTENT_TYPE);
+        Message truncated = new Message(new byte[]{1}, binaryProperties);
+
+        listener.handleMedicationCreatedEvents(List.of(created("a", 1), corrupt, truncated, created("b", 2)));
+
+        assertThat(appended(1))
+                .extracting(AuditRecord::medicationId)
+                .containsExactly(1L, 2L);
+        verify(rabbitTemplate).send(RabbitMQConfig.AUDIT_DLX, RabbitMQConfig.MEDICATION_AUDIT_QUEUE, corrupt);
+        verify(rabbitTemplate).send(RabbitMQConfig.AUDIT_DLX, RabbitMQConfig.MEDICATION_AUDIT_QUEUE, truncated);
+        assertThat(corrupt.getMessageProperties().<String>getHeader(MedicationEventListener.DEAD_LETTER_REASON))
+                .isNotBlank();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<AuditRecord> appended(int batches) {
+        ArgumentCaptor<List<AuditRecord>> captor = ArgumentCaptor.forClass(List.class);
+        verify(auditStore, times(batches)).append(captor.capture());
+        return captor.getAllValues().stream().flatMap(List::stream).toList();
+    }
+
+    private Message created(String eventId, long id) {
+        MedicationCreatedEvent event = new MedicationCreatedEvent(id, "Лекарство " + id, "INN " + id, "Pfizer", false);
+        MessageProperties properties = new MessageProperties();
+        if (eventId != null) {
+            properties.setHeader(EventHeaders.EVENT_ID, eventId);
+        }
+        return converter.toMessage(event, properties);
+    }
+}
@@ -0,0 +1,155 @@
+package edu.rutmiit.demo.audit_service.store;
+
+import edu.rutmiit.demo.events.DrugInteractionCheckedEvent;
+import edu.rutmiit.demo.events.MedicationCreatedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuditStoreTests {
+
+    private static final Instant START = Instant.parse("2026-10-12T10:15:00Z");
+
+    @TempDir
+    Path directory;
+
+    private final MutableClock clock = new MutableClock(START);
+
+    @Test
+    void queriesOnlyMatchingRecordsAcrossPartitions() throws IOException {
+        AuditStore store = newStore();
+        store.append(List.of(
+                created(1, "Амоксициллин", true),
+                created(2, "Аспирин", false)));
+        clock.advance(Duration.ofHours(1));
+        store.append(List.of(
+                checked(42, "HIGH", 9),
+                checked(42, "LOW", 2),
+                checked(7, "high", 8)));
+        clock.advance(Duration.ofHours(1));
+        store.append(List.of(created(3, "Кларитромицин", true)));
+
+        assertThat(query(store, new AuditQuery(START, START.plus(Duration.ofHours(2)),
+                AuditEventType.MEDICATION_CREATED, null, null, true, Long.MAX_VALUE)))
+                .extracting(AuditRecord::medicationName)
+                .containsExactly("Амоксициллин");
+        assertThat(query(store, new AuditQuery(null, null, AuditEventType.INTERACTION_CHECKED, 42L, "high", null,
+                Long.MAX_VALUE)))
+                .extracting(AuditRecord::riskLevel)
+                .containsExactly(9);
+        assertThat(query(store, new AuditQuery(null, null, null, null, "HIGH", null, Long.MAX_VALUE)))
+                .extracting(AuditRecord::medicationId)
+                .containsExactly(42L, 7L);
+        assertThat(query(store, new AuditQuery(null, null, null, null, null, true, 1)))
+                .extracting(AuditRecord::medicationId)
+                .containsExactly(1L);
+
+        // Два закрытых сегмента получили индексы, текущий ещё нет
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(path -> path.getFileName().toString()).filter(name -> name.endsWith(".idx")))
+                    .hasSize(2);
+        }
+    }
+
+    @Test
+    void recoversCurrentSegmentAndDropsTornTail() throws IOException {
+        AuditStore store = newStore();
+        store.append(List.of(created(1, "Амоксициллин", true), checked(1, "LOW", 1)));
+        store.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            Path segment = files.filter(path -> path.toString().endsWith(".seg")).findFirst().orElseThrow();
+            Files.write(segment, new byte[] {0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+        }
+
+        AuditStore reopened = newStore();
+        reopened.append(List.of(created(2, "Аспирин", false)));
+
+        assertThat(query(reopened, new AuditQuery(null, null, null, null, null, null, Long.MAX_VALUE)))
+                .extracting(AuditRecord::medicationId)
+                .containsExactly(1L, 1L, 2L);
+        assertThat(query(reopened, new AuditQuery(null, null, null, 1L, null, null, Long.MAX_VALUE))).hasSize(2);
+    }
+
+    @Test
+    void rebuildsMissingSegmentIndex() throws IOException {
+        AuditStore store = newStore();
+        store.append(List.of(checked(5, "HIGH", 9)));
+        clock.advance(Duration.ofHours(1));
+        store.append(List.of(checked(6, "LOW", 1)));
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path index : files.filter(path -> path.toString().endsWith(".idx")).toList()) {
+                Files.delete(index);
+            }
+        }
+
+        assertThat(query(store, new AuditQuery(null, null, null, 5L, null, null, Long.MAX_VALUE)))
+                .extracting(AuditRecord::severity)
+                .containsExactly("HIGH");
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.filter(path -> path.toString().endsWith(".idx"))).hasSize(1);
+        }
+    }
+
+    private AuditStore newStore() {
+        return new AuditStore(directory, Duration.ofHours(1), clock, new SimpleMeterRegistry());
+    }
+
+    private static List<AuditRecord> query(AuditStore store, AuditQuery query) {
+        List<AuditRecord> records = new ArrayList<>();
+        store.query(query, records::add);
+        return records;
+    }
+
+    private static AuditRecord created(long id, String name, boolean prescriptionRequired) {
+        return AuditRecord.medicationCreated(
+                new MedicationCreatedEvent(id, name, "INN " + id, "Pfizer", prescriptionRequired));
+    }
+
+    private static AuditRecord checked(long id, String severity, int riskLevel) {
+        return AuditRecord.interactionChecked(new DrugInteractionCheckedEvent(id, "Лекарство " + id, riskLevel,
+                severity, List.of("Беременность"), "Контроль врача"));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
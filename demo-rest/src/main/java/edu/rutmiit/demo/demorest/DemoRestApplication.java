@@ -2,7 +2,9 @@ package edu.rutmiit.demo.demorest;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
 import org.springframework.hateoas.config.EnableHypermediaSupport;
 
 @SpringBootApplication(
@@ -12,7 +14,13 @@ import org.springframework.hateoas.config.EnableHypermediaSupport;
                 "edu.rutmiit.demo.events",
                 "grpc.demo"
         },
-        exclude = {DataSourceAutoConfiguration.class}
+        // Источник данных подключается только в режиме medics.storage.type=jdbc (см. JdbcStorageConfiguration),
+        // JPA не используется: хранилище работает через JDBC
+        exclude = {
+                DataSourceAutoConfiguration.class,
+                HibernateJpaAutoConfiguration.class,
+                JpaRepositoriesAutoConfiguration.class
+        }
 )
 @EnableHypermediaSupport(type = EnableHypermediaSupport.HypermediaType.HAL)
 public class DemoRestApplication {
@@ -18,7 +18,7 @@ public class MedicationModelAssembler implements RepresentationModelAssembler<Me
         return EntityModel.of(medication,
                 linkTo(methodOn(MedicationController.class).getMedicationById(medication.getId())).withSelfRel(),
                 linkTo(methodOn(ManufacturerController.class).getManufacturerById(medication.getManufacturer().getId())).withRel("manufacturer"),
-                linkTo(methodOn(MedicationController.class).getAllMedications(null, null, null, 0, 10)).withRel("collection"),
+                linkTo(methodOn(MedicationController.class).getAllMedications(null, null, null, null, 0, 10)).withRel("collection"),
                 linkTo(methodOn(MedicationController.class).getPrescriptionMedications(0, 10)).withRel("prescription-medications"),
                 linkTo(methodOn(MedicationController.class).getOverTheCounterMedications(0, 10)).withRel("otc-medications")
         );
@@ -0,0 +1,43 @@
+package edu.rutmiit.demo.demorest.config;
+
+import edu.rutmiit.demo.demorest.service.DrugInteractionService;
+import edu.rutmiit.demo.demorest.service.InteractionClientProperties;
+import grpc.demo.DrugInteractionServiceGrpc;
+import io.grpc.MethodDescriptor;
+import net.devh.boot.grpc.client.channelfactory.GrpcChannelConfigurer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@EnableConfigurationProperties(InteractionClientProperties.class)
+public class GrpcClientConfig {
+
+    // Хеджирование одиночной проверки задаётся service config канала, копии шлёт сам gRPC
+    // в пределах срока вызова. Корзины не хеджируются: копия удвоила бы нагрузку на сервер
+    @Bean
+    public GrpcChannelConfigurer interactionHedgingConfigurer(InteractionClientProperties properties) {
+        return (channelBuilder, name) -> {
+            InteractionClientProperties.Hedging hedging = properties.hedging();
+            if (!hedging.enabled() || !DrugInteractionService.CLIENT.equals(name)) {
+                return;
+            }
+            MethodDescriptor<?, ?> method = DrugInteractionServiceGrpc.getCheckDrugInteractionMethod();
+            // Числа в service config — Double, длительности — строки вида "0.05s"
+            Map<String, Object> policy = Map.of(
+                    "maxAttempts", (double) hedging.maxAttempts(),
+                    "hedgingDelay", hedging.delay().toNanos() / 1e9 + "s",
+                    "nonFatalStatusCodes", List.of("UNAVAILABLE"));
+            Map<String, Object> methodConfig = Map.of(
+                    "name", List.of(Map.of(
+                            "service", method.getServiceName(),
+                            "method", method.getBareMethodName())),
+                    "hedgingPolicy", policy);
+            channelBuilder.defaultServiceConfig(Map.of("methodConfig", List.of(methodConfig)))
+                    .enableRetry();
+        };
+    }
+}
@@ -1,5 +1,10 @@
 package edu.rutmiit.demo.demorest.config;
 
+import edu.rutmiit.demo.events.BinaryEventMessageConverter;
+import edu.rutmiit.demo.events.RecentEventIds;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
@@ -7,9 +12,12 @@ import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 public class RabbitMQConfig {
     public static final String EXCHANGE_NAME = "medications-exchange";
@@ -35,8 +43,29 @@ public class RabbitMQConfig {
         return new TopicExchange(INTERACTIONS_EXCHANGE);
     }
 
+    // Входящие сообщения разбираются по content-type: двоичные события и JSON принимаются одновременно,
+    // поэтому отправителей можно переключать по одному. Формат отправки — events.wire-format (json по умолчанию | binary)
+    @Bean
+    public MessageConverter jsonMessageConverter(@Value("${events.wire-format:json}") String wireFormat) {
+        return BinaryEventMessageConverter.byContentType(new Jackson2JsonMessageConverter(), wireFormat);
+    }
+
+    // Идентификаторы недавно обработанных событий: повторные доставки отбрасываются по заголовку event-id.
+    // Доля дубликатов — events.dedup.duplicates / events.dedup.lookups
     @Bean
-    public MessageConverter jsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public RecentEventIds recentEventIds(@Value("${events.dedup.window:2m}") Duration window,
+                                         @Value("${events.dedup.max-entries:1000000}") int maxEntries,
+                                         MeterRegistry meterRegistry) {
+        RecentEventIds recentEventIds = new RecentEventIds(window, maxEntries);
+        FunctionCounter.builder("events.dedup.lookups", recentEventIds, RecentEventIds::lookups)
+                .register(meterRegistry);
+        FunctionCounter.builder("events.dedup.duplicates", recentEventIds, RecentEventIds::duplicates)
+                .register(meterRegistry);
+        Gauge.builder("events.dedup.hit.ratio", recentEventIds,
+                        ids -> ids.lookups() == 0 ? 0 : (double) ids.duplicates() / ids.lookups())
+                .register(meterRegistry);
+        Gauge.builder("events.dedup.size", recentEventIds, RecentEventIds::size)
+                .register(meterRegistry);
+        return recentEventIds;
     }
-}
\ No newline at end of file
+}
@@ -1,46 +1,86 @@
 package edu.rutmiit.demo.demorest.controllers;
 
 import edu.rutmiit.demo.demorest.config.RabbitMQConfig;
+import edu.rutmiit.demo.demorest.outbox.EventOutbox;
+import edu.rutmiit.demo.demorest.service.DrugInteractionService;
 import edu.rutmiit.demo.events.DrugInteractionCheckedEvent;
-import grpc.demo.DrugInteractionServiceGrpc;
+import edu.rutmiit.demo.medicinescontract.exception.MedicationValidationException;
 import grpc.demo.DrugInteractionRequest;
 import grpc.demo.DrugInteractionResponse;
-import net.devh.boot.grpc.client.inject.GrpcClient;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/drug-interactions")
 public class DrugInteractionController {
 
-    @GrpcClient("drug-interaction-service")
-    private DrugInteractionServiceGrpc.DrugInteractionServiceBlockingStub drugInteractionStub;
+    // Больше — разбивайте на несколько запросов
+    private static final int MAX_BATCH_SIZE = 1000;
 
-    private final RabbitTemplate rabbitTemplate;
+    private final DrugInteractionService drugInteractionService;
+    private final EventOutbox eventOutbox;
 
-    public DrugInteractionController(RabbitTemplate rabbitTemplate) {
-        this.rabbitTemplate = rabbitTemplate;
+    public DrugInteractionController(DrugInteractionService drugInteractionService, EventOutbox eventOutbox) {
+        this.drugInteractionService = drugInteractionService;
+        this.eventOutbox = eventOutbox;
     }
 
+    // Повторные проверки берутся из кэша DrugInteractionService, но событие публикуется
+    // на каждую проверку, чтобы журнал аудита оставался полным. Время ответа ограничено сроком
+    // вызова gRPC: при сбое analytics-service приходит ответ с degraded = true
     @PostMapping("/check")
-    public DrugInteractionResponse checkDrugInteraction(@RequestBody InteractionCheckRequest request) {
-        // Вызов gRPC сервиса
-        DrugInteractionRequest grpcRequest = DrugInteractionRequest.newBuilder()
+    public CompletableFuture<InteractionCheckResult> checkDrugInteraction(@RequestBody InteractionCheckRequest request) {
+        return drugInteractionService.check(toGrpcRequest(request))
+                .thenApply(grpcResponse -> {
+                    publishChecked(grpcResponse);
+                    return InteractionCheckResult.from(grpcResponse);
+                });
+    }
+
+    // Корзина проверяется одним вызовом CheckDrugInteractionsBatch вместо N вызовов;
+    // поток запроса не ждёт ответа analytics-service. Ответы — в порядке запросов
+    @PostMapping("/check-batch")
+    public CompletableFuture<List<InteractionCheckResult>> checkDrugInteractions(
+            @RequestBody List<InteractionCheckRequest> requests) {
+        if (requests.size() > MAX_BATCH_SIZE) {
+            throw new MedicationValidationException("At most " + MAX_BATCH_SIZE + " checks per batch");
+        }
+        List<DrugInteractionRequest> grpcRequests = requests.stream()
+                .map(DrugInteractionController::toGrpcRequest)
+                .toList();
+        return drugInteractionService.checkBatch(grpcRequests)
+                .thenApply(responses -> responses.stream()
+                        .map(grpcResponse -> {
+                            publishChecked(grpcResponse);
+                            return InteractionCheckResult.from(grpcResponse);
+                        })
+                        .toList());
+    }
+
+    private static DrugInteractionRequest toGrpcRequest(InteractionCheckRequest request) {
+        DrugInteractionRequest.Builder builder = DrugInteractionRequest.newBuilder()
                 .setDrugId(request.drugId())
                 .setDrugName(request.drugName())
-                .addAllConcurrentDrugs(request.concurrentDrugs())
-                .setPatientAge(request.patientAge())
-                .setPatientCondition(request.patientCondition())
-                .build();
-
-        DrugInteractionResponse grpcResponse = drugInteractionStub.checkDrugInteraction(grpcRequest);
+                .setPatientAge(request.patientAge());
+        if (request.concurrentDrugs() != null) {
+            builder.addAllConcurrentDrugs(request.concurrentDrugs());
+        }
+        if (request.patientCondition() != null) {
+            builder.setPatientCondition(request.patientCondition());
+        }
+        return builder.build();
+    }
 
-        // Отправка события
+    // Отправка события без ожидания брокера. Непроведённая проверка в аудит не попадает
+    private void publishChecked(DrugInteractionResponse grpcResponse) {
+        if (DrugInteractionService.isDegraded(grpcResponse)) {
+            return;
+        }
         DrugInteractionCheckedEvent event = new DrugInteractionCheckedEvent(
                 grpcResponse.getDrugId(),
                 grpcResponse.getDrugName(),
@@ -50,11 +90,9 @@ public class DrugInteractionController {
                 grpcResponse.getRecommendation()
         );
 
-        rabbitTemplate.convertAndSend(RabbitMQConfig.INTERACTIONS_EXCHANGE,
+        eventOutbox.enqueue(RabbitMQConfig.INTERACTIONS_EXCHANGE,
                 RabbitMQConfig.ROUTING_KEY_INTERACTION_CHECKED,
                 event);
-
-        return grpcResponse;
     }
 
     public record InteractionCheckRequest(
@@ -64,4 +102,31 @@ public class DrugInteractionController {
             int patientAge,
             String patientCondition
     ) {}
-}
\ No newline at end of file
+
+    // Ответ API: сообщения protobuf не сериализуются Jackson напрямую
+    public record InteractionCheckResult(
+            long drugId,
+            String drugName,
+            int riskLevel,
+            String severity,
+            List<String> contraindications,
+            List<String> warnings,
+            String recommendation,
+            String interactionDetails,
+            boolean degraded
+    ) {
+        static InteractionCheckResult from(DrugInteractionResponse response) {
+            return new InteractionCheckResult(
+                    response.getDrugId(),
+                    response.getDrugName(),
+                    response.getRiskLevel(),
+                    response.getSeverity(),
+                    List.copyOf(response.getContraindicationsList()),
+                    List.copyOf(response.getWarningsList()),
+                    response.getRecommendation(),
+                    response.getInteractionDetails(),
+                    DrugInteractionService.isDegraded(response)
+            );
+        }
+    }
+}
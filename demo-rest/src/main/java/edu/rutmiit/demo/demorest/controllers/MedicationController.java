@@ -1,5 +1,8 @@
 package edu.rutmiit.demo.demorest.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.rutmiit.demo.medicinescontract.dto.*;
 import edu.rutmiit.demo.medicinescontract.endpoints.MedicationApi;
 import edu.rutmiit.demo.demorest.assemblers.MedicationModelAssembler;
@@ -9,23 +12,49 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.PagedModel;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
 @RestController
 public class MedicationController implements MedicationApi {
 
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
     private final MedicationService medicationService;
     private final MedicationModelAssembler medicationModelAssembler;
     private final PagedResourcesAssembler<MedicationResponse> pagedResourcesAssembler;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper exportObjectMapper;
 
     public MedicationController(MedicationService medicationService,
                                 MedicationModelAssembler medicationModelAssembler,
-                                PagedResourcesAssembler<MedicationResponse> pagedResourcesAssembler) {
+                                PagedResourcesAssembler<MedicationResponse> pagedResourcesAssembler,
+                                ObjectMapper objectMapper) {
         this.medicationService = medicationService;
         this.medicationModelAssembler = medicationModelAssembler;
         this.pagedResourcesAssembler = pagedResourcesAssembler;
+        this.objectMapper = objectMapper;
+        this.exportObjectMapper = MedicationExportWriter.exportObjectMapper(objectMapper);
     }
 
     @Override
@@ -36,7 +65,11 @@ public class MedicationController implements MedicationApi {
 
     @Override
     public PagedModel<EntityModel<MedicationResponse>> getAllMedications(Long manufacturerId, String atcCode,
-                                                                         String search, int page, int size) {
+                                                                         String search, String after, int page, int size) {
+        if (after != null) {
+            return getMedicationsAfter(manufacturerId, atcCode, search, after, size);
+        }
+
         PagedResponse<MedicationResponse> pagedResponse = medicationService.findAllMedications(
                 manufacturerId, atcCode, search, page, size);
 
@@ -46,7 +79,59 @@ public class MedicationController implements MedicationApi {
                 pagedResponse.totalElements()
         );
 
-        return pagedResourcesAssembler.toModel(medicationPage, medicationModelAssembler);
+        PagedModel<EntityModel<MedicationResponse>> model = pagedResourcesAssembler.toModel(medicationPage, medicationModelAssembler);
+        if (pagedResponse.nextCursor() != null) {
+            // Позволяет перейти на курсорную пагинацию с любой страницы
+            model.add(linkTo(methodOn(MedicationController.class).getAllMedications(
+                    manufacturerId, atcCode, search, pagedResponse.nextCursor(), 0, size)).withRel("next-cursor"));
+        }
+        return model;
+    }
+
+    // Курсорная страница не знает общего количества элементов, поэтому отдаётся без метаданных page
+    private PagedModel<EntityModel<MedicationResponse>> getMedicationsAfter(Long manufacturerId, String atcCode,
+                                                                            String search, String after, int size) {
+        PagedResponse<MedicationResponse> pagedResponse = medicationService.findMedicationsAfter(
+                manufacturerId, atcCode, search, after, size);
+
+        List<EntityModel<MedicationResponse>> content = pagedResponse.content().stream()
+                .map(medicationModelAssembler::toModel)
+                .toList();
+
+        List<Link> links = new ArrayList<>();
+        links.add(linkTo(methodOn(MedicationController.class).getAllMedications(
+                manufacturerId, atcCode, search, after, 0, size)).withSelfRel());
+        if (pagedResponse.nextCursor() != null) {
+            links.add(linkTo(methodOn(MedicationController.class).getAllMedications(
+                    manufacturerId, atcCode, search, pagedResponse.nextCursor(), 0, size)).withRel("next-cursor"));
+        }
+
+        return PagedModel.of(content, (PagedModel.PageMetadata) null, links);
+    }
+
+    // Выгрузка читает хранилище потоком и пишет строки сразу в ответ, минуя HATEOAS-обёртку и пагинацию
+    @Override
+    public ResponseEntity<StreamingResponseBody> exportMedications(Long manufacturerId, String atcCode, String search,
+                                                                   String format, String acceptEncoding) {
+        MedicationExportWriter writer = MedicationExportWriter.forFormat(format);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+
+        StreamingResponseBody body = out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, EXPORT_BUFFER_SIZE) : out;
+            try (Stream<MedicationResponse> medications = medicationService.streamMedications(manufacturerId, atcCode, search);
+                 OutputStream buffered = new BufferedOutputStream(target, EXPORT_BUFFER_SIZE)) {
+                writer.write(medications, buffered, exportObjectMapper);
+            }
+        };
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(writer.mediaType());
+        headers.setContentDisposition(ContentDisposition.attachment().filename(writer.fileName()).build());
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return ResponseEntity.ok().headers(headers).body(body);
     }
 
     @Override
@@ -85,6 +170,31 @@ public class MedicationController implements MedicationApi {
                 .body(entityModel);
     }
 
+    // Тело запроса читается по мере обработки: MappingIterator перебирает и элементы JSON-массива,
+    // и значения NDJSON, поэтому весь импорт в память не загружается. Результаты каждой порции
+    // сразу отправляются клиенту
+    @Override
+    public ResponseEntity<StreamingResponseBody> importMedications(boolean upsert, InputStream body) {
+        StreamingResponseBody stream = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+                 MappingIterator<MedicationRequest> requests = objectMapper.readerFor(MedicationRequest.class).readValues(body)) {
+                generator.setRootValueSeparator(null);
+                medicationService.importMedications(requests, upsert, results -> {
+                    try {
+                        for (BulkImportResult result : results) {
+                            generator.writeObject(result);
+                            generator.writeRaw('\n');
+                        }
+                        generator.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(stream);
+    }
+
     @Override
     public EntityModel<MedicationResponse> updateMedication(Long id, UpdateMedicationRequest request) {
         MedicationResponse updatedMedication = medicationService.updateMedication(id, request);
@@ -0,0 +1,126 @@
+package edu.rutmiit.demo.demorest.controllers;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
+import edu.rutmiit.demo.medicinescontract.dto.MedicationResponse;
+import edu.rutmiit.demo.medicinescontract.exception.MedicationValidationException;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.http.MediaType;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+// Построчная запись выгрузки каталога. Каждая строка сразу уходит в буфер выходного потока,
+// поэтому расход памяти не зависит от количества выгружаемых лекарств
+enum MedicationExportWriter {
+
+    NDJSON(MediaType.APPLICATION_NDJSON, "ndjson") {
+        @Override
+        void write(Stream<MedicationResponse> medications, OutputStream out, ObjectMapper objectMapper) throws IOException {
+            ObjectWriter writer = objectMapper.writerFor(MedicationResponse.class);
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                Iterator<MedicationResponse> iterator = medications.iterator();
+                while (iterator.hasNext()) {
+                    writer.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                }
+            }
+        }
+    },
+
+    CSV(new MediaType("text", "csv", StandardCharsets.UTF_8), "csv") {
+        private static final String HEADER = "id,name,inn,atcCode,dosageForm,dosage,unit,manufacturerId,manufacturerName,"
+                + "prescriptionRequired,storageConditions,shelfLifeMonths,createdAt";
+
+        @Override
+        void write(Stream<MedicationResponse> medications, OutputStream out, ObjectMapper objectMapper) throws IOException {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                writer.write(HEADER);
+                writer.write("\r\n");
+                Iterator<MedicationResponse> iterator = medications.iterator();
+                while (iterator.hasNext()) {
+                    writeRow(writer, iterator.next());
+                }
+            }
+        }
+
+        private void writeRow(Writer writer, MedicationResponse medication) throws IOException {
+            ManufacturerResponse manufacturer = medication.getManufacturer();
+            Object[] values = {
+                    medication.getId(), medication.getName(), medication.getInn(), medication.getAtcCode(),
+                    medication.getDosageForm(),
+                    medication.getDosage() == null ? null : medication.getDosage().toPlainString(),
+                    medication.getUnit(),
+                    manufacturer == null ? null : manufacturer.getId(),
+                    manufacturer == null ? null : manufacturer.getName(),
+                    medication.getPrescriptionRequired(), medication.getStorageConditions(),
+                    medication.getShelfLifeMonths(), medication.getCreatedAt()
+            };
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (values[i] != null) {
+                    writer.write(escape(values[i].toString()));
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        // RFC 4180: значения с разделителем, кавычкой или переводом строки берутся в кавычки
+        private String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    };
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    MedicationExportWriter(MediaType mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    MediaType mediaType() {
+        return mediaType;
+    }
+
+    String fileName() {
+        return "medications." + extension;
+    }
+
+    abstract void write(Stream<MedicationResponse> medications, OutputStream out, ObjectMapper objectMapper)
+            throws IOException;
+
+    // Выгружаются данные, а не ресурсы API: пустые массивы links в каждой строке только увеличивают объём
+    static ObjectMapper exportObjectMapper(ObjectMapper objectMapper) {
+        return objectMapper.copy().addMixIn(RepresentationModel.class, WithoutLinks.class);
+    }
+
+    @JsonIgnoreProperties("links")
+    private abstract static class WithoutLinks {
+    }
+
+    static MedicationExportWriter forFormat(String format) {
+        try {
+            return valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new MedicationValidationException("Неизвестный формат выгрузки: " + format
+                    + ". Поддерживаются ndjson и csv", e);
+        }
+    }
+}
@@ -17,7 +17,7 @@ public class RootController {
         RepresentationModel<?> rootModel = new RepresentationModel<>();
         rootModel.add(
                 linkTo(methodOn(ManufacturerController.class).getAllManufacturers()).withRel("manufacturers"),
-                linkTo(methodOn(MedicationController.class).getAllMedications(null, null, null, 0, 10)).withRel("medications"),
+                linkTo(methodOn(MedicationController.class).getAllMedications(null, null, null, null, 0, 10)).withRel("medications"),
                 linkTo(methodOn(MedicationController.class).getPrescriptionMedications(0, 10)).withRel("prescription-medications"),
                 linkTo(methodOn(MedicationController.class).getOverTheCounterMedications(0, 10)).withRel("otc-medications")
         );
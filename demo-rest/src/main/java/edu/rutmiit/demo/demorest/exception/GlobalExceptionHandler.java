@@ -2,6 +2,7 @@ package edu.rutmiit.demo.demorest.exception;
 
 import edu.rutmiit.demo.medicinescontract.dto.StatusResponse;
 import edu.rutmiit.demo.medicinescontract.exception.InnAlreadyExistsException;
+import edu.rutmiit.demo.medicinescontract.exception.MedicationValidationException;
 import edu.rutmiit.demo.medicinescontract.exception.ResourceNotFoundException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -28,6 +29,13 @@ public class GlobalExceptionHandler {
                 .body(new StatusResponse("error", ex.getMessage()));
     }
 
+    @ExceptionHandler(MedicationValidationException.class)
+    public ResponseEntity<StatusResponse> handleMedicationValidation(MedicationValidationException ex) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(new StatusResponse("error", ex.getMessage()));
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<StatusResponse> handleMethodArgumentNotValid(MethodArgumentNotValidException ex) {
         String errorMessage = ex.getBindingResult().getFieldErrors().stream()
@@ -39,13 +39,36 @@ public class MedicationDataFetcher {
             @InputArgument Long manufacturerId,
             @InputArgument String atcCode,
             @InputArgument String search,
+            @InputArgument String after,
             @InputArgument Integer page,
             @InputArgument Integer size) {
         int pageNum = page != null ? page : 0;
         int pageSize = size != null ? size : 10;
+        // При наличии курсора используем курсорную пагинацию, page игнорируется
+        if (after != null) {
+            return medicationService.findMedicationsAfter(manufacturerId, atcCode, search, after, pageSize);
+        }
         return medicationService.findAllMedications(manufacturerId, atcCode, search, pageNum, pageSize);
     }
 
+    @DgsQuery
+    public PagedResponse<MedicationResponse> prescriptionMedications(
+            @InputArgument Integer page,
+            @InputArgument Integer size) {
+        int pageNum = page != null ? page : 0;
+        int pageSize = size != null ? size : 10;
+        return medicationService.findPrescriptionMedications(pageNum, pageSize);
+    }
+
+    @DgsQuery
+    public PagedResponse<MedicationResponse> overTheCounterMedications(
+            @InputArgument Integer page,
+            @InputArgument Integer size) {
+        int pageNum = page != null ? page : 0;
+        int pageSize = size != null ? size : 10;
+        return medicationService.findOverTheCounterMedications(pageNum, pageSize);
+    }
+
     // Этот метод разрешает вложенное поле 'manufacturer' внутри типа 'Medication'
     @DgsData(parentType = "Medication", field = "manufacturer")
     public ManufacturerResponse manufacturer(DataFetchingEnvironment dfe) {
@@ -0,0 +1,31 @@
+package edu.rutmiit.demo.demorest.listeners;
+
+import edu.rutmiit.demo.demorest.service.DrugInteractionService;
+import edu.rutmiit.demo.events.InteractionDatasetChangedEvent;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+// Объявления analytics-service о смене набора данных. Очередь анонимная и своя у каждого
+// экземпляра: кэш проверок нужно сбросить везде
+@Component
+public class InteractionDatasetListener {
+
+    private final DrugInteractionService drugInteractionService;
+
+    public InteractionDatasetListener(DrugInteractionService drugInteractionService) {
+        this.drugInteractionService = drugInteractionService;
+    }
+
+    @RabbitListener(
+            bindings = @QueueBinding(
+                    value = @Queue,
+                    exchange = @Exchange(name = "interactions-dataset", type = "fanout")
+            )
+    )
+    public void onDatasetChanged(InteractionDatasetChangedEvent event) {
+        drugInteractionService.datasetChanged(event.datasetVersion());
+    }
+}
@@ -5,19 +5,29 @@ import org.springframework.amqp.rabbit.annotation.Exchange;
 import org.springframework.amqp.rabbit.annotation.Queue;
 import org.springframework.amqp.rabbit.annotation.QueueBinding;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+// Повторные доставки (повтор партии outbox, возврат в очередь) отбрасываются по заголовку event-id
 @Component
 public class InternalAnalyticsListener {
 
+    private final RecentEventIds recentEventIds;
+
+    public InternalAnalyticsListener(RecentEventIds recentEventIds) {
+        this.recentEventIds = recentEventIds;
+    }
+
     @RabbitListener(
             bindings = @QueueBinding(
                     value = @Queue(name = "q.demorest.analytics.log", durable = "true"),
                     exchange = @Exchange(name = "analytics-fanout", type = "fanout")
             )
     )
-    public void logRating(UserRatedEvent event) {
-        System.out.println("User rated: " + event.userId() + " with rating: " + event.rating());
+    public void logRating(UserRatedEvent event,
+                          @Header(name = EventHeaders.EVENT_ID, required = false) String eventId) {
+        recentEventIds.processOnce(eventId, () ->
+                System.out.println("User rated: " + event.userId() + " with rating: " + event.rating()));
     }
 
     @RabbitListener(
@@ -27,10 +37,12 @@ public class InternalAnalyticsListener {
                     key = "medication.created"
             )
     )
-    public void logMedicationCreated(MedicationCreatedEvent event) {
-        System.out.println("Medication created: " + event.medicationName() +
-                " (INN: " + event.inn() + ", Manufacturer: " +
-                event.manufacturerName() + ")");
+    public void logMedicationCreated(MedicationCreatedEvent event,
+                                     @Header(name = EventHeaders.EVENT_ID, required = false) String eventId) {
+        recentEventIds.processOnce(eventId, () ->
+                System.out.println("Medication created: " + event.medicationName() +
+                        " (INN: " + event.inn() + ", Manufacturer: " +
+                        event.manufacturerName() + ")"));
     }
 
     @RabbitListener(
@@ -40,9 +52,11 @@ public class InternalAnalyticsListener {
                     key = "interaction.checked"
             )
     )
-    public void logInteractionChecked(DrugInteractionCheckedEvent event) {
-        System.out.println("Drug interaction checked: " + event.medicationName() +
-                " (Risk Level: " + event.riskLevel() +
-                ", Severity: " + event.severity() + ")");
+    public void logInteractionChecked(DrugInteractionCheckedEvent event,
+                                      @Header(name = EventHeaders.EVENT_ID, required = false) String eventId) {
+        recentEventIds.processOnce(eventId, () ->
+                System.out.println("Drug interaction checked: " + event.medicationName() +
+                        " (Risk Level: " + event.riskLevel() +
+                        ", Severity: " + event.severity() + ")"));
     }
 }
\ No newline at end of file
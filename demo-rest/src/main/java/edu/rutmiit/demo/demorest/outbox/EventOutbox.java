@@ -0,0 +1,267 @@
+package edu.rutmiit.demo.demorest.outbox;
+
+import edu.rutmiit.demo.events.EventHeaders;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Очередь исходящих событий. Потоки запросов только ставят событие в очередь и не ждут брокер;
+// фоновый публикатор забирает события партиями до batchSize, отправляет партию через один канал
+// и ждёт подтверждения брокера (publisher confirms). Пока партия не подтверждена, она повторяется
+// с экспоненциальной задержкой, поэтому доставка «хотя бы один раз»: при повторе получатель
+// может увидеть событие дважды и отбрасывает повтор по заголовку event-id.
+// Ёмкость ограничена: при переполнении событие отклоняется, а не задерживает запрос
+public class EventOutbox implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(EventOutbox.class);
+
+    // Журнал переписывается без подтверждённых событий, когда дорастает до этого размера
+    private static final long JOURNAL_COMPACT_THRESHOLD = 4L * 1024 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final RabbitTemplate rabbitTemplate;
+    private final OutboxProperties properties;
+    private final OutboxJournal journal;
+    private final boolean confirms;
+
+    // Без журнала очередь неблокирующая: постановка — это CAS счётчика и вставка в ConcurrentLinkedQueue.
+    // С журналом запись в файл и вставка в очередь идут под монитором журнала, чтобы порядок совпадал
+    private final Queue<OutboxMessage> queue = new ConcurrentLinkedQueue<>();
+    // Поставленные и ещё не подтверждённые события, включая партию в отправке
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Timer publishLatency;
+    private final Counter published;
+    private final Counter rejected;
+    private final Counter publishFailures;
+
+    private volatile boolean running;
+    private volatile Thread publisher;
+
+    public EventOutbox(RabbitTemplate rabbitTemplate, MeterRegistry meterRegistry, OutboxProperties properties,
+                       @Nullable OutboxJournal journal) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.properties = properties;
+        this.journal = journal;
+        ConnectionFactory connectionFactory = rabbitTemplate.getConnectionFactory();
+        this.confirms = connectionFactory != null && connectionFactory.isSimplePublisherConfirms();
+        if (!confirms) {
+            log.warn("Publisher confirms are disabled (spring.rabbitmq.publisher-confirm-type is not 'simple'): "
+                    + "outbox events are considered delivered once written to the channel");
+        }
+
+        Gauge.builder("medics.outbox.depth", depth, AtomicInteger::get)
+                .description("Events queued or in flight and not yet confirmed by the broker")
+                .register(meterRegistry);
+        this.publishLatency = Timer.builder("medics.outbox.publish.latency")
+                .description("Time from enqueueing an event to its broker confirmation")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.published = Counter.builder("medics.outbox.published").register(meterRegistry);
+        this.rejected = Counter.builder("medics.outbox.rejected")
+                .description("Events dropped because the outbox was full")
+                .register(meterRegistry);
+        this.publishFailures = Counter.builder("medics.outbox.publish.failures")
+                .description("Batches that failed and were scheduled for retry")
+                .register(meterRegistry);
+
+        if (journal != null) {
+            for (OutboxMessage message : journal.recover()) {
+                queue.offer(message);
+                depth.incrementAndGet();
+                sequence.set(Math.max(sequence.get(), message.sequence()));
+            }
+        }
+    }
+
+    // Ставит событие в очередь на отправку. false — очередь переполнена и событие отброшено
+    public boolean enqueue(String exchange, String routingKey, Object event) {
+        if (!reserve()) {
+            rejected.increment();
+            log.error("Outbox is full ({} events), dropping {} for {}/{}",
+                    properties.capacity(), event.getClass().getSimpleName(), exchange, routingKey);
+            return false;
+        }
+        String eventId = UUID.randomUUID().toString();
+        if (journal == null) {
+            queue.offer(new OutboxMessage(
+                    sequence.incrementAndGet(), eventId, exchange, routingKey, event, System.nanoTime()));
+        } else {
+            synchronized (journal) {
+                OutboxMessage message = new OutboxMessage(
+                        sequence.incrementAndGet(), eventId, exchange, routingKey, event, System.nanoTime());
+                try {
+                    journal.append(message);
+                } catch (RuntimeException e) {
+                    // Событие всё равно отправится, но не переживёт перезапуск
+                    log.error("Failed to journal outbox event {}", message.sequence(), e);
+                }
+                queue.offer(message);
+            }
+        }
+        Thread current = publisher;
+        if (current != null) {
+            LockSupport.unpark(current);
+        }
+        return true;
+    }
+
+    public int depth() {
+        return depth.get();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::publishLoop, "medics-outbox");
+        thread.setDaemon(true);
+        publisher = thread;
+        thread.start();
+    }
+
+    // Публикатор дорабатывает очередь в пределах shutdownTimeout; то, что не успело уйти,
+    // остаётся в журнале до следующего запуска (без журнала — теряется)
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = publisher;
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(properties.shutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            thread.interrupt();
+        }
+        publisher = null;
+        int left = depth.get();
+        if (left > 0) {
+            log.warn("Outbox stopped with {} unpublished events{}", left,
+                    journal == null ? " (lost: no journal configured)" : " (kept in journal)");
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Останавливается позже веб-сервера и слушателей, чтобы забрать события завершающихся запросов
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
+    private boolean reserve() {
+        int current;
+        do {
+            current = depth.get();
+            if (current >= properties.capacity()) {
+                return false;
+            }
+        } while (!depth.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void publishLoop() {
+        List<OutboxMessage> batch = new ArrayList<>(properties.batchSize());
+        long backoffNanos = properties.initialBackoff().toNanos();
+        while (!Thread.currentThread().isInterrupted()) {
+            // Неподтверждённая партия повторяется целиком и в том же порядке
+            OutboxMessage next;
+            while (batch.size() < properties.batchSize() && (next = queue.poll()) != null) {
+                batch.add(next);
+            }
+            if (batch.isEmpty()) {
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            try {
+                publish(batch);
+                acknowledge(batch);
+                batch.clear();
+                backoffNanos = properties.initialBackoff().toNanos();
+            } catch (RuntimeException e) {
+                publishFailures.increment();
+                if (!running) {
+                    return;
+                }
+                log.warn("Failed to publish {} outbox events, retrying in {} ms: {}",
+                        batch.size(), TimeUnit.NANOSECONDS.toMillis(backoffNanos), e.getMessage());
+                LockSupport.parkNanos(this, backoffNanos);
+                backoffNanos = Math.min(backoffNanos * 2, properties.maxBackoff().toNanos());
+            }
+        }
+    }
+
+    private void publish(List<OutboxMessage> batch) {
+        if (journal != null) {
+            journal.sync();
+        }
+        rabbitTemplate.invoke(operations -> {
+            for (OutboxMessage message : batch) {
+                operations.convertAndSend(message.exchange(), message.routingKey(), message.payload(), amqpMessage -> {
+                    amqpMessage.getMessageProperties().setMessageId(message.eventId());
+                    amqpMessage.getMessageProperties().setHeader(EventHeaders.EVENT_ID, message.eventId());
+                    return amqpMessage;
+                });
+            }
+            if (confirms) {
+                // Брокер подтверждает партию целиком; nack или тайм-аут — исключение и повтор партии
+                operations.waitForConfirmsOrDie(properties.confirmTimeout().toMillis());
+            }
+            return null;
+        });
+    }
+
+    private void acknowledge(List<OutboxMessage> batch) {
+        long now = System.nanoTime();
+        for (OutboxMessage message : batch) {
+            publishLatency.record(now - message.enqueuedNanos(), TimeUnit.NANOSECONDS);
+        }
+        published.increment(batch.size());
+        depth.addAndGet(-batch.size());
+        if (journal == null) {
+            return;
+        }
+        try {
+            synchronized (journal) {
+                journal.acknowledge(batch.getLast().sequence());
+                if (journal.size() > JOURNAL_COMPACT_THRESHOLD) {
+                    journal.compact(List.copyOf(queue));
+                }
+            }
+        } catch (RuntimeException e) {
+            // Партия уже доставлена: после перезапуска она будет отправлена повторно
+            log.error("Failed to record outbox acknowledgement", e);
+        }
+    }
+}
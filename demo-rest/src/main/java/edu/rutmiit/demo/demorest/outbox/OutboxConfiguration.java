@@ -0,0 +1,23 @@
+package edu.rutmiit.demo.demorest.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Файл очереди подключается свойством medics.outbox.journal
+@Configuration
+@EnableConfigurationProperties(OutboxProperties.class)
+public class OutboxConfiguration {
+
+    @Bean
+    public EventOutbox eventOutbox(RabbitTemplate rabbitTemplate, MeterRegistry meterRegistry,
+                                   OutboxProperties properties, ObjectMapper objectMapper) {
+        OutboxJournal journal = properties.journal() == null
+                ? null
+                : new OutboxJournal(properties.journal(), objectMapper);
+        return new EventOutbox(rabbitTemplate, meterRegistry, properties, journal);
+    }
+}
@@ -0,0 +1,225 @@
+package edu.rutmiit.demo.demorest.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// Файл, в котором очередь событий переживает перезапуск процесса.
+// Кадры [длина][crc32][запись], как в журнале хранилища: постановка события и подтверждение
+// отправки всех событий до номера N включительно. Публикатор один и отправляет события по порядку,
+// поэтому неотправленными при восстановлении считаются события с номером больше последнего подтверждения
+public class OutboxJournal implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxJournal.class);
+
+    private static final int FRAME_HEADER = Integer.BYTES * 2;
+    private static final byte ENQUEUED = 1;
+    private static final byte ACKNOWLEDGED = 2;
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+
+    private FileChannel channel;
+    private long size;
+
+    public OutboxJournal(Path path, ObjectMapper objectMapper) {
+        this.path = path;
+        this.objectMapper = objectMapper;
+    }
+
+    // Читает журнал и переписывает его, оставив только неотправленные события.
+    // Оборванный при сбое хвост отбрасывается
+    public synchronized List<OutboxMessage> recover() {
+        if (channel != null) {
+            throw new IllegalStateException("Outbox journal is already open");
+        }
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Map<Long, OutboxMessage> pending = new LinkedHashMap<>();
+            if (Files.exists(path)) {
+                readFrames(pending);
+            }
+            List<OutboxMessage> messages = new ArrayList<>(pending.values());
+            rewrite(messages);
+            if (!messages.isEmpty()) {
+                log.info("Recovered {} unpublished events from {}", messages.size(), path);
+            }
+            return messages;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover outbox journal " + path, e);
+        }
+    }
+
+    public synchronized void append(OutboxMessage message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ENQUEUED);
+            out.writeLong(message.sequence());
+            out.writeUTF(message.eventId());
+            out.writeUTF(message.exchange());
+            out.writeUTF(message.routingKey());
+            out.writeUTF(message.payload().getClass().getName());
+            byte[] payload = objectMapper.writeValueAsBytes(message.payload());
+            out.writeInt(payload.length);
+            out.write(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        write(bytes.toByteArray());
+    }
+
+    // Все события с номером до sequence включительно подтверждены брокером
+    public synchronized void acknowledge(long sequence) {
+        ByteBuffer record = ByteBuffer.allocate(1 + Long.BYTES).put(ACKNOWLEDGED).putLong(sequence);
+        write(record.array());
+    }
+
+    // Сбрасывает на диск всё дописанное: вызывается раз на партию, а не на каждое событие
+    public synchronized void sync() {
+        try {
+            open().force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sync outbox journal", e);
+        }
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    // Заменяет журнал файлом только с переданными событиями
+    public synchronized void compact(Collection<OutboxMessage> pending) {
+        try {
+            rewrite(pending);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact outbox journal", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            log.error("Failed to close outbox journal", e);
+        } finally {
+            channel = null;
+        }
+    }
+
+    private void readFrames(Map<Long, OutboxMessage> pending) throws IOException {
+        long fileSize = Files.size(path);
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (fileSize - valid >= FRAME_HEADER) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || length > fileSize - valid - FRAME_HEADER) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                in.readFully(record);
+                CRC32 crc = new CRC32();
+                crc.update(record);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(record)), pending);
+                valid += FRAME_HEADER + length;
+            }
+        }
+        if (valid < fileSize) {
+            log.warn("Dropping {} bytes of incomplete records in {}", fileSize - valid, path);
+        }
+    }
+
+    private void apply(DataInputStream in, Map<Long, OutboxMessage> pending) throws IOException {
+        byte type = in.readByte();
+        long sequence = in.readLong();
+        if (type == ACKNOWLEDGED) {
+            pending.keySet().removeIf(enqueued -> enqueued <= sequence);
+            return;
+        }
+        String eventId = in.readUTF();
+        String exchange = in.readUTF();
+        String routingKey = in.readUTF();
+        String payloadType = in.readUTF();
+        byte[] payload = in.readNBytes(in.readInt());
+        try {
+            Class<?> eventClass = Class.forName(payloadType, false, OutboxJournal.class.getClassLoader());
+            pending.put(sequence, new OutboxMessage(sequence, eventId, exchange, routingKey,
+                    objectMapper.readValue(payload, eventClass), System.nanoTime()));
+        } catch (ClassNotFoundException | IOException e) {
+            // Класс события удалён или изменён несовместимо: такое событие уже не отправить
+            log.error("Skipping unreadable outbox event {} of type {}", sequence, payloadType, e);
+        }
+    }
+
+    private void rewrite(Collection<OutboxMessage> pending) throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        size = 0;
+        for (OutboxMessage message : pending) {
+            append(message);
+        }
+        channel.force(true);
+        channel.close();
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void write(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER + record.length);
+        frame.putInt(record.length).putInt((int) crc.getValue()).put(record).flip();
+        try {
+            FileChannel target = open();
+            while (frame.hasRemaining()) {
+                target.write(frame);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to outbox journal", e);
+        }
+        size += frame.limit();
+    }
+
+    private FileChannel open() {
+        if (channel == null) {
+            throw new IllegalStateException("Outbox journal is not open");
+        }
+        return channel;
+    }
+}
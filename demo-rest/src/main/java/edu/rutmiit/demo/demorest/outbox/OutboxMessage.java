@@ -0,0 +1,12 @@
+package edu.rutmiit.demo.demorest.outbox;
+
+// Событие в очереди на отправку. eventId уходит в заголовке event-id и не меняется при повторах,
+// enqueuedNanos — момент постановки по System.nanoTime(), от него считается задержка публикации
+public record OutboxMessage(
+        long sequence,
+        String eventId,
+        String exchange,
+        String routingKey,
+        Object payload,
+        long enqueuedNanos
+) {}
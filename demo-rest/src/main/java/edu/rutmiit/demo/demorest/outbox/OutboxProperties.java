@@ -0,0 +1,19 @@
+package edu.rutmiit.demo.demorest.outbox;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+// journal не задан: очередь только в памяти, неотправленные события теряются при остановке процесса
+@ConfigurationProperties(prefix = "medics.outbox")
+public record OutboxProperties(
+        @DefaultValue("10000") int capacity,
+        @DefaultValue("100") int batchSize,
+        @DefaultValue("5s") Duration confirmTimeout,
+        @DefaultValue("200ms") Duration initialBackoff,
+        @DefaultValue("30s") Duration maxBackoff,
+        @DefaultValue("5s") Duration shutdownTimeout,
+        Path journal
+) {}
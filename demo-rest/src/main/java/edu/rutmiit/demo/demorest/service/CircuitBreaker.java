@@ -0,0 +1,121 @@
+package edu.rutmiit.demo.demorest.service;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+// Размыкатель цепи по доле сбоев среди последних вызовов.
+// CLOSED — вызовы идут, исходы пишутся в кольцевое окно; при доле сбоев не ниже порога — OPEN.
+// OPEN — вызовы отклоняются сразу, без ожидания срока; через openDuration — HALF_OPEN.
+// HALF_OPEN — пропускается один пробный вызов: успех замыкает цепь с чистым окном, сбой снова размыкает.
+// Каждый разрешённый вызов обязан закончиться onSuccess или onFailure
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean[] outcomes;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int window, int minimumCalls, int failureRateThreshold, Duration openDuration) {
+        this(window, minimumCalls, failureRateThreshold, openDuration, System::nanoTime);
+    }
+
+    public CircuitBreaker(int window, int minimumCalls, int failureRateThreshold, Duration openDuration,
+                          LongSupplier nanoClock) {
+        if (window < 1 || minimumCalls < 1 || minimumCalls > window) {
+            throw new IllegalArgumentException("Require 1 <= minimumCalls <= window");
+        }
+        this.outcomes = new boolean[window];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    // false — цепь разомкнута, вызывать не нужно
+    public synchronized boolean tryAcquire() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> {
+                if (nanoClock.getAsLong() - openedAt < openNanos) {
+                    yield false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                yield true;
+            }
+            case HALF_OPEN -> {
+                if (probeInFlight) {
+                    yield false;
+                }
+                probeInFlight = true;
+                yield true;
+            }
+        };
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            reset(State.CLOSED);
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minimumCalls
+                && failures * 100 >= failureRateThreshold * recorded) {
+            open();
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    // Вызовы, разрешённые до размыкания, могут завершиться уже в состоянии OPEN: их исход не нужен
+    private void record(boolean failure) {
+        if (state != State.CLOSED) {
+            return;
+        }
+        if (recorded == outcomes.length) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void open() {
+        reset(State.OPEN);
+        openedAt = nanoClock.getAsLong();
+    }
+
+    private void reset(State newState) {
+        state = newState;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+        probeInFlight = false;
+    }
+}
@@ -0,0 +1,236 @@
+package edu.rutmiit.demo.demorest.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import grpc.demo.DrugInteractionBatchRequest;
+import grpc.demo.DrugInteractionBatchResponse;
+import grpc.demo.DrugInteractionRequest;
+import grpc.demo.DrugInteractionResponse;
+import grpc.demo.DrugInteractionServiceGrpc;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+// Проверки взаимодействий в analytics-service.
+// Одиночные проверки кэшируются: у стойки одни и те же сочетания проверяют постоянно.
+// Ключ канонический — препарат и набор сопутствующих препаратов без учёта регистра и порядка,
+// возраст — по группам, которые различает analytics-service. Одновременные запросы с одним ключом
+// ждут один вызов. Кэш ограничен по размеру (W-TinyLFU в Caffeine) и по времени жизни записи
+// и сбрасывается, когда analytics-service объявляет новую версию набора данных.
+// Вызовы асинхронные и со сроком, поэтому медленный сервер не держит потоки запросов.
+// Когда сервер недоступен или не укладывается в срок, размыкатель перестаёт его вызывать,
+// и на промах кэша отдаётся ответ-заглушка с degraded = true вместо ожидания и ошибки
+@Service
+public class DrugInteractionService {
+
+    public static final String CLIENT = "analytics-service";
+
+    static final String DEGRADED_SEVERITY = "UNKNOWN";
+
+    private static final Logger log = LoggerFactory.getLogger(DrugInteractionService.class);
+
+    // Ответы сервера, при которых повтор позже может помочь; остальные коды — ошибка запроса
+    private static final Set<Status.Code> SERVER_FAILURES = EnumSet.of(
+            Status.Code.UNAVAILABLE, Status.Code.DEADLINE_EXCEEDED, Status.Code.RESOURCE_EXHAUSTED,
+            Status.Code.INTERNAL, Status.Code.UNKNOWN);
+
+    @GrpcClient(CLIENT)
+    private DrugInteractionServiceGrpc.DrugInteractionServiceStub drugInteractionStub;
+
+    private final AsyncCache<CheckKey, DrugInteractionResponse> cache;
+    private final CircuitBreaker circuitBreaker;
+    private final Duration deadline;
+    private final Duration batchDeadline;
+    private final Counter degraded;
+    private volatile String datasetVersion;
+
+    public DrugInteractionService(MeterRegistry meterRegistry, InteractionClientProperties properties) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.cache().maxSize())
+                .expireAfterWrite(properties.cache().ttl())
+                .recordStats()
+                .buildAsync();
+        InteractionClientProperties.CircuitBreaker breaker = properties.circuitBreaker();
+        this.circuitBreaker = new CircuitBreaker(breaker.window(), breaker.minimumCalls(),
+                breaker.failureRateThreshold(), breaker.openDuration());
+        this.deadline = properties.deadline();
+        this.batchDeadline = properties.batchDeadline();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "drug-interaction-checks");
+        Gauge.builder("medics.interactions.circuit.state", circuitBreaker, cb -> cb.state().ordinal())
+                .description("0 - closed, 1 - open, 2 - half-open")
+                .register(meterRegistry);
+        this.degraded = Counter.builder("medics.interactions.degraded")
+                .description("Checks answered with a degraded response because analytics-service failed")
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<DrugInteractionResponse> check(DrugInteractionRequest request) {
+        // Неудавшийся вызов Caffeine удаляет из кэша сам, следующий запрос повторит его.
+        // Разрешение размыкателя берётся только на реальный вызов, попадания в кэш его не тратят
+        return cache.get(CheckKey.of(request), (key, executor) -> circuitBreaker.tryAcquire()
+                        ? call(request)
+                        : CompletableFuture.failedFuture(Status.UNAVAILABLE
+                                .withDescription("Circuit breaker is open").asRuntimeException()))
+                .handle((response, error) -> {
+                    if (error != null) {
+                        return degradedOrThrow(request, error);
+                    }
+                    return response.getDrugId() == request.getDrugId()
+                            ? response
+                            : response.toBuilder().setDrugId(request.getDrugId()).build();
+                });
+    }
+
+    // Корзина уходит одним вызовом мимо кэша: ответы в порядке запросов
+    public CompletableFuture<List<DrugInteractionResponse>> checkBatch(List<DrugInteractionRequest> requests) {
+        if (!circuitBreaker.tryAcquire()) {
+            degraded.increment(requests.size());
+            return CompletableFuture.completedFuture(requests.stream()
+                    .map(DrugInteractionService::degradedResponse)
+                    .toList());
+        }
+        DrugInteractionBatchRequest batch = DrugInteractionBatchRequest.newBuilder()
+                .addAllRequests(requests)
+                .build();
+        CompletableFuture<DrugInteractionBatchResponse> result = new CompletableFuture<>();
+        drugInteractionStub.withDeadlineAfter(batchDeadline.toMillis(), TimeUnit.MILLISECONDS)
+                .checkDrugInteractionsBatch(batch, observer(result));
+        return recordOutcome(result).handle((response, error) -> {
+            if (error == null) {
+                return response.getResponsesList();
+            }
+            List<DrugInteractionResponse> responses = new ArrayList<>(requests.size());
+            for (DrugInteractionRequest request : requests) {
+                responses.add(degradedOrThrow(request, error));
+            }
+            return responses;
+        });
+    }
+
+    // Вызовы, начатые до сброса, завершатся, но их результат в кэш уже не попадёт
+    public void datasetChanged(String version) {
+        if (Objects.equals(version, datasetVersion)) {
+            return;
+        }
+        datasetVersion = version;
+        cache.synchronous().invalidateAll();
+        log.info("Interaction dataset changed to {}, check cache cleared", version);
+    }
+
+    public static boolean isDegraded(DrugInteractionResponse response) {
+        return DEGRADED_SEVERITY.equals(response.getSeverity());
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.state();
+    }
+
+    // Срок задаётся на каждый вызов: deadline абсолютный, общий на все копии при хеджировании
+    private CompletableFuture<DrugInteractionResponse> call(DrugInteractionRequest request) {
+        CompletableFuture<DrugInteractionResponse> result = new CompletableFuture<>();
+        drugInteractionStub.withDeadlineAfter(deadline.toMillis(), TimeUnit.MILLISECONDS)
+                .checkDrugInteraction(request, observer(result));
+        return recordOutcome(result);
+    }
+
+    private <T> CompletableFuture<T> recordOutcome(CompletableFuture<T> result) {
+        return result.whenComplete((response, error) -> {
+            if (error != null && isServerFailure(error)) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+        });
+    }
+
+    private DrugInteractionResponse degradedOrThrow(DrugInteractionRequest request, Throwable error) {
+        if (!isServerFailure(error)) {
+            throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+        }
+        degraded.increment();
+        log.warn("Interaction check for {} degraded: {}", request.getDrugName(), Status.fromThrowable(error));
+        return degradedResponse(request);
+    }
+
+    private static boolean isServerFailure(Throwable error) {
+        return SERVER_FAILURES.contains(Status.fromThrowable(error).getCode());
+    }
+
+    // Риск неизвестен, а не низкий: отсутствие данных не должно выглядеть как «безопасно»
+    static DrugInteractionResponse degradedResponse(DrugInteractionRequest request) {
+        return DrugInteractionResponse.newBuilder()
+                .setDrugId(request.getDrugId())
+                .setDrugName(request.getDrugName())
+                .setSeverity(DEGRADED_SEVERITY)
+                .addWarnings("Interaction service is unavailable, the check was not performed")
+                .setRecommendation("НЕТ ДАННЫХ: Проверка взаимодействий недоступна, проверьте совместимость вручную.")
+                .build();
+    }
+
+    private static <T> StreamObserver<T> observer(CompletableFuture<T> result) {
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(T value) {
+                result.complete(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        };
+    }
+
+    // patient_condition analytics-service пока не учитывает, поэтому в ключ не входит.
+    // Сам препарат в списке сопутствующих пару не добавляет и из ключа убирается, но без сопутствующих
+    // analytics-service отвечает всеми известными взаимодействиями — это отмечает withConcurrent
+    record CheckKey(String drugName, List<String> concurrentDrugs, boolean withConcurrent, int ageBand) {
+
+        static CheckKey of(DrugInteractionRequest request) {
+            String drugName = normalize(request.getDrugName());
+            List<String> concurrentDrugs = request.getConcurrentDrugsList().stream()
+                    .map(CheckKey::normalize)
+                    .filter(name -> !name.equals(drugName))
+                    .distinct()
+                    .sorted()
+                    .toList();
+            return new CheckKey(drugName, concurrentDrugs, request.getConcurrentDrugsCount() > 0,
+                    ageBand(request.getPatientAge()));
+        }
+
+        // Те же границы, что в InteractionEngine analytics-service: дети до 12, пожилые с 65
+        private static int ageBand(int age) {
+            if (age <= 0) {
+                return 0;
+            }
+            return age < 12 ? 1 : age < 65 ? 2 : 3;
+        }
+
+        private static String normalize(String name) {
+            return name.strip().toLowerCase(Locale.ROOT);
+        }
+    }
+}
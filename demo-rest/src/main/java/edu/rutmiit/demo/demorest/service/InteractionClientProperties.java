@@ -0,0 +1,39 @@
+package edu.rutmiit.demo.demorest.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+// Клиент проверки взаимодействий: кэш, сроки вызовов, хеджирование и размыкатель
+@ConfigurationProperties(prefix = "medics.interactions")
+public record InteractionClientProperties(
+        @DefaultValue Cache cache,
+        @DefaultValue("300ms") Duration deadline,
+        @DefaultValue("2s") Duration batchDeadline,
+        @DefaultValue Hedging hedging,
+        @DefaultValue CircuitBreaker circuitBreaker
+) {
+
+    public record Cache(
+            @DefaultValue("10000") long maxSize,
+            @DefaultValue("10m") Duration ttl
+    ) {}
+
+    // Повторная копия одиночной проверки уходит, если ответа нет через delay; побеждает первый ответ.
+    // Проверка ничего не меняет на сервере, поэтому дублировать её безопасно
+    public record Hedging(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("2") int maxAttempts,
+            @DefaultValue("50ms") Duration delay
+    ) {}
+
+    // Размыкается, когда среди последних window вызовов (но не меньше minimumCalls)
+    // доля сбоев достигает failureRateThreshold процентов
+    public record CircuitBreaker(
+            @DefaultValue("20") int window,
+            @DefaultValue("10") int minimumCalls,
+            @DefaultValue("50") int failureRateThreshold,
+            @DefaultValue("10s") Duration openDuration
+    ) {}
+}
@@ -3,34 +3,30 @@ package edu.rutmiit.demo.demorest.service;
 import edu.rutmiit.demo.medicinescontract.dto.ManufacturerRequest;
 import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
 import edu.rutmiit.demo.medicinescontract.exception.ResourceNotFoundException;
-import edu.rutmiit.demo.demorest.storage.InMemoryStorage;
-import org.springframework.context.annotation.Lazy;
+import edu.rutmiit.demo.demorest.storage.ManufacturerRepository;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.Optional;
 
 @Service
 public class ManufacturerService {
-    private final InMemoryStorage storage;
-    private final MedicationService medicationService;
+    private final ManufacturerRepository manufacturerRepository;
 
-    public ManufacturerService(InMemoryStorage storage, @Lazy MedicationService medicationService) {
-        this.storage = storage;
-        this.medicationService = medicationService;
+    public ManufacturerService(ManufacturerRepository manufacturerRepository) {
+        this.manufacturerRepository = manufacturerRepository;
     }
 
     public List<ManufacturerResponse> findAll() {
-        return storage.manufacturers.values().stream().toList();
+        return manufacturerRepository.findAll();
     }
 
     public ManufacturerResponse findById(Long id) {
-        return Optional.ofNullable(storage.manufacturers.get(id))
+        return manufacturerRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Manufacturer", id));
     }
 
     public ManufacturerResponse create(ManufacturerRequest request) {
-        long id = storage.manufacturerSequence.incrementAndGet();
+        long id = manufacturerRepository.nextId();
         ManufacturerResponse manufacturer = new ManufacturerResponse(
                 id,
                 request.name(),
@@ -38,7 +34,7 @@ public class ManufacturerService {
                 request.licenseNumber(),
                 request.contactEmail()
         );
-        storage.manufacturers.put(id, manufacturer);
+        manufacturerRepository.save(manufacturer);
         return manufacturer;
     }
 
@@ -51,17 +47,14 @@ public class ManufacturerService {
                 request.licenseNumber(),
                 request.contactEmail()
         );
-        storage.manufacturers.put(id, updatedManufacturer);
+        manufacturerRepository.save(updatedManufacturer);
         return updatedManufacturer;
     }
 
     public void delete(Long id) {
-        findById(id); // Проверяем, что производитель существует
-
-        // Перед удалением производителя удаляем все связанные с ним лекарства
-        medicationService.deleteMedicationsByManufacturerId(id);
-
-        // Удаляем самого производителя
-        storage.manufacturers.remove(id);
+        // Производитель удаляется вместе со связанными лекарствами одной атомарной операцией хранилища
+        if (!manufacturerRepository.deleteById(id)) {
+            throw new ResourceNotFoundException("Manufacturer", id);
+        }
     }
 }
\ No newline at end of file
@@ -2,73 +2,109 @@ package edu.rutmiit.demo.demorest.service;
 
 import edu.rutmiit.demo.medicinescontract.dto.*;
 import edu.rutmiit.demo.medicinescontract.exception.InnAlreadyExistsException;
+import edu.rutmiit.demo.medicinescontract.exception.MedicationValidationException;
 import edu.rutmiit.demo.medicinescontract.exception.ResourceNotFoundException;
 import edu.rutmiit.demo.demorest.config.RabbitMQConfig;
-import edu.rutmiit.demo.demorest.storage.InMemoryStorage;
+import edu.rutmiit.demo.demorest.outbox.EventOutbox;
+import edu.rutmiit.demo.demorest.storage.MedicationFilter;
+import edu.rutmiit.demo.demorest.storage.MedicationRepository;
+import edu.rutmiit.demo.demorest.storage.MedicationSlice;
 import edu.rutmiit.demo.events.MedicationCreatedEvent;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.context.annotation.Lazy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Service
 public class MedicationService {
 
-    private final InMemoryStorage storage;
+    private final MedicationRepository medicationRepository;
     private final ManufacturerService manufacturerService;
-    private final RabbitTemplate rabbitTemplate;
-
-    public MedicationService(InMemoryStorage storage, @Lazy ManufacturerService manufacturerService, RabbitTemplate rabbitTemplate) {
-        this.storage = storage;
+    private final EventOutbox eventOutbox;
+    private final Validator validator;
+    private final int importChunkSize;
+
+    public MedicationService(MedicationRepository medicationRepository, ManufacturerService manufacturerService,
+                             EventOutbox eventOutbox, Validator validator,
+                             @Value("${medics.import.chunk-size:1000}") int importChunkSize) {
+        this.medicationRepository = medicationRepository;
         this.manufacturerService = manufacturerService;
-        this.rabbitTemplate = rabbitTemplate;
+        this.eventOutbox = eventOutbox;
+        this.validator = validator;
+        this.importChunkSize = importChunkSize;
     }
 
     public MedicationResponse findMedicationById(Long id) {
-        return Optional.ofNullable(storage.medications.get(id))
+        return medicationRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Medication", id));
     }
 
     public PagedResponse<MedicationResponse> findAllMedications(Long manufacturerId, String atcCode, String search, int page, int size) {
-        Stream<MedicationResponse> medicationsStream = storage.medications.values().stream()
-                .sorted((m1, m2) -> m1.getId().compareTo(m2.getId()));
+        MedicationFilter filter = new MedicationFilter(manufacturerId, atcCode, search);
+        MedicationSlice slice = medicationRepository.findPage(filter, (long) page * size, size);
 
-        // Фильтруем по manufacturerId
-        if (manufacturerId != null) {
-            medicationsStream = medicationsStream.filter(med ->
-                    med.getManufacturer() != null && med.getManufacturer().getId().equals(manufacturerId));
-        }
+        // Пагинация
+        List<MedicationResponse> pageContent = slice.content();
+        int totalPages = (int) Math.ceil((double) slice.totalElements() / size);
+        boolean last = page >= totalPages - 1;
+        // Результаты поиска упорядочены по релевантности, курсор по id для них не имеет смысла
+        String nextCursor = last || pageContent.isEmpty() || filter.hasSearch()
+                ? null : encodeCursor(pageContent.getLast().getId());
+
+        return new PagedResponse<>(pageContent, page, size, slice.totalElements(), totalPages, last, nextCursor);
+    }
 
-        // Фильтруем по ATC коду
-        if (atcCode != null && !atcCode.isEmpty()) {
-            medicationsStream = medicationsStream.filter(med ->
-                    med.getAtcCode() != null && med.getAtcCode().equalsIgnoreCase(atcCode));
+    // Курсорная пагинация: страница начинается сразу после id из курсора, поэтому стоит O(log n + size)
+    // и не требует подсчёта всех элементов. totalElements и totalPages в ответе равны -1
+    public PagedResponse<MedicationResponse> findMedicationsAfter(Long manufacturerId, String atcCode, String search,
+                                                                  String after, int size) {
+        if (size < 1) {
+            throw new MedicationValidationException("Размер страницы должен быть не меньше 1: " + size);
         }
+        Long afterId = after != null && !after.isEmpty() ? decodeCursor(after) : null;
 
-        // Поиск по названию или INN
-        if (search != null && !search.isEmpty()) {
-            String searchLower = search.toLowerCase();
-            medicationsStream = medicationsStream.filter(med ->
-                    med.getName().toLowerCase().contains(searchLower) ||
-                            med.getInn().toLowerCase().contains(searchLower));
-        }
+        // Берём на один элемент больше, чтобы узнать, есть ли следующая страница
+        List<MedicationResponse> content = medicationRepository.findAfter(
+                new MedicationFilter(manufacturerId, atcCode, search), afterId, size + 1);
+        boolean last = content.size() <= size;
+        List<MedicationResponse> pageContent = last ? content : content.subList(0, size);
+        String nextCursor = last ? null : encodeCursor(pageContent.getLast().getId());
 
-        List<MedicationResponse> allMedications = medicationsStream.toList();
+        return new PagedResponse<>(pageContent, 0, size, -1, -1, last, nextCursor);
+    }
 
-        // Пагинация
-        int totalElements = allMedications.size();
-        int totalPages = (int) Math.ceil((double) totalElements / size);
-        int fromIndex = page * size;
-        int toIndex = Math.min(fromIndex + size, totalElements);
+    // Курсор непрозрачен для клиента: это id последнего элемента страницы в base64url
+    private static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(id.toString().getBytes(StandardCharsets.US_ASCII));
+    }
 
-        List<MedicationResponse> pageContent = (fromIndex > toIndex) ? List.of() : allMedications.subList(fromIndex, toIndex);
+    private static Long decodeCursor(String cursor) {
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new MedicationValidationException("Некорректный курсор: " + cursor, e);
+        }
+    }
 
-        return new PagedResponse<>(pageContent, page, size, totalElements, totalPages, page >= totalPages - 1);
+    // Поток для выгрузки каталога; вызывающий код обязан закрыть его
+    public Stream<MedicationResponse> streamMedications(Long manufacturerId, String atcCode, String search) {
+        return medicationRepository.streamAll(new MedicationFilter(manufacturerId, atcCode, search));
     }
 
     // Перегруженный метод для GraphQL
@@ -77,34 +113,19 @@ public class MedicationService {
     }
 
     public PagedResponse<MedicationResponse> findPrescriptionMedications(int page, int size) {
-        return findAllMedications(null, null, null, page, size)
-                .content().stream()
-                .filter(MedicationResponse::getPrescriptionRequired)
-                .collect(java.util.stream.Collectors.collectingAndThen(
-                        java.util.stream.Collectors.toList(),
-                        list -> createPagedResponse(list, page, size)
-                ));
+        return findMedicationsByPrescription(true, page, size);
     }
 
     public PagedResponse<MedicationResponse> findOverTheCounterMedications(int page, int size) {
-        return findAllMedications(null, null, null, page, size)
-                .content().stream()
-                .filter(med -> !med.getPrescriptionRequired())
-                .collect(java.util.stream.Collectors.collectingAndThen(
-                        java.util.stream.Collectors.toList(),
-                        list -> createPagedResponse(list, page, size)
-                ));
+        return findMedicationsByPrescription(false, page, size);
     }
 
-    private PagedResponse<MedicationResponse> createPagedResponse(List<MedicationResponse> list, int page, int size) {
-        int totalElements = list.size();
-        int totalPages = (int) Math.ceil((double) totalElements / size);
-        int fromIndex = page * size;
-        int toIndex = Math.min(fromIndex + size, totalElements);
+    private PagedResponse<MedicationResponse> findMedicationsByPrescription(boolean prescriptionRequired, int page, int size) {
+        MedicationSlice slice = medicationRepository.findByPrescription(prescriptionRequired, (long) page * size, size);
 
-        List<MedicationResponse> pageContent = (fromIndex > toIndex) ? List.of() : list.subList(fromIndex, toIndex);
+        int totalPages = (int) Math.ceil((double) slice.totalElements() / size);
 
-        return new PagedResponse<>(pageContent, page, size, totalElements, totalPages, page >= totalPages - 1);
+        return new PagedResponse<>(slice.content(), page, size, slice.totalElements(), totalPages, page >= totalPages - 1, null);
     }
 
     public MedicationResponse createMedication(MedicationRequest request) {
@@ -114,8 +135,171 @@ public class MedicationService {
         // Находим производителя
         ManufacturerResponse manufacturer = manufacturerService.findById(request.manufacturerId());
 
-        long id = storage.medicationSequence.incrementAndGet();
-        var medication = new MedicationResponse(
+        var medication = toMedication(medicationRepository.nextId(), request, manufacturer, LocalDateTime.now());
+        medicationRepository.save(medication);
+
+        // Событие уходит в брокер асинхронно, запрос не ждёт RabbitMQ
+        eventOutbox.enqueue(RabbitMQConfig.EXCHANGE_NAME,
+                RabbitMQConfig.ROUTING_KEY_MEDICATION_CREATED,
+                toCreatedEvent(medication));
+
+        return medication;
+    }
+
+    // Потоковый импорт: заявки читаются из requests порциями по importChunkSize, каждая порция
+    // сохраняется одним saveAll, а результаты по строкам порции передаются в sink.
+    // В памяти одновременно находится только одна порция. Ошибка разбора входных данных
+    // завершает импорт: после неё нельзя надёжно определить границу следующей строки
+    public void importMedications(Iterator<MedicationRequest> requests, boolean upsert,
+                                  Consumer<List<BulkImportResult>> sink) {
+        // Производители одного импорта обычно повторяются, поэтому ищем каждого один раз
+        Map<Long, Optional<ManufacturerResponse>> manufacturers = new HashMap<>();
+        List<MedicationRequest> chunk = new ArrayList<>(importChunkSize);
+        long row = 0;
+        while (true) {
+            MedicationRequest request;
+            try {
+                if (!requests.hasNext()) {
+                    break;
+                }
+                request = requests.next();
+            } catch (RuntimeException e) {
+                importChunk(chunk, row - chunk.size() + 1, upsert, manufacturers, sink);
+                sink.accept(List.of(BulkImportResult.failed(row + 1, "Некорректные входные данные: " + e.getMessage())));
+                return;
+            }
+            chunk.add(request);
+            row++;
+            if (chunk.size() == importChunkSize) {
+                importChunk(chunk, row - chunk.size() + 1, upsert, manufacturers, sink);
+                chunk.clear();
+            }
+        }
+        importChunk(chunk, row - chunk.size() + 1, upsert, manufacturers, sink);
+    }
+
+    private void importChunk(List<MedicationRequest> chunk, long firstRow, boolean upsert,
+                             Map<Long, Optional<ManufacturerResponse>> manufacturers,
+                             Consumer<List<BulkImportResult>> sink) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        BulkImportResult[] results = new BulkImportResult[chunk.size()];
+        List<MedicationResponse> toSave = new ArrayList<>();
+        List<Integer> savedRows = new ArrayList<>();
+        // МНН (без учёта регистра) -> позиция в toSave, чтобы повторы внутри порции не обходили проверку индекса
+        Map<String, Integer> pendingByInn = new HashMap<>();
+
+        for (int i = 0; i < chunk.size(); i++) {
+            MedicationRequest request = chunk.get(i);
+            long row = firstRow + i;
+            Set<ConstraintViolation<MedicationRequest>> violations = request == null ? Set.of() : validator.validate(request);
+            if (request == null || !violations.isEmpty()) {
+                results[i] = BulkImportResult.failed(row, request == null ? "Пустая строка" : violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+                continue;
+            }
+            Optional<ManufacturerResponse> manufacturer = manufacturers.computeIfAbsent(request.manufacturerId(),
+                    this::findManufacturer);
+            if (manufacturer.isEmpty()) {
+                results[i] = BulkImportResult.failed(row,
+                        new ResourceNotFoundException("Manufacturer", request.manufacturerId()).getMessage());
+                continue;
+            }
+
+            String innKey = request.inn().toLowerCase(Locale.ROOT);
+            Integer pending = pendingByInn.get(innKey);
+            if (pending != null) {
+                if (!upsert) {
+                    results[i] = BulkImportResult.failed(row, new InnAlreadyExistsException(request.inn()).getMessage());
+                    continue;
+                }
+                // Повтор внутри порции при upsert: последняя версия заменяет ещё не сохранённую
+                MedicationResponse previous = toSave.get(pending);
+                toSave.set(pending, toMedication(previous.getId(), request, manufacturer.get(), previous.getCreatedAt()));
+                results[i] = new BulkImportResult(row, BulkImportResult.Status.UPDATED, previous.getId(), null);
+                continue;
+            }
+
+            Optional<MedicationResponse> existing = medicationRepository.findIdByInn(request.inn())
+                    .flatMap(medicationRepository::findById);
+            MedicationResponse medication;
+            if (existing.isPresent()) {
+                if (!upsert) {
+                    results[i] = BulkImportResult.failed(row, new InnAlreadyExistsException(request.inn()).getMessage());
+                    continue;
+                }
+                medication = toMedication(existing.get().getId(), request, manufacturer.get(), existing.get().getCreatedAt());
+                results[i] = new BulkImportResult(row, BulkImportResult.Status.UPDATED, medication.getId(), null);
+            } else {
+                medication = toMedication(medicationRepository.nextId(), request, manufacturer.get(), LocalDateTime.now());
+                results[i] = new BulkImportResult(row, BulkImportResult.Status.CREATED, medication.getId(), null);
+            }
+            pendingByInn.put(innKey, toSave.size());
+            toSave.add(medication);
+            savedRows.add(i);
+        }
+
+        List<MedicationResponse> created = new ArrayList<>();
+        try {
+            medicationRepository.saveAll(toSave);
+            for (int k = 0; k < toSave.size(); k++) {
+                if (results[savedRows.get(k)].status() == BulkImportResult.Status.CREATED) {
+                    created.add(toSave.get(k));
+                }
+            }
+        } catch (InnAlreadyExistsException | ResourceNotFoundException e) {
+            // Конкурентная запись заняла МНН или производитель удалён между проверкой и сохранением:
+            // сохраняем построчно, чтобы отклонить только конфликтующие строки
+            for (int k = 0; k < toSave.size(); k++) {
+                int index = savedRows.get(k);
+                try {
+                    medicationRepository.save(toSave.get(k));
+                    if (results[index].status() == BulkImportResult.Status.CREATED) {
+                        created.add(toSave.get(k));
+                    }
+                } catch (InnAlreadyExistsException | ResourceNotFoundException conflict) {
+                    results[index] = BulkImportResult.failed(results[index].row(), conflict.getMessage());
+                }
+            }
+        }
+
+        sink.accept(List.of(results));
+        publishCreatedEvents(created);
+    }
+
+    private Optional<ManufacturerResponse> findManufacturer(Long manufacturerId) {
+        try {
+            return Optional.of(manufacturerService.findById(manufacturerId));
+        } catch (ResourceNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void publishCreatedEvents(List<MedicationResponse> created) {
+        // Публикатор очереди сам собирает события в партии
+        for (MedicationResponse medication : created) {
+            eventOutbox.enqueue(RabbitMQConfig.EXCHANGE_NAME,
+                    RabbitMQConfig.ROUTING_KEY_MEDICATION_CREATED,
+                    toCreatedEvent(medication));
+        }
+    }
+
+    private static MedicationCreatedEvent toCreatedEvent(MedicationResponse medication) {
+        return new MedicationCreatedEvent(
+                medication.getId(),
+                medication.getName(),
+                medication.getInn(),
+                medication.getManufacturer().getName(),
+                medication.getPrescriptionRequired()
+        );
+    }
+
+    private static MedicationResponse toMedication(long id, MedicationRequest request, ManufacturerResponse manufacturer,
+                                                   LocalDateTime createdAt) {
+        return new MedicationResponse(
                 id,
                 request.name(),
                 request.inn(),
@@ -127,23 +311,8 @@ public class MedicationService {
                 request.prescriptionRequired(),
                 request.storageConditions(),
                 request.shelfLifeMonths(),
-                LocalDateTime.now()
+                createdAt
         );
-        storage.medications.put(id, medication);
-
-        // Публикуем событие создания лекарства
-        MedicationCreatedEvent event = new MedicationCreatedEvent(
-                medication.getId(),
-                medication.getName(),
-                medication.getInn(),
-                manufacturer.getName(),
-                medication.getPrescriptionRequired()
-        );
-        rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_NAME,
-                RabbitMQConfig.ROUTING_KEY_MEDICATION_CREATED,
-                event);
-
-        return medication;
     }
 
     public MedicationResponse updateMedication(Long id, UpdateMedicationRequest request) {
@@ -164,7 +333,7 @@ public class MedicationService {
                 request.shelfLifeMonths(),
                 existingMedication.getCreatedAt()
         );
-        storage.medications.put(id, updatedMedication);
+        medicationRepository.save(updatedMedication);
         return updatedMedication;
     }
 
@@ -188,25 +357,16 @@ public class MedicationService {
     }
 
     public void deleteMedication(Long id) {
-        findMedicationById(id);
-        storage.medications.remove(id);
-    }
-
-    public void deleteMedicationsByManufacturerId(Long manufacturerId) {
-        List<Long> medicationIdsToDelete = storage.medications.values().stream()
-                .filter(med -> med.getManufacturer() != null && med.getManufacturer().getId().equals(manufacturerId))
-                .map(MedicationResponse::getId)
-                .toList();
-
-        medicationIdsToDelete.forEach(storage.medications::remove);
+        if (medicationRepository.deleteById(id).isEmpty()) {
+            throw new ResourceNotFoundException("Medication", id);
+        }
     }
 
+    // Быстрая проверка по уникальному индексу МНН; окончательно МНН захватывается атомарно при сохранении
     private void validateInn(String inn, Long currentMedicationId) {
-        storage.medications.values().stream()
-                .filter(med -> med.getInn().equalsIgnoreCase(inn))
-                .filter(med -> !med.getId().equals(currentMedicationId))
-                .findAny()
-                .ifPresent(med -> {
+        medicationRepository.findIdByInn(inn)
+                .filter(ownerId -> !ownerId.equals(currentMedicationId))
+                .ifPresent(ownerId -> {
                     throw new InnAlreadyExistsException(inn);
                 });
     }
@@ -0,0 +1,44 @@
+package edu.rutmiit.demo.demorest.storage;
+
+import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@ConditionalOnProperty(name = "medics.storage.type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryManufacturerRepository implements ManufacturerRepository {
+
+    private final InMemoryStorage storage;
+
+    public InMemoryManufacturerRepository(InMemoryStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public List<ManufacturerResponse> findAll() {
+        return storage.manufacturers.values().stream().toList();
+    }
+
+    @Override
+    public Optional<ManufacturerResponse> findById(Long id) {
+        return Optional.ofNullable(storage.manufacturers.get(id));
+    }
+
+    @Override
+    public long nextId() {
+        return storage.manufacturerSequence.incrementAndGet();
+    }
+
+    @Override
+    public ManufacturerResponse save(ManufacturerResponse manufacturer) {
+        return storage.saveManufacturer(manufacturer);
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        return storage.removeManufacturer(id) != null;
+    }
+}
@@ -0,0 +1,152 @@
+package edu.rutmiit.demo.demorest.storage;
+
+import edu.rutmiit.demo.medicinescontract.dto.MedicationResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+@Repository
+@ConditionalOnProperty(name = "medics.storage.type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryMedicationRepository implements MedicationRepository {
+
+    private final InMemoryStorage storage;
+
+    public InMemoryMedicationRepository(InMemoryStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public Optional<MedicationResponse> findById(Long id) {
+        return Optional.ofNullable(storage.medications.get(id));
+    }
+
+    @Override
+    public long nextId() {
+        return storage.medicationSequence.incrementAndGet();
+    }
+
+    @Override
+    public MedicationResponse save(MedicationResponse medication) {
+        return storage.saveMedication(medication);
+    }
+
+    @Override
+    public List<MedicationResponse> saveAll(List<MedicationResponse> medications) {
+        medications.forEach(storage::saveMedication);
+        return medications;
+    }
+
+    @Override
+    public Optional<MedicationResponse> deleteById(Long id) {
+        return Optional.ofNullable(storage.removeMedication(id));
+    }
+
+    @Override
+    public Optional<Long> findIdByInn(String inn) {
+        return Optional.ofNullable(storage.findMedicationIdByInn(inn));
+    }
+
+    @Override
+    public MedicationSlice findPage(MedicationFilter filter, long offset, int limit) {
+        // При поиске кандидаты берутся из триграммного индекса в порядке релевантности,
+        // иначе из упорядоченного по id индекса. Проходим по ним один раз: сохраняем только
+        // нужную страницу и считаем общее количество
+        Collection<Long> ids = filter.hasSearch()
+                ? storage.searchMedicationIds(filter.search())
+                : candidateIds(filter);
+        Iterator<MedicationResponse> matching = matchingMedications(ids, filter).iterator();
+
+        List<MedicationResponse> content = new ArrayList<>(limit);
+        long totalElements = 0;
+        while (matching.hasNext()) {
+            MedicationResponse medication = matching.next();
+            if (totalElements >= offset && content.size() < limit) {
+                content.add(medication);
+            }
+            totalElements++;
+        }
+        return new MedicationSlice(content, totalElements);
+    }
+
+    @Override
+    public List<MedicationResponse> findAfter(MedicationFilter filter, Long afterId, int limit) {
+        // Курсор опирается на порядок id, поэтому результаты поиска здесь упорядочиваются по id, а не по релевантности
+        NavigableSet<Long> ids = filter.hasSearch()
+                ? new TreeSet<>(storage.searchMedicationIds(filter.search()))
+                : candidateIds(filter);
+        if (afterId != null) {
+            ids = ids.tailSet(afterId, false);
+        }
+        return matchingMedications(ids, filter).limit(limit).toList();
+    }
+
+    @Override
+    public MedicationSlice findByPrescription(boolean prescriptionRequired, long offset, int limit) {
+        // Фильтр по рецептурному статусу выполняется индексом хранилища, а общее количество берётся
+        // из его счётчика, поэтому читаются только элементы до конца запрошенной страницы
+        List<MedicationResponse> content = storage.medicationIdsByPrescription(prescriptionRequired).stream()
+                .map(storage.medications::get)
+                .filter(Objects::nonNull)
+                .filter(med -> Boolean.valueOf(prescriptionRequired).equals(med.getPrescriptionRequired()))
+                .skip(offset)
+                .limit(limit)
+                .toList();
+        return new MedicationSlice(content, storage.countMedicationsByPrescription(prescriptionRequired));
+    }
+
+    @Override
+    public Stream<MedicationResponse> streamAll(MedicationFilter filter) {
+        // Итератор ConcurrentSkipListSet слабо согласован: не бросает ConcurrentModificationException
+        // и не копирует индекс, поэтому выгрузка не зависит по памяти от размера каталога
+        Collection<Long> ids = filter.hasSearch()
+                ? new TreeSet<>(storage.searchMedicationIds(filter.search()))
+                : candidateIds(filter);
+        return matchingMedications(ids, filter);
+    }
+
+    // Выбираем наименьший подходящий индекс вместо полного перебора и сортировки.
+    // Индексы упорядочены по id, поэтому дополнительная сортировка не нужна
+    private NavigableSet<Long> candidateIds(MedicationFilter filter) {
+        if (filter.manufacturerId() != null && filter.hasAtcCode()) {
+            NavigableSet<Long> byManufacturer = storage.medicationIdsByManufacturer(filter.manufacturerId());
+            NavigableSet<Long> byAtc = storage.medicationIdsByAtcCode(filter.atcCode());
+            return byManufacturer.size() <= byAtc.size() ? byManufacturer : byAtc;
+        } else if (filter.manufacturerId() != null) {
+            return storage.medicationIdsByManufacturer(filter.manufacturerId());
+        } else if (filter.hasAtcCode()) {
+            return storage.medicationIdsByAtcCode(filter.atcCode());
+        }
+        return storage.medicationIds();
+    }
+
+    private Stream<MedicationResponse> matchingMedications(Collection<Long> candidateIds, MedicationFilter filter) {
+        // Индекс слабо согласован с данными, поэтому условия фильтра перепроверяются на самой записи
+        Stream<MedicationResponse> medicationsStream = candidateIds.stream()
+                .map(storage.medications::get)
+                .filter(Objects::nonNull);
+
+        // Фильтруем по manufacturerId
+        if (filter.manufacturerId() != null) {
+            medicationsStream = medicationsStream.filter(med ->
+                    med.getManufacturer() != null && med.getManufacturer().getId().equals(filter.manufacturerId()));
+        }
+
+        // Фильтруем по ATC коду
+        if (filter.hasAtcCode()) {
+            String atcCode = filter.atcCode().trim();
+            medicationsStream = medicationsStream.filter(med ->
+                    med.getAtcCode() != null && med.getAtcCode().equalsIgnoreCase(atcCode));
+        }
+
+        return medicationsStream;
+    }
+}
@@ -1,26 +1,518 @@
 package edu.rutmiit.demo.demorest.storage;
 
+import edu.rutmiit.demo.demorest.storage.wal.StorageSnapshot;
+import edu.rutmiit.demo.demorest.storage.wal.WalRecord;
+import edu.rutmiit.demo.demorest.storage.wal.WriteAheadLog;
 import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
 import edu.rutmiit.demo.medicinescontract.dto.MedicationResponse;
+import edu.rutmiit.demo.medicinescontract.exception.InnAlreadyExistsException;
+import edu.rutmiit.demo.medicinescontract.exception.ResourceNotFoundException;
 import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 
 @Component
+@ConditionalOnProperty(name = "medics.storage.type", havingValue = "memory", matchIfMissing = true)
 public class InMemoryStorage {
-    public final Map<Long, ManufacturerResponse> manufacturers = new ConcurrentHashMap<>();
-    public final Map<Long, MedicationResponse> medications = new ConcurrentHashMap<>();
+    // Производители изменяются только через saveManufacturer/removeManufacturer, чтобы изменения попадали в журнал
+    private final Map<Long, ManufacturerResponse> manufacturersById = new ConcurrentHashMap<>();
+    public final Map<Long, ManufacturerResponse> manufacturers = Collections.unmodifiableMap(manufacturersById);
+
+    // Основное хранилище лекарств. Изменяется только через saveMedication/removeMedication,
+    // чтобы вторичные индексы не расходились с данными. Лекарства хранятся со ссылкой на id производителя,
+    // а представление medications подставляет актуального производителя при каждом чтении
+    private final Map<Long, StoredMedication> medicationsById = new ConcurrentHashMap<>();
+    public final Map<Long, MedicationResponse> medications = new MedicationView();
+
+    // Вторичные индексы: упорядоченный индекс id, manufacturerId -> id лекарств, ATC код -> id лекарств
+    private final NavigableSet<Long> medicationIdIndex = new ConcurrentSkipListSet<>();
+    private final Map<Long, NavigableSet<Long>> medicationsByManufacturer = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<Long>> medicationsByAtcCode = new ConcurrentHashMap<>();
+    // Рецептурные и безрецептурные лекарства со счётчиками, чтобы не пересчитывать множества при пагинации
+    private final NavigableSet<Long> prescriptionIds = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Long> overTheCounterIds = new ConcurrentSkipListSet<>();
+    private final AtomicLong prescriptionCount = new AtomicLong();
+    private final AtomicLong overTheCounterCount = new AtomicLong();
+    // Триграммный индекс для поиска по названию и МНН
+    private final MedicationSearchIndex searchIndex = new MedicationSearchIndex();
+    // Уникальный индекс МНН (без учёта регистра) -> id лекарства, которому он принадлежит
+    private final Map<String, Long> medicationIdByInn = new ConcurrentHashMap<>();
+
+    // Полосатые блокировки по id производителя. Запись лекарства держит блокировку чтения своего
+    // производителя, каскадное удаление — блокировку записи: новое лекарство не может появиться
+    // у производителя, пока удаляются его лекарства, а после удаления его некуда сохранить
+    private static final int MANUFACTURER_LOCK_STRIPES = 64;
+    private final ReadWriteLock[] manufacturerLocks = new ReadWriteLock[MANUFACTURER_LOCK_STRIPES];
+
+    {
+        for (int i = 0; i < manufacturerLocks.length; i++) {
+            manufacturerLocks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    // Запись держит блокировку чтения от записи в журнал до применения изменения, снимок — блокировку
+    // записи: запись, попавшая в сегмент, который покрывает снимок, к этому моменту уже видна в данных
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
 
     public final AtomicLong manufacturerSequence = new AtomicLong(0);
     public final AtomicLong medicationSequence = new AtomicLong(0);
 
+    // Журнал упреждающей записи; null, если хранилище работает без сохранения на диск
+    private final WriteAheadLog journal;
+
+    public InMemoryStorage() {
+        this(null);
+    }
+
+    @Autowired
+    public InMemoryStorage(@Nullable WriteAheadLog journal) {
+        this.journal = journal;
+    }
+
+    // Блокировка записи производителя, как в removeManufacturer и в том же порядке: сохранение
+    // не вклинивается в каскадное удаление и не возвращает производителя посреди него
+    public ManufacturerResponse saveManufacturer(ManufacturerResponse manufacturer) {
+        long[] offset = new long[1];
+        Lock lock = manufacturerLock(manufacturer.getId()).writeLock();
+        Lock writing = snapshotLock.readLock();
+        lock.lock();
+        writing.lock();
+        try {
+            manufacturersById.compute(manufacturer.getId(), (key, previous) -> {
+                offset[0] = journal(new WalRecord.ManufacturerSaved(manufacturer));
+                return manufacturer;
+            });
+        } finally {
+            writing.unlock();
+            lock.unlock();
+        }
+        awaitDurable(offset[0]);
+        return manufacturer;
+    }
+
+    // Атомарно удаляет производителя вместе со всеми его лекарствами; возвращает удалённого
+    // производителя или null, если его не было. Лекарства берутся из индекса manufacturerId -> id,
+    // поэтому стоимость пропорциональна их количеству. Сначала удаляются лекарства, затем сам
+    // производитель: при сбое посередине в журнале не остаётся лекарств без производителя
+    public ManufacturerResponse removeManufacturer(Long id) {
+        Lock lock = manufacturerLock(id).writeLock();
+        long offset = 0;
+        ManufacturerResponse[] removed = new ManufacturerResponse[1];
+        Lock writing = snapshotLock.readLock();
+        lock.lock();
+        writing.lock();
+        try {
+            if (!manufacturersById.containsKey(id)) {
+                return null;
+            }
+            // Копируем id из индекса: удаление изменяет тот же индекс
+            for (Long medicationId : List.copyOf(medicationIdsByManufacturer(id))) {
+                long[] medicationOffset = new long[1];
+                removeMedication(medicationId, medicationOffset,
+                        medication -> id.equals(medication.manufacturerId()));
+                offset = Math.max(offset, medicationOffset[0]);
+            }
+            long[] manufacturerOffset = new long[1];
+            manufacturersById.computeIfPresent(id, (key, previous) -> {
+                manufacturerOffset[0] = journal(new WalRecord.ManufacturerRemoved(id));
+                removed[0] = previous;
+                return null;
+            });
+            offset = Math.max(offset, manufacturerOffset[0]);
+        } finally {
+            writing.unlock();
+            lock.unlock();
+        }
+        awaitDurable(offset);
+        return removed[0];
+    }
+
+    // Сохраняет лекарство и обновляет вторичные индексы. compute() выполняется под блокировкой
+    // ключа ConcurrentHashMap, поэтому конкурентные записи одного id не перемешивают индексы.
+    // МНН захватывается через putIfAbsent: из двух конкурентных записей с одинаковым МНН
+    // побеждает только одна, остальные получают InnAlreadyExistsException, и запись не сохраняется.
+    // Производитель должен существовать: проверка выполняется под его блокировкой чтения,
+    // поэтому лекарство не может сохраниться у производителя, которого в этот момент удаляют
+    public MedicationResponse saveMedication(MedicationResponse medication) {
+        StoredMedication stored = StoredMedication.from(medication);
+        Long manufacturerId = stored.manufacturerId();
+        if (manufacturerId == null) {
+            awaitDurable(writeMedication(stored));
+            return medication;
+        }
+        Lock lock = manufacturerLock(manufacturerId).readLock();
+        long offset;
+        lock.lock();
+        try {
+            if (!manufacturersById.containsKey(manufacturerId)) {
+                throw new ResourceNotFoundException("Manufacturer", manufacturerId);
+            }
+            offset = writeMedication(stored);
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(offset);
+        return medication;
+    }
+
+    // Возвращает смещение записи в журнале для awaitDurable
+    private long writeMedication(StoredMedication stored) {
+        Lock writing = snapshotLock.readLock();
+        writing.lock();
+        try {
+            return applyMedication(stored);
+        } finally {
+            writing.unlock();
+        }
+    }
+
+    private long applyMedication(StoredMedication stored) {
+        Long id = stored.id();
+        long[] offset = new long[1];
+        medicationsById.compute(id, (key, previous) -> {
+            String inn = foldInn(stored.inn());
+            if (inn != null) {
+                Long owner = medicationIdByInn.putIfAbsent(inn, id);
+                if (owner != null && !owner.equals(id)) {
+                    throw new InnAlreadyExistsException(stored.inn());
+                }
+            }
+            try {
+                offset[0] = journal(new WalRecord.MedicationSaved(resolve(stored)));
+            } catch (RuntimeException e) {
+                // Запись не попала в журнал: изменение не применяем и освобождаем только что захваченный МНН
+                if (inn != null && (previous == null || !inn.equals(foldInn(previous.inn())))) {
+                    medicationIdByInn.remove(inn, id);
+                }
+                throw e;
+            }
+            if (previous != null) {
+                unindexMedication(previous);
+                String previousInn = foldInn(previous.inn());
+                if (previousInn != null && !previousInn.equals(inn)) {
+                    medicationIdByInn.remove(previousInn, id);
+                }
+            }
+            indexMedication(stored);
+            return stored;
+        });
+        return offset[0];
+    }
+
+    // Удаляет лекарство вместе с записями во вторичных индексах; возвращает null, если его не было
+    public MedicationResponse removeMedication(Long id) {
+        long[] offset = new long[1];
+        MedicationResponse removed;
+        Lock writing = snapshotLock.readLock();
+        writing.lock();
+        try {
+            removed = removeMedication(id, offset, medication -> true);
+        } finally {
+            writing.unlock();
+        }
+        awaitDurable(offset[0]);
+        return removed;
+    }
+
+    // Удаляет лекарство, если оно удовлетворяет условию. offset == null — удаление при восстановлении,
+    // в журнал не пишется
+    private MedicationResponse removeMedication(Long id, long[] offset, Predicate<StoredMedication> condition) {
+        StoredMedication[] removed = new StoredMedication[1];
+        medicationsById.computeIfPresent(id, (key, previous) -> {
+            if (!condition.test(previous)) {
+                return previous;
+            }
+            if (offset != null) {
+                offset[0] = journal(new WalRecord.MedicationRemoved(id));
+            }
+            unindexMedication(previous);
+            String previousInn = foldInn(previous.inn());
+            if (previousInn != null) {
+                medicationIdByInn.remove(previousInn, id);
+            }
+            removed[0] = previous;
+            return null;
+        });
+        return removed[0] == null ? null : resolve(removed[0]);
+    }
+
+    // Все id лекарств в порядке возрастания (слабо согласованное представление)
+    public NavigableSet<Long> medicationIds() {
+        return Collections.unmodifiableNavigableSet(medicationIdIndex);
+    }
+
+    public NavigableSet<Long> medicationIdsByManufacturer(Long manufacturerId) {
+        NavigableSet<Long> ids = medicationsByManufacturer.get(manufacturerId);
+        return ids == null ? Collections.emptyNavigableSet() : Collections.unmodifiableNavigableSet(ids);
+    }
+
+    public NavigableSet<Long> medicationIdsByAtcCode(String atcCode) {
+        NavigableSet<Long> ids = medicationsByAtcCode.get(normalizeAtcCode(atcCode));
+        return ids == null ? Collections.emptyNavigableSet() : Collections.unmodifiableNavigableSet(ids);
+    }
+
+    // Ключи индексов по производителю и коду ATC: после удаления последнего лекарства ключ исчезает
+    Set<Long> indexedManufacturerIds() {
+        return Collections.unmodifiableSet(medicationsByManufacturer.keySet());
+    }
+
+    Set<String> indexedAtcCodes() {
+        return Collections.unmodifiableSet(medicationsByAtcCode.keySet());
+    }
+
+    // id лекарств, найденных по подстроке названия или МНН, в порядке качества совпадения
+    public List<Long> searchMedicationIds(String query) {
+        return searchIndex.search(query);
+    }
+
+    public NavigableSet<Long> medicationIdsByPrescription(boolean prescriptionRequired) {
+        return Collections.unmodifiableNavigableSet(prescriptionRequired ? prescriptionIds : overTheCounterIds);
+    }
+
+    public long countMedicationsByPrescription(boolean prescriptionRequired) {
+        return (prescriptionRequired ? prescriptionCount : overTheCounterCount).get();
+    }
+
+    // id лекарства, которому принадлежит МНН, или null, если МНН свободен
+    public Long findMedicationIdByInn(String inn) {
+        String folded = foldInn(inn);
+        return folded == null ? null : medicationIdByInn.get(folded);
+    }
+
+    public static String normalizeAtcCode(String atcCode) {
+        return atcCode == null ? null : atcCode.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static String foldInn(String inn) {
+        return inn == null ? null : inn.toLowerCase(Locale.ROOT);
+    }
+
+    // Производитель подставляется из общей таблицы в момент чтения
+    private MedicationResponse resolve(StoredMedication medication) {
+        Long manufacturerId = medication.manufacturerId();
+        if (manufacturerId == null) {
+            return medication.toResponse(null);
+        }
+        ManufacturerResponse manufacturer = manufacturersById.get(manufacturerId);
+        // Производитель уже удалён, а каскадное удаление его лекарств ещё не дошло до этой записи:
+        // отдаём ссылку только с id, чтобы не терять связь
+        return medication.toResponse(manufacturer != null
+                ? manufacturer
+                : new ManufacturerResponse(manufacturerId, null, null, null, null));
+    }
+
+    // Неизменяемое представление хранилища лекарств с подстановкой производителя
+    private final class MedicationView extends AbstractMap<Long, MedicationResponse> {
+
+        @Override
+        public MedicationResponse get(Object id) {
+            StoredMedication medication = medicationsById.get(id);
+            return medication == null ? null : resolve(medication);
+        }
+
+        @Override
+        public boolean containsKey(Object id) {
+            return medicationsById.containsKey(id);
+        }
+
+        @Override
+        public int size() {
+            return medicationsById.size();
+        }
+
+        @Override
+        public Set<Entry<Long, MedicationResponse>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Long, MedicationResponse>> iterator() {
+                    Iterator<StoredMedication> stored = medicationsById.values().iterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return stored.hasNext();
+                        }
+
+                        @Override
+                        public Entry<Long, MedicationResponse> next() {
+                            StoredMedication medication = stored.next();
+                            return new SimpleImmutableEntry<>(medication.id(), resolve(medication));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return medicationsById.size();
+                }
+            };
+        }
+    }
+
+    private void indexMedication(StoredMedication medication) {
+        Long id = medication.id();
+        medicationIdIndex.add(id);
+        searchIndex.add(id, medication.name(), medication.inn());
+        if (medication.manufacturerId() != null) {
+            addToIndex(medicationsByManufacturer, medication.manufacturerId(), id);
+        }
+        if (medication.atcCode() != null) {
+            addToIndex(medicationsByAtcCode, normalizeAtcCode(medication.atcCode()), id);
+        }
+        if (Boolean.TRUE.equals(medication.prescriptionRequired()) && prescriptionIds.add(id)) {
+            prescriptionCount.incrementAndGet();
+        } else if (Boolean.FALSE.equals(medication.prescriptionRequired()) && overTheCounterIds.add(id)) {
+            overTheCounterCount.incrementAndGet();
+        }
+    }
+
+    private void unindexMedication(StoredMedication medication) {
+        Long id = medication.id();
+        medicationIdIndex.remove(id);
+        searchIndex.remove(id);
+        if (medication.manufacturerId() != null) {
+            removeFromIndex(medicationsByManufacturer, medication.manufacturerId(), id);
+        }
+        if (medication.atcCode() != null) {
+            removeFromIndex(medicationsByAtcCode, normalizeAtcCode(medication.atcCode()), id);
+        }
+        if (prescriptionIds.remove(id)) {
+            prescriptionCount.decrementAndGet();
+        }
+        if (overTheCounterIds.remove(id)) {
+            overTheCounterCount.decrementAndGet();
+        }
+    }
+
+    private ReadWriteLock manufacturerLock(Long manufacturerId) {
+        return manufacturerLocks[Math.floorMod(Long.hashCode(manufacturerId), MANUFACTURER_LOCK_STRIPES)];
+    }
+
+    private static <K> void addToIndex(Map<K, NavigableSet<Long>> index, K key, Long id) {
+        index.compute(key, (k, ids) -> {
+            NavigableSet<Long> result = ids != null ? ids : new ConcurrentSkipListSet<>();
+            result.add(id);
+            return result;
+        });
+    }
+
+    private static <K> void removeFromIndex(Map<K, NavigableSet<Long>> index, K key, Long id) {
+        // Пустые множества удаляем, чтобы индекс не рос от удалённых ключей
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private long journal(WalRecord record) {
+        return journal == null ? 0 : journal.append(record);
+    }
+
+    private void awaitDurable(long offset) {
+        if (journal != null) {
+            journal.awaitDurable(offset);
+        }
+    }
+
+    // Применение восстановленных данных. В журнал ничего не пишется, а МНН переходит к записи
+    // безусловно: промежуточные состояния при проигрывании могут временно конфликтовать,
+    // но итоговое состояние совпадает с тем, что было до остановки
+    private void restoreSnapshot(StorageSnapshot snapshot) {
+        snapshot.manufacturers().forEach(manufacturer -> manufacturersById.put(manufacturer.getId(), manufacturer));
+        snapshot.medications().forEach(this::restoreMedication);
+        manufacturerSequence.accumulateAndGet(snapshot.manufacturerSequence(), Math::max);
+        medicationSequence.accumulateAndGet(snapshot.medicationSequence(), Math::max);
+    }
+
+    private void restoreRecord(WalRecord record) {
+        switch (record) {
+            case WalRecord.ManufacturerSaved saved -> {
+                manufacturersById.put(saved.manufacturer().getId(), saved.manufacturer());
+                manufacturerSequence.accumulateAndGet(saved.manufacturer().getId(), Math::max);
+            }
+            case WalRecord.ManufacturerRemoved removed -> manufacturersById.remove(removed.id());
+            case WalRecord.MedicationSaved saved -> {
+                restoreMedication(saved.medication());
+                medicationSequence.accumulateAndGet(saved.medication().getId(), Math::max);
+            }
+            case WalRecord.MedicationRemoved removed -> removeMedication(removed.id(), null, medication -> true);
+        }
+    }
+
+    private void restoreMedication(MedicationResponse medication) {
+        StoredMedication stored = StoredMedication.from(medication);
+        Long id = stored.id();
+        medicationsById.compute(id, (key, previous) -> {
+            if (previous != null) {
+                unindexMedication(previous);
+                String previousInn = foldInn(previous.inn());
+                if (previousInn != null) {
+                    medicationIdByInn.remove(previousInn, id);
+                }
+            }
+            String inn = foldInn(stored.inn());
+            if (inn != null) {
+                medicationIdByInn.put(inn, id);
+            }
+            indexMedication(stored);
+            return stored;
+        });
+    }
+
+    // Сохраняет снимок хранилища и удаляет покрытые им сегменты журнала
+    public void checkpoint() {
+        if (journal != null) {
+            journal.checkpoint(this::snapshot);
+        }
+    }
+
+    // Копия состояния под блокировкой записи: все записи из уже закрытых сегментов применены,
+    // а изменения после копирования попадут в новый сегмент
+    private StorageSnapshot snapshot() {
+        Lock copying = snapshotLock.writeLock();
+        copying.lock();
+        try {
+            return new StorageSnapshot(manufacturerSequence.get(), medicationSequence.get(),
+                    List.copyOf(manufacturersById.values()), List.copyOf(medications.values()));
+        } finally {
+            copying.unlock();
+        }
+    }
+
     @PostConstruct
     public void init() {
+        if (journal != null) {
+            // Состояние восстанавливается из снимка и журнала; демо-данные нужны только при первом запуске
+            boolean recovered = journal.recover(this::restoreSnapshot, this::restoreRecord);
+            journal.scheduleSnapshots(this::snapshot);
+            if (recovered) {
+                return;
+            }
+        }
+        seed();
+    }
+
+    private void seed() {
         // Создаем несколько производителей
         ManufacturerResponse manufacturer1 = new ManufacturerResponse(
                 manufacturerSequence.incrementAndGet(),
@@ -36,12 +528,12 @@ public class InMemoryStorage {
                 "LIC-002",
                 "contact@novartis.com"
         );
-        manufacturers.put(manufacturer1.getId(), manufacturer1);
-        manufacturers.put(manufacturer2.getId(), manufacturer2);
+        saveManufacturer(manufacturer1);
+        saveManufacturer(manufacturer2);
 
         // Создаем несколько лекарств
         long medId1 = medicationSequence.incrementAndGet();
-        medications.put(medId1, new MedicationResponse(
+        saveMedication(new MedicationResponse(
                 medId1,
                 "Аспирин",
                 "Acetylsalicylic acid",
@@ -57,7 +549,7 @@ public class InMemoryStorage {
         ));
 
         long medId2 = medicationSequence.incrementAndGet();
-        medications.put(medId2, new MedicationResponse(
+        saveMedication(new MedicationResponse(
                 medId2,
                 "Амоксициллин",
                 "Amoxicillin",
@@ -73,7 +565,7 @@ public class InMemoryStorage {
         ));
 
         long medId3 = medicationSequence.incrementAndGet();
-        medications.put(medId3, new MedicationResponse(
+        saveMedication(new MedicationResponse(
                 medId3,
                 "Ибупрофен",
                 "Ibuprofen",
@@ -0,0 +1,24 @@
+package edu.rutmiit.demo.demorest.storage;
+
+import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
+
+import java.util.List;
+import java.util.Optional;
+
+// Хранилище производителей. Реализации: InMemoryManufacturerRepository (по умолчанию)
+// и JdbcManufacturerRepository (medics.storage.type=jdbc)
+public interface ManufacturerRepository {
+
+    List<ManufacturerResponse> findAll();
+
+    Optional<ManufacturerResponse> findById(Long id);
+
+    long nextId();
+
+    ManufacturerResponse save(ManufacturerResponse manufacturer);
+
+    // Удаляет производителя вместе со всеми его лекарствами как одну атомарную операцию:
+    // конкурентно сохраняемое лекарство этого производителя либо удаляется вместе с ним,
+    // либо не сохраняется. Возвращает false, если производителя не было
+    boolean deleteById(Long id);
+}
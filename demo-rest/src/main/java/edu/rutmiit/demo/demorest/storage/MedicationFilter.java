@@ -0,0 +1,13 @@
+package edu.rutmiit.demo.demorest.storage;
+
+// Условия выборки лекарств; null или пустая строка означают отсутствие фильтра
+public record MedicationFilter(Long manufacturerId, String atcCode, String search) {
+
+    public boolean hasAtcCode() {
+        return atcCode != null && !atcCode.isEmpty();
+    }
+
+    public boolean hasSearch() {
+        return search != null && !search.isEmpty();
+    }
+}
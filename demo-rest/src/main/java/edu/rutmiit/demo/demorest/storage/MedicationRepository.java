@@ -0,0 +1,40 @@
+package edu.rutmiit.demo.demorest.storage;
+
+import edu.rutmiit.demo.medicinescontract.dto.MedicationResponse;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// Хранилище лекарств. Реализации: InMemoryMedicationRepository (по умолчанию)
+// и JdbcMedicationRepository (medics.storage.type=jdbc)
+public interface MedicationRepository {
+
+    Optional<MedicationResponse> findById(Long id);
+
+    long nextId();
+
+    // Вставляет или заменяет лекарство по id. МНН уникален без учёта регистра:
+    // при конфликте выбрасывается InnAlreadyExistsException, и запись не сохраняется
+    MedicationResponse save(MedicationResponse medication);
+
+    // Пакетная запись; семантика каждой строки та же, что у save
+    List<MedicationResponse> saveAll(List<MedicationResponse> medications);
+
+    Optional<MedicationResponse> deleteById(Long id);
+
+    // id лекарства, которому принадлежит МНН (без учёта регистра)
+    Optional<Long> findIdByInn(String inn);
+
+    // Страница по смещению вместе с общим количеством подходящих записей
+    MedicationSlice findPage(MedicationFilter filter, long offset, int limit);
+
+    // До limit записей с id больше afterId (или с начала, если afterId == null) в порядке возрастания id
+    List<MedicationResponse> findAfter(MedicationFilter filter, Long afterId, int limit);
+
+    MedicationSlice findByPrescription(boolean prescriptionRequired, long offset, int limit);
+
+    // Ленивый поток всех подходящих записей в порядке возрастания id для выгрузки без загрузки в память.
+    // Поток слабо согласован с конкурентными изменениями и должен быть закрыт после использования
+    Stream<MedicationResponse> streamAll(MedicationFilter filter);
+}
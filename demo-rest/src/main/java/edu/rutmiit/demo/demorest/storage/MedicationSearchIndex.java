@@ -0,0 +1,142 @@
+package edu.rutmiit.demo.demorest.storage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Инвертированный триграммный индекс по названию и МНН лекарства.
+// Поиск подстроки сводится к пересечению списков id для триграмм запроса
+// и проверке кандидатов по заранее нормализованному тексту
+class MedicationSearchIndex {
+
+    private static final int GRAM = 3;
+
+    private final Map<String, Posting> postings = new ConcurrentHashMap<>();
+    private final Map<Long, IndexedText> texts = new ConcurrentHashMap<>();
+
+    // Список id для одной триграммы; размер хранится отдельно, так как size() у ConcurrentSkipListSet линейный
+    private static final class Posting {
+        final NavigableSet<Long> ids = new ConcurrentSkipListSet<>();
+        final AtomicInteger size = new AtomicInteger();
+    }
+
+    private record IndexedText(String name, String inn) {}
+
+    private record Match(Long id, int rank) {}
+
+    void add(Long id, String name, String inn) {
+        IndexedText text = new IndexedText(fold(name), fold(inn));
+        texts.put(id, text);
+        for (String gram : trigrams(text)) {
+            // compute, а не computeIfAbsent: иначе id можно добавить в множество, которое remove() только что убрал
+            postings.compute(gram, (k, posting) -> {
+                Posting result = posting != null ? posting : new Posting();
+                if (result.ids.add(id)) {
+                    result.size.incrementAndGet();
+                }
+                return result;
+            });
+        }
+    }
+
+    void remove(Long id) {
+        IndexedText text = texts.remove(id);
+        if (text == null) {
+            return;
+        }
+        for (String gram : trigrams(text)) {
+            postings.computeIfPresent(gram, (k, posting) -> {
+                if (posting.ids.remove(id)) {
+                    posting.size.decrementAndGet();
+                }
+                return posting.size.get() == 0 ? null : posting;
+            });
+        }
+    }
+
+    // id лекарств, чьё название или МНН содержит запрос, от лучшего совпадения к худшему
+    List<Long> search(String query) {
+        String folded = fold(query);
+        List<Match> matches = new ArrayList<>();
+
+        if (folded.length() < GRAM) {
+            // Для коротких запросов триграмм нет, проверяем нормализованный текст напрямую
+            texts.forEach((id, text) -> addIfMatches(matches, id, text, folded));
+        } else {
+            List<Posting> lists = new ArrayList<>();
+            for (int i = 0; i + GRAM <= folded.length(); i++) {
+                Posting posting = postings.get(folded.substring(i, i + GRAM));
+                if (posting == null) {
+                    return List.of();
+                }
+                lists.add(posting);
+            }
+            // Перебираем самый короткий список и проверяем вхождение id в остальные
+            Posting smallest = lists.getFirst();
+            for (Posting posting : lists) {
+                if (posting.size.get() < smallest.size.get()) {
+                    smallest = posting;
+                }
+            }
+            for (Long id : smallest.ids) {
+                if (lists.stream().allMatch(posting -> posting.ids.contains(id))) {
+                    IndexedText text = texts.get(id);
+                    if (text != null) {
+                        addIfMatches(matches, id, text, folded);
+                    }
+                }
+            }
+        }
+
+        matches.sort(Comparator.comparingInt(Match::rank).thenComparing(Match::id));
+        return matches.stream().map(Match::id).toList();
+    }
+
+    // Приводит строку к нижнему регистру без учёта локали и заменяет «ё» на «е»,
+    // чтобы «Аспирин» и «аспирин», «Ёлка» и «елка» совпадали
+    static String fold(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    private static void addIfMatches(List<Match> matches, Long id, IndexedText text, String query) {
+        int rank = rank(text, query);
+        if (rank >= 0) {
+            matches.add(new Match(id, rank));
+        }
+    }
+
+    // Чем меньше значение, тем лучше совпадение; -1 — совпадения нет
+    private static int rank(IndexedText text, String query) {
+        if (text.name().equals(query)) return 0;
+        if (text.inn().equals(query)) return 1;
+        if (text.name().startsWith(query)) return 2;
+        if (text.inn().startsWith(query)) return 3;
+        if (text.name().contains(query)) return 4;
+        if (text.inn().contains(query)) return 5;
+        return -1;
+    }
+
+    private static Set<String> trigrams(IndexedText text) {
+        Set<String> grams = new HashSet<>();
+        collectTrigrams(text.name(), grams);
+        collectTrigrams(text.inn(), grams);
+        return grams;
+    }
+
+    private static void collectTrigrams(String value, Set<String> grams) {
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+    }
+}
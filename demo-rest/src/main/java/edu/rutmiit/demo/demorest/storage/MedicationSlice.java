@@ -0,0 +1,8 @@
+package edu.rutmiit.demo.demorest.storage;
+
+import edu.rutmiit.demo.medicinescontract.dto.MedicationResponse;
+
+import java.util.List;
+
+// Часть выборки лекарств и общее количество подходящих записей
+public record MedicationSlice(List<MedicationResponse> content, long totalElements) {}
@@ -0,0 +1,49 @@
+package edu.rutmiit.demo.demorest.storage;
+
+import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
+import edu.rutmiit.demo.medicinescontract.dto.MedicationResponse;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Лекарство в том виде, в каком оно лежит в InMemoryStorage: вместо копии производителя только его id.
+// Производитель подставляется при чтении из общей таблицы, поэтому изменение производителя
+// сразу видно во всех его лекарствах, а строка не держит собственную копию и список ссылок HATEOAS
+record StoredMedication(
+        Long id,
+        String name,
+        String inn,
+        String atcCode,
+        String dosageForm,
+        BigDecimal dosage,
+        String unit,
+        Long manufacturerId,
+        Boolean prescriptionRequired,
+        String storageConditions,
+        Integer shelfLifeMonths,
+        LocalDateTime createdAt
+) {
+
+    static StoredMedication from(MedicationResponse medication) {
+        ManufacturerResponse manufacturer = medication.getManufacturer();
+        return new StoredMedication(
+                medication.getId(),
+                medication.getName(),
+                medication.getInn(),
+                medication.getAtcCode(),
+                medication.getDosageForm(),
+                medication.getDosage(),
+                medication.getUnit(),
+                manufacturer == null ? null : manufacturer.getId(),
+                medication.getPrescriptionRequired(),
+                medication.getStorageConditions(),
+                medication.getShelfLifeMonths(),
+                medication.getCreatedAt()
+        );
+    }
+
+    MedicationResponse toResponse(ManufacturerResponse manufacturer) {
+        return new MedicationResponse(id, name, inn, atcCode, dosageForm, dosage, unit, manufacturer,
+                prescriptionRequired, storageConditions, shelfLifeMonths, createdAt);
+    }
+}
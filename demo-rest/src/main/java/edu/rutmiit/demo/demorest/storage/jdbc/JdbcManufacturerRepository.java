@@ -0,0 +1,79 @@
+package edu.rutmiit.demo.demorest.storage.jdbc;
+
+import edu.rutmiit.demo.demorest.storage.ManufacturerRepository;
+import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+@ConditionalOnProperty(name = "medics.storage.type", havingValue = "jdbc")
+public class JdbcManufacturerRepository implements ManufacturerRepository {
+
+    private static final String SELECT_MANUFACTURER =
+            "SELECT id, name, country, license_number, contact_email FROM manufacturers";
+
+    private static final RowMapper<ManufacturerResponse> ROW_MAPPER = (rs, rowNum) -> new ManufacturerResponse(
+            rs.getLong("id"),
+            rs.getString("name"),
+            rs.getString("country"),
+            rs.getString("license_number"),
+            rs.getString("contact_email")
+    );
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public JdbcManufacturerRepository(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @Override
+    public List<ManufacturerResponse> findAll() {
+        return jdbc.query(SELECT_MANUFACTURER + " ORDER BY id", ROW_MAPPER);
+    }
+
+    @Override
+    public Optional<ManufacturerResponse> findById(Long id) {
+        return jdbc.query(SELECT_MANUFACTURER + " WHERE id = :id", Map.of("id", id), ROW_MAPPER)
+                .stream().findFirst();
+    }
+
+    @Override
+    public long nextId() {
+        return jdbc.getJdbcTemplate().queryForObject("SELECT NEXT VALUE FOR manufacturer_seq", Long.class);
+    }
+
+    @Override
+    public ManufacturerResponse save(ManufacturerResponse manufacturer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", manufacturer.getId())
+                .addValue("name", manufacturer.getName())
+                .addValue("country", manufacturer.getCountry())
+                .addValue("licenseNumber", manufacturer.getLicenseNumber())
+                .addValue("contactEmail", manufacturer.getContactEmail());
+
+        int updated = jdbc.update("""
+                UPDATE manufacturers
+                SET name = :name, country = :country, license_number = :licenseNumber, contact_email = :contactEmail
+                WHERE id = :id""", params);
+        if (updated == 0) {
+            jdbc.update("""
+                    INSERT INTO manufacturers (id, name, country, license_number, contact_email)
+                    VALUES (:id, :name, :country, :licenseNumber, :contactEmail)""", params);
+        }
+        return manufacturer;
+    }
+
+    // Лекарства производителя удаляет внешний ключ ON DELETE CASCADE в той же команде,
+    // а вставка лекарства для удалённого производителя отклоняется тем же ключом
+    @Override
+    public boolean deleteById(Long id) {
+        return jdbc.update("DELETE FROM manufacturers WHERE id = :id", Map.of("id", id)) > 0;
+    }
+}
@@ -0,0 +1,276 @@
+package edu.rutmiit.demo.demorest.storage.jdbc;
+
+import edu.rutmiit.demo.demorest.storage.MedicationFilter;
+import edu.rutmiit.demo.demorest.storage.MedicationRepository;
+import edu.rutmiit.demo.demorest.storage.MedicationSlice;
+import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
+import edu.rutmiit.demo.medicinescontract.dto.MedicationResponse;
+import edu.rutmiit.demo.medicinescontract.exception.InnAlreadyExistsException;
+import edu.rutmiit.demo.medicinescontract.exception.ResourceNotFoundException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+@Repository
+@ConditionalOnProperty(name = "medics.storage.type", havingValue = "jdbc")
+public class JdbcMedicationRepository implements MedicationRepository {
+
+    private static final String SELECT_MEDICATION = """
+            SELECT m.id, m.name, m.inn, m.atc_code, m.dosage_form, m.dosage, m.unit,
+                   m.prescription_required, m.storage_conditions, m.shelf_life_months, m.created_at,
+                   f.id AS manufacturer_id, f.name AS manufacturer_name, f.country,
+                   f.license_number, f.contact_email
+            FROM medications m
+            JOIN manufacturers f ON f.id = m.manufacturer_id""";
+
+    private static final String UPDATE_MEDICATION = """
+            UPDATE medications
+            SET name = :name, inn = :inn, inn_key = :innKey, atc_code = :atcCode, atc_key = :atcKey,
+                dosage_form = :dosageForm, dosage = :dosage, unit = :unit, manufacturer_id = :manufacturerId,
+                prescription_required = :prescriptionRequired, storage_conditions = :storageConditions,
+                shelf_life_months = :shelfLifeMonths, created_at = :createdAt
+            WHERE id = :id""";
+
+    private static final String INSERT_MEDICATION = """
+            INSERT INTO medications (id, name, inn, inn_key, atc_code, atc_key, dosage_form, dosage, unit,
+                                     manufacturer_id, prescription_required, storage_conditions,
+                                     shelf_life_months, created_at)
+            VALUES (:id, :name, :inn, :innKey, :atcCode, :atcKey, :dosageForm, :dosage, :unit,
+                    :manufacturerId, :prescriptionRequired, :storageConditions, :shelfLifeMonths, :createdAt)""";
+
+    private static final RowMapper<MedicationResponse> ROW_MAPPER = (rs, rowNum) -> new MedicationResponse(
+            rs.getLong("id"),
+            rs.getString("name"),
+            rs.getString("inn"),
+            rs.getString("atc_code"),
+            rs.getString("dosage_form"),
+            rs.getBigDecimal("dosage"),
+            rs.getString("unit"),
+            new ManufacturerResponse(
+                    rs.getLong("manufacturer_id"),
+                    rs.getString("manufacturer_name"),
+                    rs.getString("country"),
+                    rs.getString("license_number"),
+                    rs.getString("contact_email")
+            ),
+            rs.getBoolean("prescription_required"),
+            rs.getString("storage_conditions"),
+            (Integer) rs.getObject("shelf_life_months"),
+            rs.getTimestamp("created_at").toLocalDateTime()
+    );
+
+    private static final String INN_KEY_CONSTRAINT = "uk_medications_inn_key";
+    // Нарушение внешнего ключа: 23503 в PostgreSQL, 23506 в H2 (ссылка на отсутствующую строку).
+    // Внешний ключ у medications один — на производителя
+    private static final Set<String> FOREIGN_KEY_VIOLATIONS = Set.of("23503", "23506");
+
+    // Строки выгрузки читаются курсором порциями по STREAM_FETCH_SIZE, а не целиком
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final NamedParameterJdbcTemplate streamingJdbc;
+
+    public JdbcMedicationRepository(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+        JdbcTemplate streaming = new JdbcTemplate(jdbc.getJdbcTemplate().getDataSource());
+        streaming.setFetchSize(STREAM_FETCH_SIZE);
+        this.streamingJdbc = new NamedParameterJdbcTemplate(streaming);
+    }
+
+    @Override
+    public Optional<MedicationResponse> findById(Long id) {
+        return jdbc.query(SELECT_MEDICATION + " WHERE m.id = :id", Map.of("id", id), ROW_MAPPER)
+                .stream().findFirst();
+    }
+
+    @Override
+    public long nextId() {
+        return jdbc.getJdbcTemplate().queryForObject("SELECT NEXT VALUE FOR medication_seq", Long.class);
+    }
+
+    @Override
+    public MedicationResponse save(MedicationResponse medication) {
+        SqlParameterSource params = toParams(medication);
+        // Уникальность МНН обеспечивает ограничение uk_medications_inn_key
+        try {
+            if (jdbc.update(UPDATE_MEDICATION, params) == 0) {
+                jdbc.update(INSERT_MEDICATION, params);
+            }
+        } catch (DataIntegrityViolationException e) {
+            if (violatesInnKey(e)) {
+                throw new InnAlreadyExistsException(medication.getInn());
+            }
+            if (violatesManufacturerKey(e)) {
+                // Производитель удалён между проверкой в сервисе и вставкой
+                throw new ResourceNotFoundException("Manufacturer", medication.getManufacturer().getId());
+            }
+            throw e;
+        }
+        return medication;
+    }
+
+    @Override
+    public List<MedicationResponse> saveAll(List<MedicationResponse> medications) {
+        if (medications.isEmpty()) {
+            return medications;
+        }
+        SqlParameterSource[] params = medications.stream().map(this::toParams).toArray(SqlParameterSource[]::new);
+        try {
+            // Сначала пакетно обновляем существующие строки, затем одним пакетом вставляем остальные
+            int[] updated = jdbc.batchUpdate(UPDATE_MEDICATION, params);
+            List<SqlParameterSource> inserts = new ArrayList<>();
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    inserts.add(params[i]);
+                }
+            }
+            if (!inserts.isEmpty()) {
+                jdbc.batchUpdate(INSERT_MEDICATION, inserts.toArray(SqlParameterSource[]::new));
+            }
+        } catch (DataIntegrityViolationException e) {
+            if (!violatesInnKey(e) && !violatesManufacturerKey(e)) {
+                throw e;
+            }
+            // Пакет не сообщает, какая строка нарушила уникальность МНН или ссылку на производителя:
+            // повторяем построчно, чтобы сохранить строки до конфликтной и выбросить нужное исключение
+            medications.forEach(this::save);
+        }
+        return medications;
+    }
+
+    @Override
+    public Optional<MedicationResponse> deleteById(Long id) {
+        Optional<MedicationResponse> existing = findById(id);
+        existing.ifPresent(medication -> jdbc.update("DELETE FROM medications WHERE id = :id", Map.of("id", id)));
+        return existing;
+    }
+
+    @Override
+    public Optional<Long> findIdByInn(String inn) {
+        if (inn == null) {
+            return Optional.empty();
+        }
+        return jdbc.queryForList("SELECT id FROM medications WHERE inn_key = :innKey",
+                Map.of("innKey", innKey(inn)), Long.class).stream().findFirst();
+    }
+
+    @Override
+    public MedicationSlice findPage(MedicationFilter filter, long offset, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String where = whereClause(filter, params);
+
+        Long totalElements = jdbc.queryForObject("SELECT COUNT(*) FROM medications m" + where, params, Long.class);
+        params.addValue("offset", offset).addValue("limit", limit);
+        List<MedicationResponse> content = jdbc.query(SELECT_MEDICATION + where
+                + " ORDER BY m.id OFFSET :offset ROWS FETCH NEXT :limit ROWS ONLY", params, ROW_MAPPER);
+        return new MedicationSlice(content, totalElements == null ? 0 : totalElements);
+    }
+
+    @Override
+    public List<MedicationResponse> findAfter(MedicationFilter filter, Long afterId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String where = whereClause(filter, params);
+        if (afterId != null) {
+            where += (where.isEmpty() ? " WHERE" : " AND") + " m.id > :afterId";
+            params.addValue("afterId", afterId);
+        }
+        params.addValue("limit", limit);
+        return jdbc.query(SELECT_MEDICATION + where + " ORDER BY m.id FETCH FIRST :limit ROWS ONLY", params, ROW_MAPPER);
+    }
+
+    @Override
+    public MedicationSlice findByPrescription(boolean prescriptionRequired, long offset, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("prescriptionRequired", prescriptionRequired)
+                .addValue("offset", offset)
+                .addValue("limit", limit);
+        String where = " WHERE m.prescription_required = :prescriptionRequired";
+
+        Long totalElements = jdbc.queryForObject("SELECT COUNT(*) FROM medications m" + where, params, Long.class);
+        List<MedicationResponse> content = jdbc.query(SELECT_MEDICATION + where
+                + " ORDER BY m.id OFFSET :offset ROWS FETCH NEXT :limit ROWS ONLY", params, ROW_MAPPER);
+        return new MedicationSlice(content, totalElements == null ? 0 : totalElements);
+    }
+
+    @Override
+    public Stream<MedicationResponse> streamAll(MedicationFilter filter) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String where = whereClause(filter, params);
+        return streamingJdbc.queryForStream(SELECT_MEDICATION + where + " ORDER BY m.id", params, ROW_MAPPER);
+    }
+
+    // Условия фильтра опираются на индексы idx_medications_manufacturer и idx_medications_atc;
+    // поиск по подстроке выполняется на стороне БД
+    private static String whereClause(MedicationFilter filter, MapSqlParameterSource params) {
+        List<String> conditions = new ArrayList<>();
+        if (filter.manufacturerId() != null) {
+            conditions.add("m.manufacturer_id = :manufacturerId");
+            params.addValue("manufacturerId", filter.manufacturerId());
+        }
+        if (filter.hasAtcCode()) {
+            conditions.add("m.atc_key = :atcKey");
+            params.addValue("atcKey", atcKey(filter.atcCode()));
+        }
+        if (filter.hasSearch()) {
+            conditions.add("(LOWER(m.name) LIKE :search ESCAPE '\\' OR LOWER(m.inn) LIKE :search ESCAPE '\\')");
+            params.addValue("search", "%" + escapeLike(filter.search().toLowerCase(Locale.ROOT)) + "%");
+        }
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    private SqlParameterSource toParams(MedicationResponse medication) {
+        return new MapSqlParameterSource()
+                .addValue("id", medication.getId())
+                .addValue("name", medication.getName())
+                .addValue("inn", medication.getInn())
+                .addValue("innKey", innKey(medication.getInn()))
+                .addValue("atcCode", medication.getAtcCode())
+                .addValue("atcKey", atcKey(medication.getAtcCode()))
+                .addValue("dosageForm", medication.getDosageForm())
+                .addValue("dosage", medication.getDosage())
+                .addValue("unit", medication.getUnit())
+                .addValue("manufacturerId", medication.getManufacturer().getId())
+                .addValue("prescriptionRequired", medication.getPrescriptionRequired())
+                .addValue("storageConditions", medication.getStorageConditions())
+                .addValue("shelfLifeMonths", medication.getShelfLifeMonths())
+                .addValue("createdAt", medication.getCreatedAt());
+    }
+
+    // Имя ограничения есть в тексте ошибки и H2, и PostgreSQL
+    private static boolean violatesInnKey(DataIntegrityViolationException e) {
+        String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        return message != null && message.toLowerCase(Locale.ROOT).contains(INN_KEY_CONSTRAINT);
+    }
+
+    private static boolean violatesManufacturerKey(DataIntegrityViolationException e) {
+        return NestedExceptionUtils.getMostSpecificCause(e) instanceof SQLException sqlException
+                && FOREIGN_KEY_VIOLATIONS.contains(sqlException.getSQLState());
+    }
+
+    private static String innKey(String inn) {
+        return inn == null ? null : inn.toLowerCase(Locale.ROOT);
+    }
+
+    private static String atcKey(String atcCode) {
+        return atcCode == null ? null : atcCode.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
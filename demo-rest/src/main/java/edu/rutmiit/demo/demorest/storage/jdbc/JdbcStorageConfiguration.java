@@ -0,0 +1,36 @@
+package edu.rutmiit.demo.demorest.storage.jdbc;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.init.DataSourceInitializer;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+
+// Включает хранение в БД: medics.storage.type=jdbc и стандартные spring.datasource.*.
+// DataSourceAutoConfiguration исключена в DemoRestApplication для режима в памяти, поэтому подключается здесь
+@Configuration
+@ConditionalOnProperty(name = "medics.storage.type", havingValue = "jdbc")
+@Import(DataSourceAutoConfiguration.class)
+public class JdbcStorageConfiguration {
+
+    public static final String SCHEMA_SCRIPT = "db/medics-schema.sql";
+
+    @Bean
+    public NamedParameterJdbcTemplate medicsJdbcTemplate(DataSource dataSource) {
+        return new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    @Bean
+    public DataSourceInitializer medicsSchemaInitializer(DataSource dataSource) {
+        DataSourceInitializer initializer = new DataSourceInitializer();
+        initializer.setDataSource(dataSource);
+        initializer.setDatabasePopulator(new ResourceDatabasePopulator(new ClassPathResource(SCHEMA_SCRIPT)));
+        return initializer;
+    }
+}
@@ -0,0 +1,11 @@
+package edu.rutmiit.demo.demorest.storage.wal;
+
+// Когда данные журнала принудительно сбрасываются на диск
+public enum FsyncPolicy {
+    // Запись возвращается только после fsync; конкурентные записи делят один fsync (group commit)
+    PER_WRITE,
+    // fsync выполняется фоном раз в fsync-interval; при сбое теряется не больше одного интервала
+    BATCHED,
+    // Сброс на диск остаётся на усмотрение ОС, fsync только при остановке
+    OS
+}
@@ -0,0 +1,14 @@
+package edu.rutmiit.demo.demorest.storage.wal;
+
+import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
+import edu.rutmiit.demo.medicinescontract.dto.MedicationResponse;
+
+import java.util.Collection;
+
+// Полное состояние хранилища на момент снимка
+public record StorageSnapshot(
+        long manufacturerSequence,
+        long medicationSequence,
+        Collection<ManufacturerResponse> manufacturers,
+        Collection<MedicationResponse> medications
+) {}
@@ -0,0 +1,128 @@
+package edu.rutmiit.demo.demorest.storage.wal;
+
+import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
+import edu.rutmiit.demo.medicinescontract.dto.MedicationResponse;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Компактное двоичное представление записей журнала и снимка.
+// Лекарство хранит только id производителя: при чтении возвращается ссылка с одним id,
+// а актуальные данные производителя хранилище подставляет само
+final class WalCodec {
+
+    static final byte MANUFACTURER_SAVED = 1;
+    static final byte MANUFACTURER_REMOVED = 2;
+    static final byte MEDICATION_SAVED = 3;
+    static final byte MEDICATION_REMOVED = 4;
+
+    private WalCodec() {
+    }
+
+    static void writeRecord(DataOutput out, WalRecord record) throws IOException {
+        switch (record) {
+            case WalRecord.ManufacturerSaved saved -> {
+                out.writeByte(MANUFACTURER_SAVED);
+                writeManufacturer(out, saved.manufacturer());
+            }
+            case WalRecord.ManufacturerRemoved removed -> {
+                out.writeByte(MANUFACTURER_REMOVED);
+                out.writeLong(removed.id());
+            }
+            case WalRecord.MedicationSaved saved -> {
+                out.writeByte(MEDICATION_SAVED);
+                writeMedication(out, saved.medication());
+            }
+            case WalRecord.MedicationRemoved removed -> {
+                out.writeByte(MEDICATION_REMOVED);
+                out.writeLong(removed.id());
+            }
+        }
+    }
+
+    static WalRecord readRecord(DataInput in) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case MANUFACTURER_SAVED -> new WalRecord.ManufacturerSaved(readManufacturer(in));
+            case MANUFACTURER_REMOVED -> new WalRecord.ManufacturerRemoved(in.readLong());
+            case MEDICATION_SAVED -> new WalRecord.MedicationSaved(readMedication(in));
+            case MEDICATION_REMOVED -> new WalRecord.MedicationRemoved(in.readLong());
+            default -> throw new IOException("Unknown WAL record type " + type);
+        };
+    }
+
+    static void writeManufacturer(DataOutput out, ManufacturerResponse manufacturer) throws IOException {
+        out.writeLong(manufacturer.getId());
+        writeString(out, manufacturer.getName());
+        writeString(out, manufacturer.getCountry());
+        writeString(out, manufacturer.getLicenseNumber());
+        writeString(out, manufacturer.getContactEmail());
+    }
+
+    static ManufacturerResponse readManufacturer(DataInput in) throws IOException {
+        return new ManufacturerResponse(in.readLong(), readString(in), readString(in), readString(in), readString(in));
+    }
+
+    static void writeMedication(DataOutput out, MedicationResponse medication) throws IOException {
+        out.writeLong(medication.getId());
+        writeString(out, medication.getName());
+        writeString(out, medication.getInn());
+        writeString(out, medication.getAtcCode());
+        writeString(out, medication.getDosageForm());
+        writeString(out, medication.getDosage() == null ? null : medication.getDosage().toPlainString());
+        writeString(out, medication.getUnit());
+        ManufacturerResponse manufacturer = medication.getManufacturer();
+        out.writeLong(manufacturer == null || manufacturer.getId() == null ? -1 : manufacturer.getId());
+        out.writeByte(medication.getPrescriptionRequired() == null ? -1 : medication.getPrescriptionRequired() ? 1 : 0);
+        writeString(out, medication.getStorageConditions());
+        out.writeInt(medication.getShelfLifeMonths() == null ? -1 : medication.getShelfLifeMonths());
+        LocalDateTime createdAt = medication.getCreatedAt();
+        out.writeBoolean(createdAt != null);
+        if (createdAt != null) {
+            out.writeLong(createdAt.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(createdAt.getNano());
+        }
+    }
+
+    static MedicationResponse readMedication(DataInput in) throws IOException {
+        long id = in.readLong();
+        String name = readString(in);
+        String inn = readString(in);
+        String atcCode = readString(in);
+        String dosageForm = readString(in);
+        String dosage = readString(in);
+        String unit = readString(in);
+        long manufacturerId = in.readLong();
+        byte prescription = in.readByte();
+        String storageConditions = readString(in);
+        int shelfLifeMonths = in.readInt();
+        LocalDateTime createdAt = in.readBoolean()
+                ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC)
+                : null;
+        return new MedicationResponse(
+                id, name, inn, atcCode, dosageForm,
+                dosage == null ? null : new BigDecimal(dosage),
+                unit,
+                manufacturerId < 0 ? null : new ManufacturerResponse(manufacturerId, null, null, null, null),
+                prescription < 0 ? null : prescription == 1,
+                storageConditions,
+                shelfLifeMonths < 0 ? null : shelfLifeMonths,
+                createdAt
+        );
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,23 @@
+package edu.rutmiit.demo.demorest.storage.wal;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+// Журнал включается для хранилища в памяти свойством medics.storage.wal.enabled=true;
+// при medics.storage.type=jdbc его некому читать, и он не создаётся
+@Configuration
+@ConditionalOnProperty(name = "medics.storage.wal.enabled", havingValue = "true")
+@ConditionalOnProperty(name = "medics.storage.type", havingValue = "memory", matchIfMissing = true)
+@EnableConfigurationProperties(WalProperties.class)
+public class WalConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public WriteAheadLog writeAheadLog(WalProperties properties) throws IOException {
+        return new WriteAheadLog(properties.directory(), properties.fsync(),
+                properties.fsyncInterval(), properties.snapshotInterval());
+    }
+}
@@ -0,0 +1,16 @@
+package edu.rutmiit.demo.demorest.storage.wal;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "medics.storage.wal")
+public record WalProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("data/wal") Path directory,
+        @DefaultValue("batched") FsyncPolicy fsync,
+        @DefaultValue("50ms") Duration fsyncInterval,
+        @DefaultValue("5m") Duration snapshotInterval
+) {}
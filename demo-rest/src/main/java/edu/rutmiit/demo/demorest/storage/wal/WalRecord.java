@@ -0,0 +1,16 @@
+package edu.rutmiit.demo.demorest.storage.wal;
+
+import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
+import edu.rutmiit.demo.medicinescontract.dto.MedicationResponse;
+
+// Одна мутация хранилища. Записи содержат полное состояние объекта, поэтому повторное применение идемпотентно
+public sealed interface WalRecord {
+
+    record ManufacturerSaved(ManufacturerResponse manufacturer) implements WalRecord {}
+
+    record ManufacturerRemoved(Long id) implements WalRecord {}
+
+    record MedicationSaved(MedicationResponse medication) implements WalRecord {}
+
+    record MedicationRemoved(Long id) implements WalRecord {}
+}
@@ -0,0 +1,412 @@
+package edu.rutmiit.demo.demorest.storage.wal;
+
+import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
+import edu.rutmiit.demo.medicinescontract.dto.MedicationResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Журнал упреждающей записи для хранилища в памяти.
+// Мутации дописываются в текущий сегмент wal-N.log кадрами [длина][crc32][запись].
+// Снимок snapshot-N.bin содержит всё состояние и покрывает сегменты до N включительно,
+// после его записи старые сегменты удаляются. При старте загружается последний целый снимок
+// и поверх него проигрываются более новые сегменты; оборванный хвост сегмента отбрасывается
+public class WriteAheadLog implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final int SNAPSHOT_MAGIC = 0x4D534E50;
+    private static final byte SNAPSHOT_VERSION = 1;
+    private static final int FRAME_HEADER = Integer.BYTES * 2;
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final Duration fsyncInterval;
+    private final Duration snapshotInterval;
+    private final ScheduledExecutorService scheduler;
+
+    // Порядок захвата блокировок: syncLock, затем this
+    private final Object syncLock = new Object();
+    private final Object checkpointLock = new Object();
+
+    // Под this: текущий сегмент и логическое смещение конца журнала
+    private FileChannel channel;
+    private long segment;
+    private long appendedOffset;
+    // Под syncLock: смещение, до которого журнал гарантированно на диске
+    private long syncedOffset;
+
+    public WriteAheadLog(Path directory, FsyncPolicy fsyncPolicy, Duration fsyncInterval, Duration snapshotInterval)
+            throws IOException {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncInterval = fsyncInterval;
+        this.snapshotInterval = snapshotInterval;
+        Files.createDirectories(directory);
+        this.scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "medics-wal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Восстанавливает состояние: сначала снимок, затем записи из более новых сегментов.
+    // Возвращает false, если в каталоге не было ни снимка, ни журнала
+    public boolean recover(Consumer<StorageSnapshot> snapshotConsumer,
+                           Consumer<WalRecord> recordConsumer) {
+        synchronized (this) {
+            if (channel != null) {
+                throw new IllegalStateException("Write-ahead log is already open");
+            }
+            try {
+                boolean found = false;
+                long covered = 0;
+                for (Map.Entry<Long, Path> snapshot : listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).reversed()) {
+                    StorageSnapshot loaded = readSnapshot(snapshot.getValue());
+                    if (loaded != null) {
+                        snapshotConsumer.accept(loaded);
+                        covered = snapshot.getKey();
+                        found = true;
+                        break;
+                    }
+                    log.warn("Skipping corrupted snapshot {}", snapshot.getValue());
+                }
+
+                long lastSegment = covered;
+                for (Map.Entry<Long, Path> entry : listFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+                    if (entry.getKey() > covered) {
+                        replaySegment(entry.getValue(), recordConsumer);
+                        found = true;
+                    }
+                    lastSegment = Math.max(lastSegment, entry.getKey());
+                }
+
+                segment = lastSegment + 1;
+                channel = openSegment(segment);
+                log.info("Write-ahead log opened in {} (segment {}, fsync {})", directory, segment, fsyncPolicy);
+                if (fsyncPolicy == FsyncPolicy.BATCHED) {
+                    long interval = fsyncInterval.toMillis();
+                    scheduler.scheduleWithFixedDelay(this::syncQuietly, interval, interval, TimeUnit.MILLISECONDS);
+                }
+                return found;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to recover storage from " + directory, e);
+            }
+        }
+    }
+
+    // Периодически сохраняет снимок состояния, полученного из source
+    public void scheduleSnapshots(Supplier<StorageSnapshot> source) {
+        long interval = snapshotInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint(source);
+            } catch (RuntimeException e) {
+                log.error("Failed to write storage snapshot", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // Дописывает запись в журнал и возвращает смещение её конца для awaitDurable.
+    // Вызывающий код пишет в журнал под той же блокировкой, что и меняет данные,
+    // поэтому порядок записей для одного ключа совпадает с порядком изменений
+    public long append(WalRecord record) {
+        ByteBuffer frame = frame(record);
+        synchronized (this) {
+            if (channel == null) {
+                throw new IllegalStateException("Write-ahead log is not open");
+            }
+            try {
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to append to write-ahead log", e);
+            }
+            appendedOffset += frame.limit();
+            return appendedOffset;
+        }
+    }
+
+    // При политике PER_WRITE ждёт, пока запись до offset окажется на диске.
+    // Group commit: поток, захвативший syncLock, сбрасывает всё дописанное к этому моменту,
+    // и ожидавшие следом потоки видят свои записи уже сохранёнными без собственного fsync
+    public void awaitDurable(long offset) {
+        if (fsyncPolicy == FsyncPolicy.PER_WRITE) {
+            sync(offset);
+        }
+    }
+
+    // Сохраняет снимок: переключает журнал на новый сегмент, записывает состояние
+    // и удаляет сегменты и снимки, которые он покрывает. source вызывается после переключения
+    // и должен вернуть состояние, в котором уже применены все записи закрытых сегментов:
+    // вызывающий код не даёт снять снимок, пока запись дописана в журнал, но ещё не применена.
+    // Записи нового сегмента, попавшие в снимок, при восстановлении проигрываются повторно, что безопасно
+    public void checkpoint(Supplier<StorageSnapshot> source) {
+        synchronized (checkpointLock) {
+            long covered;
+            synchronized (syncLock) {
+                synchronized (this) {
+                    if (channel == null) {
+                        return;
+                    }
+                    covered = segment;
+                    try {
+                        channel.force(false);
+                        syncedOffset = appendedOffset;
+                        channel.close();
+                        segment++;
+                        channel = openSegment(segment);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to rotate write-ahead log", e);
+                    }
+                }
+            }
+            try {
+                writeSnapshot(covered, source.get());
+                for (Map.Entry<Long, Path> entry : listFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+                    if (entry.getKey() <= covered) {
+                        Files.deleteIfExists(entry.getValue());
+                    }
+                }
+                for (Map.Entry<Long, Path> entry : listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+                    if (entry.getKey() < covered) {
+                        Files.deleteIfExists(entry.getValue());
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write storage snapshot", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (channel == null) {
+                    return;
+                }
+                try {
+                    channel.force(false);
+                    syncedOffset = appendedOffset;
+                    channel.close();
+                } catch (IOException e) {
+                    log.error("Failed to close write-ahead log", e);
+                } finally {
+                    channel = null;
+                }
+            }
+        }
+    }
+
+    private void sync(long offset) {
+        synchronized (syncLock) {
+            if (syncedOffset >= offset) {
+                return;
+            }
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                target = appendedOffset;
+                current = channel;
+            }
+            if (current == null) {
+                return;
+            }
+            try {
+                current.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to sync write-ahead log", e);
+            }
+            syncedOffset = target;
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync(Long.MAX_VALUE);
+        } catch (RuntimeException e) {
+            log.error("Background write-ahead log sync failed", e);
+        }
+    }
+
+    private static ByteBuffer frame(WalRecord record) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            WalCodec.writeRecord(out, record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        return frame;
+    }
+
+    private void replaySegment(Path path, Consumer<WalRecord> recordConsumer) throws IOException {
+        long size = Files.size(path);
+        long valid = 0;
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (size - valid >= FRAME_HEADER) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || length > size - valid - FRAME_HEADER) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                recordConsumer.accept(WalCodec.readRecord(new DataInputStream(new ByteArrayInputStream(payload))));
+                valid += FRAME_HEADER + length;
+                records++;
+            }
+        }
+        if (valid < size) {
+            // Хвост, оборванный при сбое во время записи: обрезаем, чтобы новые записи не шли после мусора
+            log.warn("Truncating {} bytes of incomplete records in {}", size - valid, path);
+            try (FileChannel truncate = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                truncate.truncate(valid);
+            }
+        }
+        log.info("Replayed {} records from {}", records, path.getFileName());
+    }
+
+    private void writeSnapshot(long covered, StorageSnapshot snapshot) throws IOException {
+        Path target = directory.resolve(fileName(SNAPSHOT_PREFIX, covered, SNAPSHOT_SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             OutputStream raw = new BufferedOutputStream(Channels.newOutputStream(file), 64 * 1024)) {
+            CheckedOutputStream checked = new CheckedOutputStream(raw, new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeByte(SNAPSHOT_VERSION);
+            out.writeLong(snapshot.manufacturerSequence());
+            out.writeLong(snapshot.medicationSequence());
+            // Коллекции слабо согласованные, поэтому вместо заранее записанного размера
+            // каждому элементу предшествует маркер, а список завершается нулём
+            for (ManufacturerResponse manufacturer : snapshot.manufacturers()) {
+                out.writeBoolean(true);
+                WalCodec.writeManufacturer(out, manufacturer);
+            }
+            out.writeBoolean(false);
+            for (MedicationResponse medication : snapshot.medications()) {
+                out.writeBoolean(true);
+                WalCodec.writeMedication(out, medication);
+            }
+            out.writeBoolean(false);
+            out.flush();
+            new DataOutputStream(raw).writeLong(checked.getChecksum().getValue());
+            raw.flush();
+            file.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.info("Storage snapshot written to {}", target.getFileName());
+    }
+
+    // null, если снимок повреждён или не дописан
+    private static StorageSnapshot readSnapshot(Path path) {
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(path), 64 * 1024)) {
+            CheckedInputStream checked = new CheckedInputStream(raw, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readByte() != SNAPSHOT_VERSION) {
+                return null;
+            }
+            long manufacturerSequence = in.readLong();
+            long medicationSequence = in.readLong();
+            List<ManufacturerResponse> manufacturers = new ArrayList<>();
+            while (in.readBoolean()) {
+                manufacturers.add(WalCodec.readManufacturer(in));
+            }
+            List<MedicationResponse> medications = new ArrayList<>();
+            while (in.readBoolean()) {
+                medications.add(WalCodec.readMedication(in));
+            }
+            long expected = checked.getChecksum().getValue();
+            if (new DataInputStream(raw).readLong() != expected) {
+                return null;
+            }
+            return new StorageSnapshot(manufacturerSequence, medicationSequence, manufacturers, medications);
+        } catch (EOFException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read snapshot " + path, e);
+        }
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(directory.resolve(fileName(SEGMENT_PREFIX, number, SEGMENT_SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // Файлы вида <prefix><номер><suffix>, упорядоченные по номеру
+    private List<Map.Entry<Long, Path>> listFiles(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(suffix);
+                    })
+                    .map(path -> {
+                        String name = path.getFileName().toString();
+                        String number = name.substring(prefix.length(), name.length() - suffix.length());
+                        return Map.entry(Long.parseLong(number), path);
+                    })
+                    .sorted(Map.Entry.comparingByKey())
+                    .toList();
+        }
+    }
+
+    private static String fileName(String prefix, long number, String suffix) {
+        return String.format("%s%020d%s", prefix, number, suffix);
+    }
+}
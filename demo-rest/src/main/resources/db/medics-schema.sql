@@ -0,0 +1,38 @@
+-- Схема для medics.storage.type=jdbc. Скрипт идемпотентен и выполняется при каждом запуске
+
+CREATE SEQUENCE IF NOT EXISTS manufacturer_seq START WITH 1;
+CREATE SEQUENCE IF NOT EXISTS medication_seq START WITH 1;
+
+CREATE TABLE IF NOT EXISTS manufacturers (
+    id             BIGINT       PRIMARY KEY,
+    name           VARCHAR(100) NOT NULL,
+    country        VARCHAR(50)  NOT NULL,
+    license_number VARCHAR(50)  NOT NULL,
+    contact_email  VARCHAR(100) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS medications (
+    id                    BIGINT         PRIMARY KEY,
+    name                  VARCHAR(200)   NOT NULL,
+    inn                   VARCHAR(100)   NOT NULL,
+    -- МНН в нижнем регистре: уникальность без учёта регистра
+    inn_key               VARCHAR(100)   NOT NULL,
+    atc_code              VARCHAR(50),
+    -- Нормализованный код АТХ для индексного поиска
+    atc_key               VARCHAR(50),
+    dosage_form           VARCHAR(50)    NOT NULL,
+    dosage                DECIMAL(13, 3) NOT NULL,
+    unit                  VARCHAR(10)    NOT NULL,
+    -- Удаление производителя каскадно удаляет его лекарства одной командой
+    manufacturer_id       BIGINT         NOT NULL REFERENCES manufacturers (id) ON DELETE CASCADE,
+    prescription_required BOOLEAN        NOT NULL,
+    storage_conditions    VARCHAR(500),
+    shelf_life_months     INT,
+    created_at            TIMESTAMP      NOT NULL,
+    CONSTRAINT uk_medications_inn_key UNIQUE (inn_key)
+);
+
+-- Индексы под фильтры MedicationService.findAllMedications; id в конце даёт готовый порядок для пагинации
+CREATE INDEX IF NOT EXISTS idx_medications_manufacturer ON medications (manufacturer_id, id);
+CREATE INDEX IF NOT EXISTS idx_medications_atc ON medications (atc_key, id);
+CREATE INDEX IF NOT EXISTS idx_medications_prescription ON medications (prescription_required, id);
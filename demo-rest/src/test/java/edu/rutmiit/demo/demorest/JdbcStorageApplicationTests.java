@@ -0,0 +1,48 @@
+package edu.rutmiit.demo.demorest;
+
+import edu.rutmiit.demo.demorest.service.ManufacturerService;
+import edu.rutmiit.demo.demorest.service.MedicationService;
+import edu.rutmiit.demo.demorest.storage.InMemoryStorage;
+import edu.rutmiit.demo.demorest.storage.jdbc.JdbcManufacturerRepository;
+import edu.rutmiit.demo.demorest.storage.jdbc.JdbcMedicationRepository;
+import edu.rutmiit.demo.demorest.storage.wal.WriteAheadLog;
+import edu.rutmiit.demo.medicinescontract.dto.ManufacturerRequest;
+import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Хранилище в БД поднимается целиком: DataSource, схема, JDBC-репозитории; хранилище в памяти и журнал не создаются
+@SpringBootTest(properties = {
+        "medics.storage.type=jdbc",
+        "medics.storage.wal.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:medics-smoke;DB_CLOSE_DELAY=-1"
+})
+class JdbcStorageApplicationTests {
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private ManufacturerService manufacturerService;
+
+    @Autowired
+    private MedicationService medicationService;
+
+    @Test
+    void wiresJdbcStorageInsteadOfMemory() {
+        assertThat(context.getBeansOfType(JdbcMedicationRepository.class)).hasSize(1);
+        assertThat(context.getBeansOfType(JdbcManufacturerRepository.class)).hasSize(1);
+        assertThat(context.getBeansOfType(InMemoryStorage.class)).isEmpty();
+        assertThat(context.getBeansOfType(WriteAheadLog.class)).isEmpty();
+
+        ManufacturerResponse created = manufacturerService.create(
+                new ManufacturerRequest("Bayer", "Germany", "LIC-100", "contact@bayer.com"));
+
+        assertThat(manufacturerService.findById(created.getId())).isEqualTo(created);
+        assertThat(medicationService.findMedicationsAfter(null, null, null, null, 10).content()).isEmpty();
+    }
+}
@@ -0,0 +1,70 @@
+package edu.rutmiit.demo.demorest.benchmark;
+
+import edu.rutmiit.demo.demorest.config.RabbitMQConfig;
+import edu.rutmiit.demo.events.DrugInteractionCheckedEvent;
+import edu.rutmiit.demo.events.MedicationCreatedEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Размер тела и скорость кодирования/разбора событий: JSON (Jackson) против двоичного EventCodec.
+// Конвертеры те же, что у RabbitTemplate и слушателей. Размеры тел печатаются при запуске.
+// Запуск: mvn test-compile exec:exec -Pbenchmark -Dbenchmark=EventWireFormat
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventWireFormatBenchmark {
+
+    @Param({"json", "binary"})
+    public String format;
+
+    @Param({"medication-created", "interaction-checked"})
+    public String event;
+
+    private MessageConverter converter;
+    private Object payload;
+    private Message encoded;
+
+    @Setup
+    public void setUp() {
+        converter = new RabbitMQConfig().jsonMessageConverter(format);
+        payload = switch (event) {
+            case "medication-created" -> new MedicationCreatedEvent(
+                    1024L, "Амоксициллин + Клавулановая кислота", "Amoxicillin", "Sandoz", true);
+            case "interaction-checked" -> new DrugInteractionCheckedEvent(
+                    1024L, "Варфарин", 9, "HIGH",
+                    List.of("Беременность", "Кровотечения", "Тяжёлая печёночная недостаточность"),
+                    "Совместный приём только под контролем МНО");
+            default -> throw new IllegalArgumentException(event);
+        };
+        encoded = converter.toMessage(payload, new MessageProperties());
+        System.out.printf("%n%s/%s: %d bytes%n", format, event, encoded.getBody().length);
+    }
+
+    @Benchmark
+    public Message encode() {
+        return converter.toMessage(payload, new MessageProperties());
+    }
+
+    @Benchmark
+    public Object decode() {
+        return converter.fromMessage(encoded);
+    }
+}
@@ -0,0 +1,188 @@
+package edu.rutmiit.demo.demorest.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.rutmiit.demo.events.EventHeaders;
+import edu.rutmiit.demo.events.MedicationCreatedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.net.ConnectException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EventOutboxTests {
+
+    @TempDir
+    Path directory;
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final RabbitOperations operations = mock(RabbitOperations.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<EventOutbox> started = new ArrayList<>();
+    // Сколько ближайших отправок партии завершится ошибкой соединения
+    private final AtomicInteger failures = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.isSimplePublisherConfirms()).thenReturn(true);
+        when(rabbitTemplate.getConnectionFactory()).thenReturn(connectionFactory);
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation -> {
+            if (failures.getAndUpdate(left -> Math.max(left - 1, 0)) > 0) {
+                throw new AmqpConnectException(new ConnectException("broker is down"));
+            }
+            RabbitOperations.OperationsCallback<?> callback = invocation.getArgument(0);
+            return callback.doInRabbit(operations);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        started.forEach(EventOutbox::stop);
+    }
+
+    @Test
+    void publishesQueuedEventsInConfirmedBatches() {
+        EventOutbox outbox = outbox(100, null);
+        for (long id = 1; id <= 5; id++) {
+            assertThat(outbox.enqueue("medications-exchange", "medication.created", event(id))).isTrue();
+        }
+
+        start(outbox);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> outbox.depth() == 0);
+        InOrder order = inOrder(operations);
+        for (long id = 1; id <= 5; id++) {
+            order.verify(operations).convertAndSend(eq("medications-exchange"), eq("medication.created"),
+                    eq(event(id)), any(MessagePostProcessor.class));
+        }
+        // Партии по две: 2 + 2 + 1
+        verify(operations, times(3)).waitForConfirmsOrDie(anyLong());
+        assertThat(meterRegistry.get("medics.outbox.published").counter().count()).isEqualTo(5);
+        assertThat(meterRegistry.get("medics.outbox.publish.latency").timer().count()).isEqualTo(5);
+    }
+
+    @Test
+    void retriesFailedBatchWithoutLosingEvents() {
+        failures.set(2);
+        EventOutbox outbox = outbox(100, null);
+        outbox.enqueue("medications-exchange", "medication.created", event(1));
+
+        start(outbox);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> outbox.depth() == 0);
+        verify(rabbitTemplate, times(3)).invoke(any());
+        verify(operations).convertAndSend(eq("medications-exchange"), eq("medication.created"),
+                eq(event(1)), any(MessagePostProcessor.class));
+        assertThat(meterRegistry.get("medics.outbox.publish.failures").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void retriedBatchKeepsEventIds() {
+        // Первую партию брокер не подтверждает
+        doThrow(new AmqpException("nack")).doNothing().when(operations).waitForConfirmsOrDie(anyLong());
+        EventOutbox outbox = outbox(100, null);
+        outbox.enqueue("medications-exchange", "medication.created", event(1));
+
+        start(outbox);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> outbox.depth() == 0);
+        ArgumentCaptor<MessagePostProcessor> headers = ArgumentCaptor.forClass(MessagePostProcessor.class);
+        verify(operations, times(2)).convertAndSend(eq("medications-exchange"), eq("medication.created"),
+                eq(event(1)), headers.capture());
+        String firstId = eventId(headers.getAllValues().get(0));
+        assertThat(firstId).isNotBlank();
+        assertThat(eventId(headers.getAllValues().get(1))).isEqualTo(firstId);
+    }
+
+    @Test
+    void rejectsEventsWhenFull() {
+        EventOutbox outbox = outbox(2, null);
+
+        assertThat(outbox.enqueue("medications-exchange", "medication.created", event(1))).isTrue();
+        assertThat(outbox.enqueue("medications-exchange", "medication.created", event(2))).isTrue();
+        assertThat(outbox.enqueue("medications-exchange", "medication.created", event(3))).isFalse();
+        assertThat(meterRegistry.get("medics.outbox.rejected").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("medics.outbox.depth").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void journalKeepsUnconfirmedEventsAcrossRestart() {
+        Path journal = directory.resolve("outbox.journal");
+        failures.set(Integer.MAX_VALUE);
+        EventOutbox first = outbox(100, journal);
+        first.enqueue("medications-exchange", "medication.created", event(1));
+        first.enqueue("interactions-exchange", "interaction.checked", event(2));
+        start(first);
+        first.stop();
+
+        failures.set(0);
+        EventOutbox second = outbox(100, journal);
+        assertThat(second.depth()).isEqualTo(2);
+        second.enqueue("medications-exchange", "medication.created", event(3));
+        start(second);
+        await().atMost(Duration.ofSeconds(5)).until(() -> second.depth() == 0);
+        second.stop();
+
+        InOrder order = inOrder(operations);
+        order.verify(operations).convertAndSend(eq("medications-exchange"), eq("medication.created"),
+                eq(event(1)), any(MessagePostProcessor.class));
+        order.verify(operations).convertAndSend(eq("interactions-exchange"), eq("interaction.checked"),
+                eq(event(2)), any(MessagePostProcessor.class));
+        order.verify(operations).convertAndSend(eq("medications-exchange"), eq("medication.created"),
+                eq(event(3)), any(MessagePostProcessor.class));
+        // Подтверждённые события после перезапуска не повторяются
+        assertThat(outbox(100, journal).depth()).isZero();
+    }
+
+    private EventOutbox outbox(int capacity, Path journal) {
+        OutboxProperties properties = new OutboxProperties(capacity, 2, Duration.ofSeconds(1),
+                Duration.ofMillis(10), Duration.ofMillis(50), Duration.ofSeconds(1), journal);
+        return new EventOutbox(rabbitTemplate, meterRegistry, properties,
+                journal == null ? null : new OutboxJournal(journal, objectMapper));
+    }
+
+    private void start(EventOutbox outbox) {
+        outbox.start();
+        started.add(outbox);
+    }
+
+    private static String eventId(MessagePostProcessor postProcessor) {
+        Message message = postProcessor.postProcessMessage(new Message(new byte[0], new MessageProperties()));
+        return message.getMessageProperties().getHeader(EventHeaders.EVENT_ID);
+    }
+
+    private static MedicationCreatedEvent event(long id) {
+        return new MedicationCreatedEvent(id, "Лекарство " + id, "INN " + id, "Pfizer", false);
+    }
+}
@@ -0,0 +1,60 @@
+package edu.rutmiit.demo.demorest.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTests {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker(4, 2, 50, Duration.ofSeconds(10), clock::get);
+
+    @Test
+    void opensAtFailureRateAndProbesAfterOpenDuration() {
+        call(false);
+        call(true);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertThat(breaker.tryAcquire()).isTrue();
+        // Пока пробный вызов не завершился, остальные отклоняются
+        assertThat(breaker.tryAcquire()).isFalse();
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        // Окно после замыкания чистое: старые сбои не размыкают цепь снова
+        call(false);
+        call(false);
+        call(true);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void oldOutcomesLeaveSlidingWindow() {
+        call(true);
+        for (int i = 0; i < 4; i++) {
+            call(false);
+        }
+        call(true);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        call(true);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void call(boolean failure) {
+        assertThat(breaker.tryAcquire()).isTrue();
+        if (failure) {
+            breaker.onFailure();
+        } else {
+            breaker.onSuccess();
+        }
+    }
+}
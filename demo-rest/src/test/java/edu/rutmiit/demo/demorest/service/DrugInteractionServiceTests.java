@@ -0,0 +1,174 @@
+package edu.rutmiit.demo.demorest.service;
+
+import grpc.demo.DrugInteractionRequest;
+import grpc.demo.DrugInteractionResponse;
+import grpc.demo.DrugInteractionServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DrugInteractionServiceTests {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private Server server;
+    private ManagedChannel channel;
+    private DrugInteractionService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .addService(new DrugInteractionServiceGrpc.DrugInteractionServiceImplBase() {
+                    @Override
+                    public void checkDrugInteraction(DrugInteractionRequest request,
+                                                     StreamObserver<DrugInteractionResponse> responseObserver) {
+                        calls.incrementAndGet();
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        responseObserver.onNext(DrugInteractionResponse.newBuilder()
+                                .setDrugId(request.getDrugId())
+                                .setDrugName(request.getDrugName())
+                                .setRiskLevel(request.getConcurrentDrugsCount())
+                                .build());
+                        responseObserver.onCompleted();
+                    }
+                })
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+        service = service(Duration.ofSeconds(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    void coalescesConcurrentIdenticalChecks() throws Exception {
+        List<CompletableFuture<DrugInteractionResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(service.check(request(i, "Warfarin", 70, "Aspirin", "Ibuprofen")));
+        }
+        release.countDown();
+
+        for (int i = 0; i < results.size(); i++) {
+            DrugInteractionResponse response = results.get(i).get(5, TimeUnit.SECONDS);
+            assertThat(response.getRiskLevel()).isEqualTo(2);
+            // Ответ из кэша отдаётся с идентификатором своего запроса
+            assertThat(response.getDrugId()).isEqualTo(i);
+        }
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void keyIgnoresCaseOrderAndAgeWithinBand() throws Exception {
+        release.countDown();
+        service.check(request(1, "Warfarin", 70, "Aspirin", "Ibuprofen")).get(5, TimeUnit.SECONDS);
+        service.check(request(1, " WARFARIN", 80, "ibuprofen", "aspirin", "Aspirin")).get(5, TimeUnit.SECONDS);
+        assertThat(calls).hasValue(1);
+
+        // 40 лет — другая возрастная группа, у analytics-service другой риск
+        service.check(request(1, "Warfarin", 40, "Aspirin", "Ibuprofen")).get(5, TimeUnit.SECONDS);
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void selfOnlyConcurrentListIsNotConfusedWithEmptyList() throws Exception {
+        release.countDown();
+        // Без сопутствующих analytics-service перечисляет все взаимодействия, с ними — проверяет пары
+        DrugInteractionResponse alone = service.check(request(1, "Warfarin", 70)).get(5, TimeUnit.SECONDS);
+        DrugInteractionResponse withSelf = service.check(request(1, "Warfarin", 70, "warfarin"))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(calls).hasValue(2);
+        assertThat(alone.getRiskLevel()).isZero();
+        assertThat(withSelf.getRiskLevel()).isEqualTo(1);
+
+        // Повтор самого препарата в списке — тот же запрос
+        service.check(request(1, "Warfarin", 70, "Warfarin", "WARFARIN")).get(5, TimeUnit.SECONDS);
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void newDatasetVersionClearsCache() throws Exception {
+        release.countDown();
+        service.check(request(1, "Warfarin", 70, "Aspirin")).get(5, TimeUnit.SECONDS);
+
+        service.datasetChanged("a1");
+        service.check(request(1, "Warfarin", 70, "Aspirin")).get(5, TimeUnit.SECONDS);
+        assertThat(calls).hasValue(2);
+
+        // Повторное объявление той же версии (например, при перезапуске analytics-service) кэш не сбрасывает
+        service.datasetChanged("a1");
+        service.check(request(1, "Warfarin", 70, "Aspirin")).get(5, TimeUnit.SECONDS);
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void slowServerGetsDegradedAnswersAndThenIsNotCalled() throws Exception {
+        DrugInteractionService impatient = service(Duration.ofMillis(50));
+        for (int i = 0; i < 4; i++) {
+            DrugInteractionResponse response =
+                    impatient.check(request(1, "Drug" + i, 30)).get(5, TimeUnit.SECONDS);
+            assertThat(DrugInteractionService.isDegraded(response)).isTrue();
+            assertThat(response.getRiskLevel()).isZero();
+        }
+        assertThat(impatient.circuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(calls).hasValue(4);
+
+        // Разомкнутая цепь отвечает сразу, без вызова и без ожидания срока
+        List<DrugInteractionResponse> batch =
+                impatient.checkBatch(List.of(request(1, "Other", 30))).get(5, TimeUnit.SECONDS);
+        assertThat(DrugInteractionService.isDegraded(batch.getFirst())).isTrue();
+        assertThat(calls).hasValue(4);
+
+        // Заглушка не кэшируется: после восстановления сервера проверка выполняется по-настоящему
+        release.countDown();
+        assertThat(DrugInteractionService.isDegraded(
+                service.check(request(1, "Drug0", 30)).get(5, TimeUnit.SECONDS))).isFalse();
+    }
+
+    private DrugInteractionService service(Duration deadline) {
+        InteractionClientProperties properties = new InteractionClientProperties(
+                new InteractionClientProperties.Cache(100, Duration.ofMinutes(10)),
+                deadline, deadline,
+                new InteractionClientProperties.Hedging(false, 2, Duration.ofMillis(50)),
+                new InteractionClientProperties.CircuitBreaker(4, 4, 50, Duration.ofMinutes(1)));
+        DrugInteractionService created = new DrugInteractionService(new SimpleMeterRegistry(), properties);
+        ReflectionTestUtils.setField(created, "drugInteractionStub", DrugInteractionServiceGrpc.newStub(channel));
+        return created;
+    }
+
+    private static DrugInteractionRequest request(long drugId, String drugName, int age, String... concurrent) {
+        return DrugInteractionRequest.newBuilder()
+                .setDrugId(drugId)
+                .setDrugName(drugName)
+                .setPatientAge(age)
+                .addAllConcurrentDrugs(List.of(concurrent))
+                .build();
+    }
+}
@@ -0,0 +1,94 @@
+package edu.rutmiit.demo.demorest.service;
+
+import edu.rutmiit.demo.demorest.exception.GlobalExceptionHandler;
+import edu.rutmiit.demo.demorest.outbox.EventOutbox;
+import edu.rutmiit.demo.demorest.storage.InMemoryManufacturerRepository;
+import edu.rutmiit.demo.demorest.storage.InMemoryMedicationRepository;
+import edu.rutmiit.demo.demorest.storage.InMemoryStorage;
+import edu.rutmiit.demo.medicinescontract.dto.MedicationResponse;
+import edu.rutmiit.demo.medicinescontract.dto.PagedResponse;
+import edu.rutmiit.demo.medicinescontract.exception.MedicationValidationException;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.Mockito.mock;
+
+class MedicationCursorPagingTests {
+
+    private MedicationService medicationService;
+
+    // Демо-данные: Аспирин (1, Pfizer), Амоксициллин (2, Novartis), Ибупрофен (3, Pfizer)
+    @BeforeEach
+    void setUp() {
+        InMemoryStorage storage = new InMemoryStorage();
+        storage.init();
+        medicationService = new MedicationService(new InMemoryMedicationRepository(storage),
+                new ManufacturerService(new InMemoryManufacturerRepository(storage)), mock(EventOutbox.class),
+                Validation.buildDefaultValidatorFactory().getValidator(), 1000);
+    }
+
+    @Test
+    void nextCursorChainsPagesUntilLastPage() {
+        List<Long> ids = new ArrayList<>();
+        List<Boolean> lastFlags = new ArrayList<>();
+        String cursor = null;
+        do {
+            PagedResponse<MedicationResponse> page = medicationService.findMedicationsAfter(null, null, null, cursor, 1);
+            page.content().forEach(medication -> ids.add(medication.getId()));
+            lastFlags.add(page.last());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(ids).containsExactly(1L, 2L, 3L);
+        assertThat(lastFlags).containsExactly(false, false, true);
+    }
+
+    @Test
+    void lastPageHasNoCursorEvenWhenFull() {
+        PagedResponse<MedicationResponse> page = medicationService.findMedicationsAfter(null, null, null, null, 3);
+
+        assertThat(page.content()).hasSize(3);
+        assertThat(page.last()).isTrue();
+        assertThat(page.nextCursor()).isNull();
+        assertThat(page.totalElements()).isEqualTo(-1);
+    }
+
+    @Test
+    void cursorKeepsFilter() {
+        PagedResponse<MedicationResponse> first = medicationService.findMedicationsAfter(1L, null, null, null, 1);
+        PagedResponse<MedicationResponse> second =
+                medicationService.findMedicationsAfter(1L, null, null, first.nextCursor(), 1);
+
+        assertThat(first.content()).extracting(MedicationResponse::getName).containsExactly("Аспирин");
+        assertThat(second.content()).extracting(MedicationResponse::getName).containsExactly("Ибупрофен");
+        assertThat(second.nextCursor()).isNull();
+    }
+
+    @Test
+    void invalidCursorIsBadRequest() {
+        for (String cursor : List.of("не base64", "YWJj")) {
+            MedicationValidationException error = catchThrowableOfType(MedicationValidationException.class,
+                    () -> medicationService.findMedicationsAfter(null, null, null, cursor, 10));
+
+            assertThat(error).isNotNull();
+            assertThat(new GlobalExceptionHandler().handleMedicationValidation(error).getStatusCode())
+                    .isEqualTo(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @Test
+    void rejectsPageSizeBelowOne() {
+        for (int size : new int[]{0, -1}) {
+            assertThatThrownBy(() -> medicationService.findMedicationsAfter(null, null, null, null, size))
+                    .isInstanceOf(MedicationValidationException.class);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package edu.rutmiit.demo.demorest.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.rutmiit.demo.demorest.config.RabbitMQConfig;
+import edu.rutmiit.demo.demorest.outbox.EventOutbox;
+import edu.rutmiit.demo.demorest.storage.InMemoryManufacturerRepository;
+import edu.rutmiit.demo.demorest.storage.InMemoryMedicationRepository;
+import edu.rutmiit.demo.demorest.storage.InMemoryStorage;
+import edu.rutmiit.demo.medicinescontract.dto.BulkImportResult;
+import edu.rutmiit.demo.medicinescontract.dto.MedicationRequest;
+import edu.rutmiit.demo.events.MedicationCreatedEvent;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class MedicationImportTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final EventOutbox eventOutbox = mock(EventOutbox.class);
+    private InMemoryStorage storage;
+    private MedicationService medicationService;
+
+    @BeforeEach
+    void setUp() {
+        storage = new InMemoryStorage();
+        storage.init();
+        ManufacturerService manufacturerService = new ManufacturerService(new InMemoryManufacturerRepository(storage));
+        medicationService = new MedicationService(new InMemoryMedicationRepository(storage), manufacturerService,
+                eventOutbox, Validation.buildDefaultValidatorFactory().getValidator(), 2);
+    }
+
+    @Test
+    void importsJsonArrayInChunksWithPerRowResults() throws IOException {
+        String body = "[" + String.join(",",
+                row("Парацетамол", "Paracetamol", 1),
+                row("Аспирин Кардио", "acetylsalicylic ACID", 1),
+                row("Нурофен", "Ibuprofen lysine", 99),
+                row("", "Loratadine", 1),
+                row("Цетрин", "Cetirizine", 2)) + "]";
+
+        List<BulkImportResult> results = importBody(body, false);
+
+        assertThat(results).extracting(BulkImportResult::row).containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(results).extracting(BulkImportResult::status).containsExactly(
+                BulkImportResult.Status.CREATED, BulkImportResult.Status.FAILED, BulkImportResult.Status.FAILED,
+                BulkImportResult.Status.FAILED, BulkImportResult.Status.CREATED);
+        assertThat(storage.findMedicationIdByInn("paracetamol")).isEqualTo(results.get(0).id());
+        assertThat(storage.medications).hasSize(5);
+        verify(eventOutbox, times(2)).enqueue(eq(RabbitMQConfig.EXCHANGE_NAME),
+                eq(RabbitMQConfig.ROUTING_KEY_MEDICATION_CREATED), any(MedicationCreatedEvent.class));
+    }
+
+    @Test
+    void upsertUpdatesExistingInnFromNdjson() throws IOException {
+        Long aspirinId = storage.findMedicationIdByInn("Acetylsalicylic acid");
+        String body = row("Аспирин Кардио", "ACETYLSALICYLIC ACID", 2) + "\n" + row("Лоратадин", "Loratadine", 1) + "\n";
+
+        List<BulkImportResult> results = importBody(body, true);
+
+        assertThat(results).extracting(BulkImportResult::status)
+                .containsExactly(BulkImportResult.Status.UPDATED, BulkImportResult.Status.CREATED);
+        assertThat(results.getFirst().id()).isEqualTo(aspirinId);
+        assertThat(storage.medications.get(aspirinId).getName()).isEqualTo("Аспирин Кардио");
+        assertThat(storage.medications.get(aspirinId).getManufacturer().getId()).isEqualTo(2L);
+    }
+
+    @Test
+    void malformedInputStopsImportAfterSavingPreviousRows() throws IOException {
+        String body = row("Лоратадин", "Loratadine", 1) + "\n{\"name\": oops}\n" + row("Цетрин", "Cetirizine", 1);
+
+        List<BulkImportResult> results = importBody(body, false);
+
+        assertThat(results).extracting(BulkImportResult::status)
+                .containsExactly(BulkImportResult.Status.CREATED, BulkImportResult.Status.FAILED);
+        assertThat(results.get(1).row()).isEqualTo(2L);
+        assertThat(storage.findMedicationIdByInn("Cetirizine")).isNull();
+    }
+
+    private List<BulkImportResult> importBody(String body, boolean upsert) throws IOException {
+        Iterator<MedicationRequest> requests = objectMapper.readerFor(MedicationRequest.class).readValues(body);
+        List<BulkImportResult> results = new ArrayList<>();
+        medicationService.importMedications(requests, upsert, results::addAll);
+        return results;
+    }
+
+    private static String row(String name, String inn, long manufacturerId) {
+        return """
+                {"name": "%s", "inn": "%s", "atcCode": "N02BE01", "dosageForm": "Таблетки", "dosage": 500,
+                 "unit": "мг", "manufacturerId": %d, "prescriptionRequired": false}"""
+                .formatted(name, inn, manufacturerId).replace("\n", "");
+    }
+}
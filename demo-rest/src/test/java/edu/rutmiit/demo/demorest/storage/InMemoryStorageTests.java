@@ -0,0 +1,225 @@
+package edu.rutmiit.demo.demorest.storage;
+
+import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
+import edu.rutmiit.demo.medicinescontract.dto.MedicationResponse;
+import edu.rutmiit.demo.medicinescontract.exception.InnAlreadyExistsException;
+import edu.rutmiit.demo.medicinescontract.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryStorageTests {
+
+    private final ManufacturerResponse manufacturer =
+            new ManufacturerResponse(1L, "Pfizer", "USA", "LIC-001", "contact@pfizer.com");
+
+    @Test
+    void indexesFollowUpdatesAndDeletes() {
+        InMemoryStorage storage = newStorage();
+        storage.saveMedication(medication(10L, "Ibuprofen", "M01AE01"));
+
+        storage.saveMedication(medication(10L, "Ibuprofen", "N02BE01"));
+
+        assertThat(storage.medicationIdsByAtcCode("m01ae01")).isEmpty();
+        assertThat(storage.medicationIdsByAtcCode("n02be01")).containsExactly(10L);
+        assertThat(storage.medicationIdsByManufacturer(1L)).containsExactly(10L);
+
+        storage.removeMedication(10L);
+
+        assertThat(storage.medicationIds()).isEmpty();
+        assertThat(storage.medicationIdsByManufacturer(1L)).isEmpty();
+        assertThat(storage.findMedicationIdByInn("IBUPROFEN")).isNull();
+    }
+
+    @Test
+    void updateMovesMedicationBetweenIndexBucketsAndDeleteLeavesNoEmptySets() {
+        InMemoryStorage storage = newStorage();
+        ManufacturerResponse novartis =
+                new ManufacturerResponse(2L, "Novartis", "Switzerland", "LIC-002", "contact@novartis.com");
+        storage.saveManufacturer(novartis);
+        storage.saveMedication(medication(10L, "Ibuprofen", "M01AE01"));
+        storage.saveMedication(medication(11L, "Paracetamol", "N02BE01"));
+
+        storage.saveMedication(new MedicationResponse(10L, "Medication 10", "Ibuprofen", "N02BE01", "Таблетки",
+                new BigDecimal("100"), "мг", novartis, true, null, 12, LocalDateTime.now()));
+
+        assertThat(storage.medicationIdsByManufacturer(1L)).containsExactly(11L);
+        assertThat(storage.medicationIdsByManufacturer(2L)).containsExactly(10L);
+        assertThat(storage.medicationIdsByAtcCode("N02BE01")).containsExactly(10L, 11L);
+        assertThat(storage.medicationIdsByPrescription(true)).containsExactly(10L);
+        assertThat(storage.medicationIdsByPrescription(false)).containsExactly(11L);
+        assertThat(storage.indexedAtcCodes()).containsExactly("N02BE01");
+
+        storage.removeMedication(10L);
+        storage.removeMedication(11L);
+
+        assertThat(storage.indexedManufacturerIds()).isEmpty();
+        assertThat(storage.indexedAtcCodes()).isEmpty();
+        assertThat(storage.medicationIdsByPrescription(true)).isEmpty();
+        assertThat(storage.medicationIdsByPrescription(false)).isEmpty();
+        assertThat(storage.countMedicationsByPrescription(true)).isZero();
+        assertThat(storage.countMedicationsByPrescription(false)).isZero();
+    }
+
+    @Test
+    void prescriptionIndexTracksStatusChanges() {
+        InMemoryStorage storage = newStorage();
+        storage.saveMedication(medication(1L, "Ibuprofen", "M01AE01"));
+        storage.saveMedication(medication(2L, "Amoxicillin", "J01CA04"));
+
+        MedicationResponse otc = storage.medications.get(2L);
+        storage.saveMedication(new MedicationResponse(otc.getId(), otc.getName(), otc.getInn(), otc.getAtcCode(),
+                otc.getDosageForm(), otc.getDosage(), otc.getUnit(), otc.getManufacturer(), true,
+                otc.getStorageConditions(), otc.getShelfLifeMonths(), otc.getCreatedAt()));
+
+        assertThat(storage.medicationIdsByPrescription(true)).containsExactly(2L);
+        assertThat(storage.medicationIdsByPrescription(false)).containsExactly(1L);
+        assertThat(storage.countMedicationsByPrescription(true)).isEqualTo(1);
+        assertThat(storage.countMedicationsByPrescription(false)).isEqualTo(1);
+
+        storage.removeMedication(2L);
+
+        assertThat(storage.countMedicationsByPrescription(true)).isZero();
+    }
+
+    @Test
+    void searchMatchesSubstringsIgnoringCaseAndRanksBestFirst() {
+        InMemoryStorage storage = newStorage();
+        storage.saveMedication(medication(1L, "Аспирин Кардио", "Acetylsalicylic acid", "B01AC06"));
+        storage.saveMedication(medication(2L, "Аспирин", "Acetylsalicylic acid forte", "B01AC06"));
+        storage.saveMedication(medication(3L, "Ибупрофен", "Ibuprofen", "M01AE01"));
+
+        assertThat(storage.searchMedicationIds("АСПИРИН")).containsExactly(2L, 1L);
+        assertThat(storage.searchMedicationIds("salicyl")).containsExactly(1L, 2L);
+        assertThat(storage.searchMedicationIds("пр")).containsExactly(3L);
+        assertThat(storage.searchMedicationIds("парацетамол")).isEmpty();
+
+        storage.removeMedication(2L);
+
+        assertThat(storage.searchMedicationIds("аспирин")).containsExactly(1L);
+    }
+
+    @Test
+    void medicationsSeeManufacturerUpdatesWithoutRewrite() {
+        InMemoryStorage storage = newStorage();
+        storage.saveMedication(medication(10L, "Ibuprofen", "M01AE01"));
+
+        storage.saveManufacturer(new ManufacturerResponse(1L, "Pfizer Inc.", "USA", "LIC-001", "info@pfizer.com"));
+
+        assertThat(storage.medications.get(10L).getManufacturer().getName()).isEqualTo("Pfizer Inc.");
+        assertThat(storage.medications.values()).extracting(med -> med.getManufacturer().getContactEmail())
+                .containsExactly("info@pfizer.com");
+    }
+
+    @Test
+    void innIsUniqueIgnoringCase() {
+        InMemoryStorage storage = newStorage();
+        storage.saveMedication(medication(1L, "Amoxicillin", "J01CA04"));
+
+        assertThatThrownBy(() -> storage.saveMedication(medication(2L, "AMOXICILLIN", "J01CA04")))
+                .isInstanceOf(InnAlreadyExistsException.class);
+        assertThat(storage.medications).containsOnlyKeys(1L);
+        assertThat(storage.medicationIdsByAtcCode("J01CA04")).containsExactly(1L);
+    }
+
+    @Test
+    void concurrentWritesWithSameInnHaveSingleWinner() throws Exception {
+        InMemoryStorage storage = newStorage();
+        int writers = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger conflicts = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (long id = 1; id <= writers; id++) {
+                long medicationId = id;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        storage.saveMedication(medication(medicationId, "Ibuprofen", "M01AE01"));
+                    } catch (InnAlreadyExistsException e) {
+                        conflicts.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(storage.medications).hasSize(1);
+        assertThat(conflicts).hasValue(writers - 1);
+    }
+
+    @Test
+    void cascadeDeleteLeavesNoOrphansUnderConcurrentWrites() throws Exception {
+        InMemoryStorage storage = newStorage();
+        for (long id = 1; id <= 100; id++) {
+            storage.saveMedication(medication(id, "Existing " + id, "A01AA01"));
+        }
+        int writers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                long firstId = 1000L + writer * 1000L;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (long id = firstId; id < firstId + 200; id++) {
+                        try {
+                            storage.saveMedication(medication(id, "Concurrent " + id, "A01AA01"));
+                        } catch (ResourceNotFoundException e) {
+                            // Производитель уже удалён: лекарство не должно сохраниться
+                        }
+                    }
+                    return null;
+                }));
+            }
+            futures.add(executor.submit(() -> {
+                start.await();
+                return storage.removeManufacturer(manufacturer.getId());
+            }));
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(storage.manufacturers).isEmpty();
+        assertThat(storage.medications).isEmpty();
+        assertThat(storage.medicationIdsByManufacturer(manufacturer.getId())).isEmpty();
+    }
+
+    private InMemoryStorage newStorage() {
+        InMemoryStorage storage = new InMemoryStorage();
+        storage.saveManufacturer(manufacturer);
+        return storage;
+    }
+
+    private MedicationResponse medication(Long id, String inn, String atcCode) {
+        return medication(id, "Medication " + id, inn, atcCode);
+    }
+
+    private MedicationResponse medication(Long id, String name, String inn, String atcCode) {
+        return new MedicationResponse(id, name, inn, atcCode, "Таблетки",
+                new BigDecimal("100"), "мг", manufacturer, false, null, 12, LocalDateTime.now());
+    }
+}
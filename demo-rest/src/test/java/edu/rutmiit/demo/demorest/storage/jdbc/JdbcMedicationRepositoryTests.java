@@ -0,0 +1,146 @@
+package edu.rutmiit.demo.demorest.storage.jdbc;
+
+import edu.rutmiit.demo.demorest.storage.MedicationFilter;
+import edu.rutmiit.demo.demorest.storage.MedicationSlice;
+import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
+import edu.rutmiit.demo.medicinescontract.dto.MedicationResponse;
+import edu.rutmiit.demo.medicinescontract.exception.InnAlreadyExistsException;
+import edu.rutmiit.demo.medicinescontract.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JdbcMedicationRepositoryTests {
+
+    private EmbeddedDatabase database;
+    private JdbcManufacturerRepository manufacturers;
+    private JdbcMedicationRepository medications;
+    private ManufacturerResponse pfizer;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript(JdbcStorageConfiguration.SCHEMA_SCRIPT)
+                .build();
+        NamedParameterJdbcTemplate jdbc = new NamedParameterJdbcTemplate(database);
+        manufacturers = new JdbcManufacturerRepository(jdbc);
+        medications = new JdbcMedicationRepository(jdbc);
+        pfizer = manufacturers.save(new ManufacturerResponse(
+                manufacturers.nextId(), "Pfizer", "USA", "LIC-001", "contact@pfizer.com"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void savesAndReadsMedicationWithManufacturer() {
+        MedicationResponse saved = medications.save(medication("Аспирин", "Acetylsalicylic acid", "B01AC06", false));
+
+        assertThat(medications.findById(saved.getId())).contains(saved);
+        assertThat(medications.findIdByInn("ACETYLSALICYLIC ACID")).contains(saved.getId());
+    }
+
+    @Test
+    void rejectsDuplicateInnIgnoringCase() {
+        medications.save(medication("Аспирин", "Acetylsalicylic acid", "B01AC06", false));
+
+        assertThatThrownBy(() -> medications.save(medication("Аспирин Кардио", "ACETYLSALICYLIC ACID", "B01AC06", false)))
+                .isInstanceOf(InnAlreadyExistsException.class);
+    }
+
+    @Test
+    void filtersAndPagesInDatabase() {
+        medications.saveAll(List.of(
+                medication("Аспирин", "Acetylsalicylic acid", "B01AC06", false),
+                medication("Амоксициллин", "Amoxicillin", "J01CA04", true),
+                medication("Ибупрофен", "Ibuprofen", "m01ae01", false),
+                medication("Нурофен", "Ibuprofen forte", "M01AE01", false)));
+
+        MedicationSlice byAtc = medications.findPage(new MedicationFilter(null, "M01AE01", null), 0, 1);
+        assertThat(byAtc.totalElements()).isEqualTo(2);
+        assertThat(byAtc.content()).extracting(MedicationResponse::getName).containsExactly("Ибупрофен");
+
+        MedicationSlice bySearch = medications.findPage(new MedicationFilter(pfizer.getId(), null, "ИБУ"), 0, 10);
+        assertThat(bySearch.content()).extracting(MedicationResponse::getName).containsExactly("Ибупрофен");
+
+        List<MedicationResponse> firstPage = medications.findAfter(new MedicationFilter(null, null, null), null, 2);
+        List<MedicationResponse> secondPage = medications.findAfter(
+                new MedicationFilter(null, null, null), firstPage.getLast().getId(), 2);
+        assertThat(secondPage).extracting(MedicationResponse::getName).containsExactly("Ибупрофен", "Нурофен");
+
+        MedicationSlice prescription = medications.findByPrescription(true, 0, 10);
+        assertThat(prescription.totalElements()).isEqualTo(1);
+        assertThat(prescription.content()).extracting(MedicationResponse::getName).containsExactly("Амоксициллин");
+    }
+
+    @Test
+    void streamsFilteredMedicationsInIdOrder() {
+        medications.saveAll(List.of(
+                medication("Нурофен", "Ibuprofen forte", "M01AE01", false),
+                medication("Амоксициллин", "Amoxicillin", "J01CA04", true),
+                medication("Ибупрофен", "Ibuprofen", "M01AE01", false)));
+
+        try (Stream<MedicationResponse> stream = medications.streamAll(new MedicationFilter(null, "m01ae01", null))) {
+            assertThat(stream).extracting(MedicationResponse::getName).containsExactly("Нурофен", "Ибупрофен");
+        }
+    }
+
+    @Test
+    void deletingManufacturerCascadesToMedications() {
+        medications.save(medication("Аспирин", "Acetylsalicylic acid", "B01AC06", false));
+        medications.save(medication("Нурофен", "Ibuprofen forte", "M01AE01", false));
+
+        assertThat(manufacturers.deleteById(pfizer.getId())).isTrue();
+        assertThat(medications.findIdByInn("Acetylsalicylic acid")).isEmpty();
+        assertThat(medications.findPage(new MedicationFilter(null, null, null), 0, 10).totalElements()).isZero();
+        assertThatThrownBy(() -> medications.save(medication("Ибупрофен", "Ibuprofen", "M01AE01", false)))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void rethrowsViolationsOtherThanInnAndManufacturer() {
+        // Название длиннее столбца name VARCHAR(200)
+        MedicationResponse tooLong = medication("А".repeat(201), "Ibuprofen", "M01AE01", false);
+
+        assertThatThrownBy(() -> medications.save(tooLong))
+                .isExactlyInstanceOf(DataIntegrityViolationException.class);
+        assertThatThrownBy(() -> medications.saveAll(List.of(
+                medication("Аспирин", "Acetylsalicylic acid", "B01AC06", false), tooLong)))
+                .isExactlyInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void saveAllReportsDuplicateInnAfterSavingPrecedingRows() {
+        medications.save(medication("Аспирин", "Acetylsalicylic acid", "B01AC06", false));
+
+        assertThatThrownBy(() -> medications.saveAll(List.of(
+                medication("Ибупрофен", "Ibuprofen", "M01AE01", false),
+                medication("Аспирин Кардио", "ACETYLSALICYLIC ACID", "B01AC06", false))))
+                .isInstanceOf(InnAlreadyExistsException.class);
+        assertThat(medications.findIdByInn("Ibuprofen")).isPresent();
+    }
+
+    private MedicationResponse medication(String name, String inn, String atcCode, boolean prescriptionRequired) {
+        return new MedicationResponse(medications.nextId(), name, inn, atcCode, "Таблетки",
+                new BigDecimal("500.000"), "мг", pfizer, prescriptionRequired, "Хранить в сухом месте", 36,
+                LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+    }
+}
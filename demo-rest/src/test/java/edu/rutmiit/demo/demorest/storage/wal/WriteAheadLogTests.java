@@ -0,0 +1,154 @@
+package edu.rutmiit.demo.demorest.storage.wal;
+
+import edu.rutmiit.demo.demorest.storage.InMemoryStorage;
+import edu.rutmiit.demo.medicinescontract.dto.ManufacturerResponse;
+import edu.rutmiit.demo.medicinescontract.dto.MedicationResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WriteAheadLogTests {
+
+    @TempDir
+    Path directory;
+
+    private WriteAheadLog log;
+
+    private final ManufacturerResponse manufacturer =
+            new ManufacturerResponse(100L, "Bayer", "Germany", "LIC-100", "contact@bayer.com");
+
+    @Test
+    void firstStartSeedsAndRestartReplaysLog() throws IOException {
+        InMemoryStorage storage = open();
+        assertThat(storage.medications).hasSize(3);
+        storage.saveManufacturer(manufacturer);
+        storage.saveMedication(medication(200L, "Aspirin", "Acetylsalicylic acid 2"));
+        storage.removeMedication(1L);
+        closeLog();
+
+        InMemoryStorage restored = open();
+
+        assertThat(restored.manufacturers).containsKey(100L);
+        assertThat(restored.medications).doesNotContainKey(1L).containsKey(200L);
+        assertThat(restored.medications.get(200L).getManufacturer().getName()).isEqualTo("Bayer");
+        assertThat(restored.findMedicationIdByInn("ACETYLSALICYLIC ACID 2")).isEqualTo(200L);
+        assertThat(restored.medicationSequence.get()).isGreaterThanOrEqualTo(200L);
+        closeLog();
+    }
+
+    @Test
+    void checkpointReplacesOldSegmentsWithSnapshot() throws IOException {
+        InMemoryStorage storage = open();
+        storage.saveManufacturer(manufacturer);
+        log.checkpoint(() -> new StorageSnapshot(storage.manufacturerSequence.get(),
+                storage.medicationSequence.get(), storage.manufacturers.values(), storage.medications.values()));
+        storage.saveMedication(medication(300L, "Paracetamol", "Paracetamol"));
+        closeLog();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(path -> path.getFileName().toString()))
+                    .contains("snapshot-00000000000000000001.bin")
+                    .doesNotContain("wal-00000000000000000001.log");
+        }
+        InMemoryStorage restored = open();
+        assertThat(restored.medications).hasSize(4).containsKey(300L);
+        assertThat(restored.manufacturers).containsKey(100L);
+        closeLog();
+    }
+
+    @Test
+    void checkpointDuringWriteLosesNoAcknowledgedWrite() throws Exception {
+        // Запись задерживается между попаданием в журнал и применением к данным
+        CountDownLatch appended = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        log = new WriteAheadLog(directory, FsyncPolicy.PER_WRITE, Duration.ofMillis(50), Duration.ofHours(1)) {
+            @Override
+            public long append(WalRecord record) {
+                long offset = super.append(record);
+                if (record instanceof WalRecord.MedicationSaved saved && saved.medication().getId() == 500L) {
+                    appended.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return offset;
+            }
+        };
+        InMemoryStorage storage = new InMemoryStorage(log);
+        storage.init();
+        storage.saveManufacturer(manufacturer);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> write = executor.submit(() -> storage.saveMedication(medication(500L, "Aspirin", "Aspirin 500")));
+            assertThat(appended.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<?> checkpoint = executor.submit(storage::checkpoint);
+            Thread.sleep(200);
+            release.countDown();
+            write.get(5, TimeUnit.SECONDS);
+            checkpoint.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        closeLog();
+
+        InMemoryStorage restored = open();
+        assertThat(restored.medications).containsKey(500L);
+        closeLog();
+    }
+
+    @Test
+    void tornTailIsDiscardedOnRecovery() throws IOException {
+        InMemoryStorage storage = open();
+        storage.saveManufacturer(manufacturer);
+        closeLog();
+        // Имитируем сбой посреди записи: недописанный кадр в конце сегмента
+        Path segment = directory.resolve("wal-00000000000000000001.log");
+        Files.write(segment, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+        InMemoryStorage restored = open();
+        restored.saveMedication(medication(400L, "Ibuprofen", "Ibuprofen 400"));
+        closeLog();
+
+        InMemoryStorage reopened = open();
+        assertThat(reopened.manufacturers).containsKey(100L);
+        assertThat(reopened.medications).containsKey(400L);
+        closeLog();
+    }
+
+    private WriteAheadLog newLog() throws IOException {
+        return new WriteAheadLog(directory, FsyncPolicy.PER_WRITE, Duration.ofMillis(50), Duration.ofHours(1));
+    }
+
+    private InMemoryStorage open() throws IOException {
+        log = newLog();
+        InMemoryStorage storage = new InMemoryStorage(log);
+        storage.init();
+        return storage;
+    }
+
+    private void closeLog() {
+        log.close();
+    }
+
+    private MedicationResponse medication(Long id, String name, String inn) {
+        return new MedicationResponse(id, name, inn, "N02BA01", "Таблетки", new BigDecimal("500"), "мг",
+                manufacturer, false, "Хранить в сухом месте", 36, LocalDateTime.of(2024, 1, 1, 12, 0));
+    }
+}
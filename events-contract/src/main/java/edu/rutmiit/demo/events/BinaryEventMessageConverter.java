@@ -0,0 +1,57 @@
+package edu.rutmiit.demo.events;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractMessageConverter;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+// События контракта в двоичном формате EventCodec (content-type application/x-medics-event).
+// Прочие объекты и сообщения с другим content-type обрабатывает fallback (JSON).
+// spring-amqp подключается сервисом: в events-contract он только provided
+public class BinaryEventMessageConverter extends AbstractMessageConverter {
+
+    public static final String WIRE_FORMAT_BINARY = "binary";
+
+    private final MessageConverter fallback;
+
+    public BinaryEventMessageConverter(MessageConverter fallback) {
+        this.fallback = fallback;
+    }
+
+    // Входящие сообщения разбираются по content-type: двоичные события и JSON принимаются одновременно,
+    // поэтому отправителей можно переключать по одному. Отправка — в JSON, двоичный формат только
+    // при wireFormat = binary
+    public static MessageConverter byContentType(MessageConverter json, String wireFormat) {
+        BinaryEventMessageConverter binary = new BinaryEventMessageConverter(json);
+        ContentTypeDelegatingMessageConverter converter = new ContentTypeDelegatingMessageConverter(
+                WIRE_FORMAT_BINARY.equalsIgnoreCase(wireFormat) ? binary : json);
+        converter.addDelegate(MessageProperties.CONTENT_TYPE_JSON, json);
+        converter.addDelegate(EventCodec.CONTENT_TYPE, binary);
+        return converter;
+    }
+
+    @Override
+    protected Message createMessage(Object object, MessageProperties messageProperties) {
+        if (!EventCodec.supports(object.getClass())) {
+            return fallback.toMessage(object, messageProperties);
+        }
+        byte[] body = EventCodec.encode(object);
+        messageProperties.setContentType(EventCodec.CONTENT_TYPE);
+        messageProperties.setContentLength(body.length);
+        return new Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) {
+        if (!EventCodec.CONTENT_TYPE.equals(message.getMessageProperties().getContentType())) {
+            return fallback.fromMessage(message);
+        }
+        try {
+            return EventCodec.decode(message.getBody());
+        } catch (IllegalArgumentException e) {
+            throw new MessageConversionException("Failed to decode event", e);
+        }
+    }
+}
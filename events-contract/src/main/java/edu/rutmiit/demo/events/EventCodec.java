@@ -0,0 +1,255 @@
+package edu.rutmiit.demo.events;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Компактный двоичный формат событий контракта — вместо JSON с именами полей и рефлексией.
+// Сообщение: [версия][тип события][маска заданных полей][поля по порядку объявления в record].
+// Целые — varint (со знаком — zigzag), строки — varint (длина UTF-8 + 1) и байты, 0 означает null;
+// маска отмечает заданные нестроковые поля (Long, Integer, Double, List).
+// Новые поля добавляются только в конец record: старый декодер пропускает незнакомый хвост
+public final class EventCodec {
+
+    public static final String CONTENT_TYPE = "application/x-medics-event";
+
+    private static final byte VERSION = 1;
+
+    private static final byte MEDICATION_CREATED = 1;
+    private static final byte INTERACTION_CHECKED = 2;
+    private static final byte USER_RATED = 3;
+
+    private EventCodec() {
+    }
+
+    public static boolean supports(Class<?> type) {
+        return type == MedicationCreatedEvent.class
+                || type == DrugInteractionCheckedEvent.class
+                || type == UserRatedEvent.class;
+    }
+
+    public static byte[] encode(Object event) {
+        Writer out = new Writer();
+        out.writeByte(VERSION);
+        switch (event) {
+            case MedicationCreatedEvent e -> {
+                out.writeByte(MEDICATION_CREATED);
+                out.writeByte(mask(e.medicationId()));
+                if (e.medicationId() != null) {
+                    out.writeSignedVarLong(e.medicationId());
+                }
+                out.writeString(e.medicationName());
+                out.writeString(e.inn());
+                out.writeString(e.manufacturerName());
+                out.writeByte(e.prescriptionRequired() ? 1 : 0);
+            }
+            case DrugInteractionCheckedEvent e -> {
+                out.writeByte(INTERACTION_CHECKED);
+                out.writeByte(mask(e.medicationId(), e.riskLevel(), e.contraindications()));
+                if (e.medicationId() != null) {
+                    out.writeSignedVarLong(e.medicationId());
+                }
+                out.writeString(e.medicationName());
+                if (e.riskLevel() != null) {
+                    out.writeSignedVarLong(e.riskLevel());
+                }
+                out.writeString(e.severity());
+                if (e.contraindications() != null) {
+                    out.writeVarLong(e.contraindications().size());
+                    for (String contraindication : e.contraindications()) {
+                        out.writeString(contraindication);
+                    }
+                }
+                out.writeString(e.recommendation());
+            }
+            case UserRatedEvent e -> {
+                out.writeByte(USER_RATED);
+                out.writeByte(mask(e.userId(), e.rating()));
+                if (e.userId() != null) {
+                    out.writeSignedVarLong(e.userId());
+                }
+                if (e.rating() != null) {
+                    out.writeLong(Double.doubleToRawLongBits(e.rating()));
+                }
+                out.writeString(e.verdict());
+            }
+            case null, default -> throw new IllegalArgumentException(
+                    "Unsupported event type: " + (event == null ? null : event.getClass().getName()));
+        }
+        return out.toByteArray();
+    }
+
+    // Повреждённое или обрезанное сообщение — IllegalArgumentException
+    public static Object decode(byte[] bytes) {
+        try {
+            return read(new Reader(bytes), bytes.length);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Malformed event", e);
+        }
+    }
+
+    private static Object read(Reader in, int size) {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported event format version: " + version);
+        }
+        byte type = in.readByte();
+        int mask = in.readByte();
+        return switch (type) {
+            case MEDICATION_CREATED -> new MedicationCreatedEvent(
+                    has(mask, 0) ? in.readSignedVarLong() : null,
+                    in.readString(),
+                    in.readString(),
+                    in.readString(),
+                    in.readByte() != 0);
+            case INTERACTION_CHECKED -> {
+                Long medicationId = has(mask, 0) ? in.readSignedVarLong() : null;
+                String medicationName = in.readString();
+                Integer riskLevel = has(mask, 1) ? Math.toIntExact(in.readSignedVarLong()) : null;
+                String severity = in.readString();
+                List<String> contraindications = null;
+                if (has(mask, 2)) {
+                    int count = Math.toIntExact(in.readVarLong());
+                    contraindications = new ArrayList<>(Math.min(count, size));
+                    for (int i = 0; i < count; i++) {
+                        contraindications.add(in.readString());
+                    }
+                }
+                yield new DrugInteractionCheckedEvent(medicationId, medicationName, riskLevel, severity,
+                        contraindications, in.readString());
+            }
+            case USER_RATED -> new UserRatedEvent(
+                    has(mask, 0) ? in.readSignedVarLong() : null,
+                    has(mask, 1) ? Double.longBitsToDouble(in.readLong()) : null,
+                    in.readString());
+            default -> throw new IllegalArgumentException("Unknown event type: " + type);
+        };
+    }
+
+    private static int mask(Object... fields) {
+        int mask = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != null) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    private static boolean has(int mask, int field) {
+        return (mask & (1 << field)) != 0;
+    }
+
+    private static final class Writer {
+
+        private byte[] buffer = new byte[128];
+        private int position;
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensure(Long.BYTES);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length + 1L);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, buffer, position, utf8.length);
+            position += utf8.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensure(int bytes) {
+            if (position + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        byte readByte() {
+            require(1);
+            return buffer[position++];
+        }
+
+        long readLong() {
+            require(Long.BYTES);
+            long value = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        long readSignedVarLong() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() {
+            long length = readVarLong();
+            if (length == 0) {
+                return null;
+            }
+            int bytes = Math.toIntExact(length - 1);
+            require(bytes);
+            String value = new String(buffer, position, bytes, StandardCharsets.UTF_8);
+            position += bytes;
+            return value;
+        }
+
+        private void require(int bytes) {
+            if (bytes < 0 || bytes > buffer.length - position) {
+                throw new IllegalArgumentException("Truncated event");
+            }
+        }
+    }
+}
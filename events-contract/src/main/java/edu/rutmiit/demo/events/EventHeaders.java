@@ -0,0 +1,12 @@
+package edu.rutmiit.demo.events;
+
+// Заголовки AMQP-сообщений с событиями
+public final class EventHeaders {
+
+    // Уникальный идентификатор события. При повторной отправке и повторной доставке не меняется,
+    // по нему получатели отбрасывают дубликаты
+    public static final String EVENT_ID = "event-id";
+
+    private EventHeaders() {
+    }
+}
@@ -0,0 +1,11 @@
+package edu.rutmiit.demo.events;
+
+import java.io.Serializable;
+
+// analytics-service загрузил другой набор данных о взаимодействиях: ранее полученные
+// результаты проверок могли устареть. datasetVersion — CRC32 содержимого файла
+public record InteractionDatasetChangedEvent(
+        String datasetVersion,
+        int drugs,
+        int pairs
+) implements Serializable {}
\ No newline at end of file
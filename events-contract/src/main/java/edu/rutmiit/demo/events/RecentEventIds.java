@@ -0,0 +1,229 @@
+package edu.rutmiit.demo.events;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Идентификаторы недавно обработанных событий для отбрасывания повторных доставок.
+// Хранятся два поколения: текущее и предыдущее. Поколение сменяется, когда текущее прожило
+// половину окна или заполнилось, поэтому идентификатор помнится от window/2 до window,
+// а под нагрузкой выше maxEntries за половину окна — меньше, но память не растёт.
+// Поколение — открытая адресация по 64-битному хешу идентификатора в AtomicLongArray:
+// проверка и добавление без блокировок за O(1), не более 16 байт на идентификатор.
+// Захват addIfAbsent атомарен: он выполняется под монитором, общим со сменой поколения,
+// поэтому из конкурентных захватов одного идентификатора успешен ровно один
+public final class RecentEventIds {
+
+    private static final long EMPTY = 0;
+    // Освобождённая ячейка: поиск идёт дальше по цепочке, новые идентификаторы её не занимают
+    private static final long REMOVED = 1;
+
+    private final long halfWindowNanos;
+    private final int generationEntries;
+    private final LongSupplier nanoClock;
+
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+
+    public RecentEventIds(Duration window, int maxEntries) {
+        this(window, maxEntries, System::nanoTime);
+    }
+
+    public RecentEventIds(Duration window, int maxEntries, LongSupplier nanoClock) {
+        if (maxEntries < 2) {
+            throw new IllegalArgumentException("maxEntries must be at least 2");
+        }
+        this.halfWindowNanos = window.toNanos() / 2;
+        this.generationEntries = maxEntries / 2;
+        this.nanoClock = nanoClock;
+        long now = nanoClock.getAsLong();
+        this.previous = new Generation(generationEntries, now);
+        this.current = new Generation(generationEntries, now);
+    }
+
+    // true, если событие с таким идентификатором уже обработано. Учитывается в статистике
+    public boolean contains(String eventId) {
+        lookups.increment();
+        long hash = hash(eventId);
+        Generation generation = current;
+        if (generation.contains(hash) || previous.contains(hash)) {
+            duplicates.increment();
+            return true;
+        }
+        return false;
+    }
+
+    // Запоминает обработанное событие. Вызывается после успешной обработки,
+    // чтобы повторная доставка после сбоя обработки не была отброшена
+    public void add(String eventId) {
+        long hash = hash(eventId);
+        Generation generation = rotateIfNeeded();
+        if (!generation.add(hash)) {
+            // Поколение заполнено параллельными вставками: сменяем его и повторяем один раз
+            rotate(generation);
+            current.add(hash);
+        }
+    }
+
+    // Атомарно захватывает идентификатор перед обработкой. false — событие уже обработано
+    // или обрабатывается другим потоком. Учитывается в статистике, как contains
+    public synchronized boolean addIfAbsent(String eventId) {
+        lookups.increment();
+        long hash = hash(eventId);
+        Generation generation = rotateIfNeeded();
+        if (generation.contains(hash) || previous.contains(hash)) {
+            duplicates.increment();
+            return false;
+        }
+        if (!generation.add(hash)) {
+            rotate(generation);
+            current.add(hash);
+        }
+        return true;
+    }
+
+    // Освобождает идентификатор, захваченный addIfAbsent, если обработка не удалась:
+    // повторная доставка события будет обработана
+    public synchronized void remove(String eventId) {
+        long hash = hash(eventId);
+        current.remove(hash);
+        previous.remove(hash);
+    }
+
+    // Выполняет action, если событие ещё не обработано; при исключении идентификатор освобождается.
+    // false — повтор пропущен. События без идентификатора (от старых отправителей) обрабатываются всегда
+    public boolean processOnce(String eventId, Runnable action) {
+        if (eventId == null) {
+            action.run();
+            return true;
+        }
+        if (!addIfAbsent(eventId)) {
+            return false;
+        }
+        try {
+            action.run();
+        } catch (RuntimeException | Error e) {
+            remove(eventId);
+            throw e;
+        }
+        return true;
+    }
+
+    public long lookups() {
+        return lookups.sum();
+    }
+
+    public long duplicates() {
+        return duplicates.sum();
+    }
+
+    public int size() {
+        return current.size() + previous.size();
+    }
+
+    private Generation rotateIfNeeded() {
+        Generation generation = current;
+        if (generation.size() >= generationEntries
+                || nanoClock.getAsLong() - generation.createdNanos >= halfWindowNanos) {
+            rotate(generation);
+            return current;
+        }
+        return generation;
+    }
+
+    private synchronized void rotate(Generation expected) {
+        if (current != expected) {
+            return;
+        }
+        previous = expected;
+        current = new Generation(generationEntries, nanoClock.getAsLong());
+    }
+
+    // FNV-1a по байтам UTF-8 с перемешиванием из MurmurHash3; 0 и 1 зарезервированы под служебные ячейки
+    static long hash(String eventId) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : eventId.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY || hash == REMOVED ? 2 : hash;
+    }
+
+    private static final class Generation {
+
+        private final AtomicLongArray slots;
+        private final int mask;
+        private final AtomicInteger size = new AtomicInteger();
+        private final long createdNanos;
+
+        // Таблица заполняется не больше чем наполовину, поэтому цепочки проб короткие
+        Generation(int entries, long createdNanos) {
+            int capacity = Integer.highestOneBit(Math.max(entries, 1) * 2 - 1) << 1;
+            this.slots = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+            this.createdNanos = createdNanos;
+        }
+
+        boolean contains(long hash) {
+            for (int i = 0, index = (int) hash & mask; i <= mask; i++, index = (index + 1) & mask) {
+                long slot = slots.get(index);
+                if (slot == hash) {
+                    return true;
+                }
+                if (slot == EMPTY) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        // false, если свободной ячейки не нашлось
+        boolean add(long hash) {
+            for (int i = 0, index = (int) hash & mask; i <= mask; i++, index = (index + 1) & mask) {
+                long slot = slots.get(index);
+                if (slot == hash) {
+                    return true;
+                }
+                if (slot == EMPTY) {
+                    if (slots.compareAndSet(index, EMPTY, hash)) {
+                        size.incrementAndGet();
+                        return true;
+                    }
+                    if (slots.get(index) == hash) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        // Освобождённые ячейки остаются занятыми до смены поколения
+        void remove(long hash) {
+            for (int i = 0, index = (int) hash & mask; i <= mask; i++, index = (index + 1) & mask) {
+                long slot = slots.get(index);
+                if (slot == hash) {
+                    slots.compareAndSet(index, hash, REMOVED);
+                    return;
+                }
+                if (slot == EMPTY) {
+                    return;
+                }
+            }
+        }
+
+        int size() {
+            return size.get();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package edu.rutmiit.demo.events;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryEventMessageConverterTests {
+
+    private final MessageConverter converter =
+            BinaryEventMessageConverter.byContentType(new Jackson2JsonMessageConverter(), "binary");
+
+    @Test
+    void sendsContractEventsInCompactForm() {
+        DrugInteractionCheckedEvent event = new DrugInteractionCheckedEvent(-7L, "Варфарин", 9, "HIGH",
+                List.of("Беременность", "Кровотечения"), "Контроль МНО");
+        Message json = new Jackson2JsonMessageConverter().toMessage(event, new MessageProperties());
+
+        Message message = converter.toMessage(event, new MessageProperties());
+
+        assertThat(message.getMessageProperties().getContentType()).isEqualTo(EventCodec.CONTENT_TYPE);
+        assertThat(converter.fromMessage(message)).isEqualTo(event);
+        assertThat(message.getBody().length).isLessThan(json.getBody().length / 2);
+    }
+
+    @Test
+    void sendsJsonUnlessBinaryIsChosen() {
+        MedicationCreatedEvent event = new MedicationCreatedEvent(1L, "Аспирин", "ASA", "Bayer", false);
+
+        for (String wireFormat : Arrays.asList("json", "", null)) {
+            MessageConverter json = BinaryEventMessageConverter.byContentType(
+                    new Jackson2JsonMessageConverter(), wireFormat);
+            assertThat(json.toMessage(event, new MessageProperties()).getMessageProperties().getContentType())
+                    .isEqualTo(MessageProperties.CONTENT_TYPE_JSON);
+        }
+    }
+
+    @Test
+    void readsJsonFromProducersNotYetSwitched() {
+        MedicationCreatedEvent event = new MedicationCreatedEvent(1L, "Аспирин", "ASA", "Bayer", false);
+        Message json = new Jackson2JsonMessageConverter().toMessage(event, new MessageProperties());
+
+        assertThat(converter.fromMessage(json)).isEqualTo(event);
+        // Объекты вне контракта уходят в JSON и в binary-режиме
+        assertThat(converter.toMessage(Map.of("k", "v"), new MessageProperties())
+                .getMessageProperties().getContentType()).isEqualTo(MessageProperties.CONTENT_TYPE_JSON);
+    }
+
+    @Test
+    void rejectsCorruptedBody() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(EventCodec.CONTENT_TYPE);
+        byte[] body = converter.toMessage(new UserRatedEvent(5L, 4.5, "ok"), new MessageProperties()).getBody();
+
+        assertThatThrownBy(() -> converter.fromMessage(new Message(Arrays.copyOf(body, body.length - 2), properties)))
+                .isInstanceOf(MessageConversionException.class);
+    }
+}
@@ -0,0 +1,86 @@
+package edu.rutmiit.demo.events;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventCodecTests {
+
+    @Test
+    void roundTripsEveryContractEvent() {
+        List<Object> events = List.of(
+                new MedicationCreatedEvent(42L, "Амоксициллин", "Amoxicillin", "Pfizer", true),
+                new MedicationCreatedEvent(null, null, "", null, false),
+                new MedicationCreatedEvent(Long.MIN_VALUE, "a", "b", "c", false),
+                new DrugInteractionCheckedEvent(-7L, "Варфарин", 9, "HIGH",
+                        List.of("Беременность", "Кровотечения"), "Контроль МНО"),
+                new DrugInteractionCheckedEvent(1L, "Аспирин", null, null, null, null),
+                new DrugInteractionCheckedEvent(2L, "Ибупрофен", Integer.MIN_VALUE, "LOW",
+                        Arrays.asList("Астма", null), "—"),
+                new DrugInteractionCheckedEvent(3L, "Метформин", 0, "NONE", List.of(), ""),
+                new UserRatedEvent(5L, 4.5, "ok"),
+                new UserRatedEvent(Long.MAX_VALUE, Double.NaN, "🙂"),
+                new UserRatedEvent(null, null, null));
+
+        for (Object event : events) {
+            assertThat(EventCodec.supports(event.getClass())).isTrue();
+            assertThat(EventCodec.decode(EventCodec.encode(event))).isEqualTo(event);
+        }
+    }
+
+    @Test
+    void rejectsObjectsOutsideContract() {
+        assertThat(EventCodec.supports(String.class)).isFalse();
+        assertThatThrownBy(() -> EventCodec.encode("event")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> EventCodec.encode(null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsEveryTruncationOfValidEvent() {
+        byte[] body = EventCodec.encode(new DrugInteractionCheckedEvent(-7L, "Варфарин", 9, "HIGH",
+                List.of("Беременность", "Кровотечения"), "Контроль МНО"));
+
+        for (int length = 0; length < body.length; length++) {
+            byte[] truncated = Arrays.copyOf(body, length);
+            assertThatThrownBy(() -> EventCodec.decode(truncated)).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void rejectsUnknownVersionAndType() {
+        byte[] body = EventCodec.encode(new UserRatedEvent(5L, 4.5, "ok"));
+
+        byte[] version = body.clone();
+        version[0] = 99;
+        assertThatThrownBy(() -> EventCodec.decode(version)).isInstanceOf(IllegalArgumentException.class);
+        byte[] type = body.clone();
+        type[1] = 99;
+        assertThatThrownBy(() -> EventCodec.decode(type)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsMalformedLengthsWithoutHugeAllocations() {
+        // Версия, тип INTERACTION_CHECKED, маска: задан только список
+        byte[] header = {1, 2, 4, 0};
+        // Длина строки больше int
+        byte[] hugeString = concat(header, new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F});
+        assertThatThrownBy(() -> EventCodec.decode(hugeString)).isInstanceOf(IllegalArgumentException.class);
+        // Список на миллиард элементов без самих элементов
+        byte[] hugeList = concat(header, new byte[]{0, (byte) 0x80, (byte) 0x94, (byte) 0xEB, (byte) 0xDC, 0x03});
+        assertThatThrownBy(() -> EventCodec.decode(hugeList)).isInstanceOf(IllegalArgumentException.class);
+        // varint длиннее 64 бит
+        byte[] endless = concat(new byte[]{1, 1, 1}, new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 1});
+        assertThatThrownBy(() -> EventCodec.decode(endless)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
@@ -0,0 +1,99 @@
+package edu.rutmiit.demo.events;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecentEventIdsTests {
+
+    @Test
+    void concurrentClaimsOfSameIdHaveExactlyOneWinner() throws Exception {
+        RecentEventIds ids = new RecentEventIds(Duration.ofMinutes(2), 100_000);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 200; round++) {
+                String eventId = "event-" + round;
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> claims = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    Callable<Boolean> claim = () -> {
+                        start.await();
+                        return ids.addIfAbsent(eventId);
+                    };
+                    claims.add(executor.submit(claim));
+                }
+                start.countDown();
+                int winners = 0;
+                for (Future<Boolean> claim : claims) {
+                    winners += claim.get() ? 1 : 0;
+                }
+                assertThat(winners).as(eventId).isEqualTo(1);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void removedIdCanBeClaimedAgainWithoutForgettingOthers() {
+        RecentEventIds ids = new RecentEventIds(Duration.ofMinutes(2), 1000);
+        for (int i = 0; i < 100; i++) {
+            assertThat(ids.addIfAbsent("event-" + i)).isTrue();
+        }
+
+        ids.remove("event-50");
+
+        assertThat(ids.contains("event-50")).isFalse();
+        // Освобождённая ячейка не обрывает цепочку проб для остальных идентификаторов
+        for (int i = 0; i < 100; i++) {
+            assertThat(ids.contains("event-" + i)).isEqualTo(i != 50);
+        }
+        assertThat(ids.addIfAbsent("event-50")).isTrue();
+        assertThat(ids.addIfAbsent("event-50")).isFalse();
+    }
+
+    @Test
+    void idIsRememberedForHalfWindowToWindow() {
+        AtomicLong clock = new AtomicLong();
+        RecentEventIds ids = new RecentEventIds(Duration.ofNanos(100), 1000, clock::get);
+        assertThat(ids.addIfAbsent("a")).isTrue();
+
+        clock.set(60);
+        assertThat(ids.addIfAbsent("b")).isTrue();
+        assertThat(ids.addIfAbsent("a")).isFalse();
+
+        clock.set(120);
+        assertThat(ids.addIfAbsent("c")).isTrue();
+        assertThat(ids.contains("a")).isFalse();
+        assertThat(ids.contains("b")).isTrue();
+    }
+
+    @Test
+    void processOnceReleasesIdWhenActionFails() {
+        RecentEventIds ids = new RecentEventIds(Duration.ofMinutes(2), 1000);
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThatThrownBy(() -> ids.processOnce("a", () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(ids.processOnce("a", runs::incrementAndGet)).isTrue();
+        assertThat(ids.processOnce("a", runs::incrementAndGet)).isFalse();
+
+        assertThat(runs).hasValue(2);
+        assertThat(ids.duplicates()).isEqualTo(1);
+    }
+}
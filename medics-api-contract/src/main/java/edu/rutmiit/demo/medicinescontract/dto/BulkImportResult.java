@@ -0,0 +1,19 @@
+package edu.rutmiit.demo.medicinescontract.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Результат импорта одной строки")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkImportResult(
+        @Schema(description = "Номер строки во входных данных (начиная с 1)") long row,
+        @Schema(description = "Итог обработки строки") Status status,
+        @Schema(description = "ID созданного или обновлённого лекарства") Long id,
+        @Schema(description = "Описание ошибки для строки со статусом FAILED") String error
+) {
+    public enum Status { CREATED, UPDATED, FAILED }
+
+    public static BulkImportResult failed(long row, String error) {
+        return new BulkImportResult(row, Status.FAILED, null, error);
+    }
+}
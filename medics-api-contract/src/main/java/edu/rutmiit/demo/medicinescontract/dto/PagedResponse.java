@@ -8,7 +8,8 @@ public record PagedResponse<T>(
         @Schema(description = "Содержимое страницы") List<T> content,
         @Schema(description = "Номер текущей страницы (начиная с 0)") int pageNumber,
         @Schema(description = "Размер страницы") int pageSize,
-        @Schema(description = "Общее количество элементов") long totalElements,
-        @Schema(description = "Общее количество страниц") int totalPages,
-        @Schema(description = "Является ли страница последней") boolean last
+        @Schema(description = "Общее количество элементов (-1 при курсорной пагинации)") long totalElements,
+        @Schema(description = "Общее количество страниц (-1 при курсорной пагинации)") int totalPages,
+        @Schema(description = "Является ли страница последней") boolean last,
+        @Schema(description = "Курсор для запроса следующей страницы, null для последней страницы") String nextCursor
 ) {}
\ No newline at end of file
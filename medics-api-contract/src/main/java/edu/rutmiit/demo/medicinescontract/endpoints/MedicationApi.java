@@ -10,9 +10,14 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.PagedModel;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
 
 @Tag(name = "medications", description = "API для работы с лекарственными препаратами")
 @RequestMapping("/api/medications")
@@ -25,17 +30,38 @@ public interface MedicationApi {
     @GetMapping("/{id}")
     EntityModel<MedicationResponse> getMedicationById(@PathVariable("id") Long id);
 
-    @Operation(summary = "Получить список всех лекарств с фильтрацией и пагинацией")
+    @Operation(summary = "Получить список всех лекарств с фильтрацией и пагинацией",
+            description = "Если передан курсор after, возвращается страница после него (курсорная пагинация), параметр page игнорируется")
     @ApiResponse(responseCode = "200", description = "Список лекарств")
+    @ApiResponse(responseCode = "400", description = "Некорректный курсор",
+            content = @Content(schema = @Schema(implementation = StatusResponse.class)))
     @GetMapping
     PagedModel<EntityModel<MedicationResponse>> getAllMedications(
             @Parameter(description = "Фильтр по ID производителя") @RequestParam(required = false) Long manufacturerId,
             @Parameter(description = "Фильтр по коду АТХ") @RequestParam(required = false) String atcCode,
             @Parameter(description = "Поиск по названию или МНН") @RequestParam(required = false) String search,
+            @Parameter(description = "Курсор из ссылки next-cursor предыдущей страницы") @RequestParam(required = false) String after,
             @Parameter(description = "Номер страницы (0..N)") @RequestParam(defaultValue = "0") int page,
             @Parameter(description = "Размер страницы") @RequestParam(defaultValue = "10") int size
     );
 
+    @Operation(summary = "Выгрузить каталог лекарств",
+            description = "Потоково отдаёт все подходящие лекарства в порядке ID в формате NDJSON или CSV. "
+                    + "При Accept-Encoding: gzip ответ сжимается")
+    @ApiResponse(responseCode = "200", description = "Выгрузка каталога", content = {
+            @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = MedicationResponse.class)),
+            @Content(mediaType = "text/csv")
+    })
+    @ApiResponse(responseCode = "400", description = "Неизвестный формат выгрузки",
+            content = @Content(schema = @Schema(implementation = StatusResponse.class)))
+    @GetMapping("/export")
+    ResponseEntity<StreamingResponseBody> exportMedications(
+            @Parameter(description = "Фильтр по ID производителя") @RequestParam(required = false) Long manufacturerId,
+            @Parameter(description = "Фильтр по коду АТХ") @RequestParam(required = false) String atcCode,
+            @Parameter(description = "Поиск по названию или МНН") @RequestParam(required = false) String search,
+            @Parameter(description = "Формат выгрузки: ndjson или csv") @RequestParam(defaultValue = "ndjson") String format,
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding);
+
     @Operation(summary = "Получить рецептурные лекарства")
     @ApiResponse(responseCode = "200", description = "Список рецептурных лекарств")
     @GetMapping("/prescription")
@@ -62,6 +88,24 @@ public interface MedicationApi {
     @ResponseStatus(HttpStatus.CREATED)
     ResponseEntity<EntityModel<MedicationResponse>> createMedication(@Valid @RequestBody MedicationRequest request);
 
+    @Operation(summary = "Массовый импорт лекарств",
+            description = "Принимает JSON-массив или NDJSON (по одному MedicationRequest на строку) и обрабатывает его потоково порциями. "
+                    + "В ответ по мере обработки отдаётся NDJSON с результатом для каждой строки. "
+                    + "При upsert=true лекарство с уже существующим МНН обновляется, иначе строка отклоняется",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(content = {
+                    @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @io.swagger.v3.oas.annotations.media.ArraySchema(schema = @Schema(implementation = MedicationRequest.class))),
+                    @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = MedicationRequest.class))
+            }))
+    @ApiResponse(responseCode = "200", description = "Построчные результаты импорта",
+            content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = BulkImportResult.class)))
+    @PostMapping(value = "/bulk",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<StreamingResponseBody> importMedications(
+            @Parameter(description = "Обновлять лекарства с совпадающим МНН вместо отклонения строки") @RequestParam(defaultValue = "false") boolean upsert,
+            @Parameter(hidden = true) InputStream body);
+
     @Operation(summary = "Обновить лекарство по ID")
     @ApiResponse(responseCode = "200", description = "Лекарство успешно обновлено")
     @ApiResponse(responseCode = "404", description = "Лекарство не найдено",
@@ -0,0 +1,270 @@
+package com.pharmacy.notification.broadcast;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Рассылка сообщений клиентам WebSocket.
+// Сообщение сериализуется один раз вызывающим; дальше broadcast только ставит его в очередь шардов
+// и сразу возвращается. Сессии разбиты на шарды по id; поток шарда раскладывает сообщение
+// по очередям своих сессий — это неблокирующие операции. Отправляет каждую очередь отдельный
+// виртуальный поток, поэтому медленный клиент задерживает только себя.
+// Очередь сессии ограничена числом сообщений и байтами; переполнение решает OverflowPolicy.
+// Отправка, идущая дольше send-time-limit, считается зависшей: сессия закрывается,
+// как в ConcurrentWebSocketSessionDecorator.
+// publish рассылает только подписчикам тем сообщения (см. SubscriptionIndex) и сессиям без подписок
+@Component
+public class BroadcastEngine implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(BroadcastEngine.class);
+
+    private final Map<String, SessionOutbox>[] shards;
+    private final ExecutorService[] fanOut;
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final SubscriptionIndex subscriptions = new SubscriptionIndex();
+
+    private final int queueCapacity;
+    private final int bufferSizeLimit;
+    private final long sendTimeLimitNanos;
+    private final OverflowPolicy overflowPolicy;
+
+    private final Counter dropped;
+    private final Counter disconnected;
+
+    @SuppressWarnings("unchecked")
+    public BroadcastEngine(MeterRegistry meterRegistry,
+                           @Value("${notifications.broadcast.shards:0}") int shards,
+                           @Value("${notifications.broadcast.queue-capacity:256}") int queueCapacity,
+                           @Value("${notifications.broadcast.overflow-policy:COALESCE}") OverflowPolicy overflowPolicy,
+                           @Value("${spring.websocket.send-buffer-size-limit:512000}") int bufferSizeLimit,
+                           @Value("${spring.websocket.send-time-limit:10000}") long sendTimeLimitMillis) {
+        int count = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        this.shards = new Map[count];
+        this.fanOut = new ExecutorService[count];
+        for (int i = 0; i < count; i++) {
+            this.shards[i] = new ConcurrentHashMap<>();
+            this.fanOut[i] = Executors.newSingleThreadExecutor(
+                    Thread.ofPlatform().name("ws-broadcast-" + i).daemon().factory());
+        }
+        this.queueCapacity = queueCapacity;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMillis);
+        this.overflowPolicy = overflowPolicy;
+
+        Gauge.builder("ws.sessions", this, BroadcastEngine::sessionCount)
+                .description("Open WebSocket sessions")
+                .register(meterRegistry);
+        Gauge.builder("ws.subscriptions.topics", subscriptions, SubscriptionIndex::topicCount)
+                .description("Topics with at least one subscribed session")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("ws.broadcast.dropped")
+                .description("Messages dropped or coalesced because a client could not keep up")
+                .tag("policy", overflowPolicy.name())
+                .register(meterRegistry);
+        this.disconnected = Counter.builder("ws.broadcast.disconnected")
+                .description("Sessions closed because their outbound queue overflowed or a send stalled")
+                .register(meterRegistry);
+    }
+
+    public void register(WebSocketSession session) {
+        subscriptions.register(session.getId());
+        shard(session).put(session.getId(), new SessionOutbox(session));
+    }
+
+    public void unregister(WebSocketSession session) {
+        SessionOutbox outbox = shard(session).remove(session.getId());
+        if (outbox != null) {
+            outbox.close();
+            subscriptions.unregister(session.getId());
+        }
+    }
+
+    public Set<String> subscribe(WebSocketSession session, Collection<String> topics) {
+        return subscriptions.subscribe(session.getId(), topics);
+    }
+
+    public Set<String> unsubscribe(WebSocketSession session, Collection<String> topics) {
+        return subscriptions.unsubscribe(session.getId(), topics);
+    }
+
+    // Отправка одной сессии через её очередь, чтобы не пересекаться с рассылкой
+    public void send(WebSocketSession session, String json) {
+        SessionOutbox outbox = shard(session).get(session.getId());
+        if (outbox != null) {
+            offer(outbox, new SessionOutbox.Outbound(new TextMessage(json), null));
+        }
+    }
+
+    // key — сообщения с одинаковым ключом при COALESCE заменяют друг друга; null — не заменяются
+    public void broadcast(String json, String key) {
+        SessionOutbox.Outbound outbound = new SessionOutbox.Outbound(new TextMessage(json), key);
+        for (int i = 0; i < shards.length; i++) {
+            Map<String, SessionOutbox> shard = shards[i];
+            fanOut[i].execute(() -> {
+                for (SessionOutbox outbox : shard.values()) {
+                    offer(outbox, outbound);
+                }
+            });
+        }
+    }
+
+    // Сообщение для publish: json, ключ замены (см. broadcast) и темы для выбора получателей
+    public record Publication(String json, String key, Collection<String> topics) {}
+
+    private record Delivery(SessionOutbox.Outbound outbound, List<String> sessionIds) {}
+
+    // Рассылка сессиям, подписанным на одну из topics, и сессиям без подписок
+    public void publish(String json, String key, Collection<String> topics) {
+        publish(List.of(new Publication(json, key, topics)));
+    }
+
+    // Получатели раскладываются по шардам заранее: поток шарда обходит только их.
+    // Партия уходит одной задачей на шард, и каждая сессия получает сообщения партии по порядку
+    public void publish(List<Publication> publications) {
+        List<List<Delivery>> deliveriesByShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            deliveriesByShard.add(new ArrayList<>());
+        }
+        for (Publication publication : publications) {
+            SessionOutbox.Outbound outbound =
+                    new SessionOutbox.Outbound(new TextMessage(publication.json()), publication.key());
+            List<List<String>> recipientsByShard = new ArrayList<>(shards.length);
+            for (int i = 0; i < shards.length; i++) {
+                recipientsByShard.add(new ArrayList<>());
+            }
+            for (String sessionId : subscriptions.recipients(publication.topics())) {
+                recipientsByShard.get(shardIndex(sessionId)).add(sessionId);
+            }
+            for (int i = 0; i < shards.length; i++) {
+                if (!recipientsByShard.get(i).isEmpty()) {
+                    deliveriesByShard.get(i).add(new Delivery(outbound, recipientsByShard.get(i)));
+                }
+            }
+        }
+        for (int i = 0; i < shards.length; i++) {
+            List<Delivery> deliveries = deliveriesByShard.get(i);
+            if (deliveries.isEmpty()) {
+                continue;
+            }
+            Map<String, SessionOutbox> shard = shards[i];
+            fanOut[i].execute(() -> {
+                for (Delivery delivery : deliveries) {
+                    for (String sessionId : delivery.sessionIds()) {
+                        SessionOutbox outbox = shard.get(sessionId);
+                        if (outbox != null) {
+                            offer(outbox, delivery.outbound());
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    public int sessionCount() {
+        int count = 0;
+        for (Map<String, SessionOutbox> shard : shards) {
+            count += shard.size();
+        }
+        return count;
+    }
+
+    public long openSessionCount() {
+        long count = 0;
+        for (Map<String, SessionOutbox> shard : shards) {
+            count += shard.values().stream().filter(outbox -> outbox.session.isOpen()).count();
+        }
+        return count;
+    }
+
+    @Override
+    public void destroy() {
+        for (ExecutorService executor : fanOut) {
+            executor.shutdownNow();
+        }
+        senders.shutdownNow();
+    }
+
+    private void offer(SessionOutbox outbox, SessionOutbox.Outbound outbound) {
+        if (!outbox.session.isOpen()) {
+            unregister(outbox.session);
+            return;
+        }
+        if (outbox.sendingForNanos(System.nanoTime()) > sendTimeLimitNanos) {
+            disconnect(outbox, "send time limit exceeded");
+            return;
+        }
+        int result = outbox.enqueue(outbound, queueCapacity, bufferSizeLimit, overflowPolicy);
+        if (result == SessionOutbox.OVERFLOW_DISCONNECT) {
+            disconnect(outbox, "outbound queue overflow");
+            return;
+        }
+        if (result > 0) {
+            dropped.increment(result);
+        }
+        if (outbox.claimDrain()) {
+            senders.execute(() -> drain(outbox));
+        }
+    }
+
+    private void drain(SessionOutbox outbox) {
+        SessionOutbox.Outbound next;
+        while ((next = outbox.next()) != null) {
+            outbox.sendStarted();
+            try {
+                outbox.session.sendMessage(next.message());
+            } catch (IOException | IllegalStateException e) {
+                log.warn("Ошибка отправки в сессию {}: {}", outbox.session.getId(), e.getMessage());
+                unregister(outbox.session);
+                return;
+            } catch (RuntimeException e) {
+                // Право отправки принадлежит этому потоку: без отключения сессия больше ничего не получит
+                log.error("Неожиданная ошибка отправки в сессию {}", outbox.session.getId(), e);
+                disconnect(outbox, "send failed");
+                return;
+            } finally {
+                outbox.sendFinished();
+            }
+        }
+    }
+
+    private void disconnect(SessionOutbox outbox, String reason) {
+        unregister(outbox.session);
+        disconnected.increment();
+        log.warn("Сессия {} отключена: {}", outbox.session.getId(), reason);
+        // Закрытие может ждать зависшую отправку, поэтому не в потоке шарда
+        senders.execute(() -> {
+            try {
+                outbox.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                log.debug("Ошибка закрытия сессии {}: {}", outbox.session.getId(), e.getMessage());
+            }
+        });
+    }
+
+    private Map<String, SessionOutbox> shard(WebSocketSession session) {
+        return shards[shardIndex(session.getId())];
+    }
+
+    private int shardIndex(String sessionId) {
+        return Math.floorMod(sessionId.hashCode(), shards.length);
+    }
+}
@@ -0,0 +1,12 @@
+package com.pharmacy.notification.broadcast;
+
+// Что делать, когда очередь исходящих сообщений клиента заполнена
+public enum OverflowPolicy {
+    // Отбросить самые старые сообщения
+    DROP_OLDEST,
+    // Новое сообщение всегда заменяет ещё не отправленное с тем же ключом: новое состояние
+    // того же препарата или склада делает старое бесполезным. При переполнении — как DROP_OLDEST
+    COALESCE,
+    // Закрыть соединение: клиент переподключится и получит актуальное состояние
+    DISCONNECT
+}
@@ -0,0 +1,122 @@
+package com.pharmacy.notification.broadcast;
+
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+
+// Очередь исходящих сообщений одной сессии. В сессию пишет не больше одного потока за раз,
+// поэтому sendMessage не требует внешней синхронизации, а порядок сообщений сохраняется
+final class SessionOutbox {
+
+    static final int OVERFLOW_DISCONNECT = -1;
+
+    record Outbound(TextMessage message, String key) {
+
+        int bytes() {
+            return message.getPayloadLength();
+        }
+    }
+
+    final WebSocketSession session;
+
+    private final ArrayDeque<Outbound> queue = new ArrayDeque<>();
+    private int bufferedBytes;
+    private boolean draining;
+    private boolean closed;
+    // Начало текущей отправки, 0 — отправки нет
+    private volatile long sendStartedNanos;
+
+    SessionOutbox(WebSocketSession session) {
+        this.session = session;
+    }
+
+    // Число вытесненных сообщений или OVERFLOW_DISCONNECT, если по политике сессию надо закрыть.
+    // Последнее сообщение принимается всегда, даже если оно одно больше лимита буфера
+    synchronized int enqueue(Outbound outbound, int capacity, int bufferSizeLimit, OverflowPolicy policy) {
+        if (closed) {
+            return 0;
+        }
+        int dropped = 0;
+        if (policy == OverflowPolicy.COALESCE && removeSameKey(outbound.key())) {
+            dropped++;
+        }
+        while (!queue.isEmpty()
+                && (queue.size() >= capacity || bufferedBytes + outbound.bytes() > bufferSizeLimit)) {
+            if (policy == OverflowPolicy.DISCONNECT) {
+                close();
+                return OVERFLOW_DISCONNECT;
+            }
+            bufferedBytes -= queue.removeFirst().bytes();
+            dropped++;
+        }
+        queue.addLast(outbound);
+        bufferedBytes += outbound.bytes();
+        return dropped;
+    }
+
+    // true — вызывающий становится единственным отправителем и обязан вызвать drain
+    synchronized boolean claimDrain() {
+        if (draining || closed || queue.isEmpty()) {
+            return false;
+        }
+        draining = true;
+        return true;
+    }
+
+    // Следующее сообщение или null, если очередь пуста: тогда право отправки снимается
+    synchronized Outbound next() {
+        Outbound next = closed ? null : queue.pollFirst();
+        if (next == null) {
+            draining = false;
+            return null;
+        }
+        bufferedBytes -= next.bytes();
+        return next;
+    }
+
+    synchronized void close() {
+        closed = true;
+        queue.clear();
+        bufferedBytes = 0;
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    synchronized int size() {
+        return queue.size();
+    }
+
+    void sendStarted() {
+        sendStartedNanos = System.nanoTime();
+    }
+
+    void sendFinished() {
+        sendStartedNanos = 0;
+    }
+
+    // Сколько длится текущая отправка, 0 — сейчас не отправляется ничего
+    long sendingForNanos(long now) {
+        long started = sendStartedNanos;
+        return started == 0 ? 0 : now - started;
+    }
+
+    private boolean removeSameKey(String key) {
+        if (key == null) {
+            return false;
+        }
+        for (Iterator<Outbound> it = queue.iterator(); it.hasNext(); ) {
+            Outbound queued = it.next();
+            if (Objects.equals(queued.key(), key)) {
+                it.remove();
+                bufferedBytes -= queued.bytes();
+                return true;
+            }
+        }
+        return false;
+    }
+}
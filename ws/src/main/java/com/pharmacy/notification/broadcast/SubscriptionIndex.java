@@ -0,0 +1,129 @@
+package com.pharmacy.notification.broadcast;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Обратный индекс подписок: тема → id сессий.
+// Темы — препарат (medication:<название>), префикс кода АТХ (atc:<префикс>) и тип события (type:<тип>).
+// Получатели сообщения собираются из множеств его тем, поэтому стоимость рассылки зависит
+// от числа заинтересованных сессий, а не от числа подключённых.
+// Сессия без подписок получает всё, как до появления подписок
+public final class SubscriptionIndex {
+
+    public static final int MAX_TOPICS_PER_SESSION = 256;
+
+    private final Map<String, Set<String>> sessionsByTopic = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> topicsBySession = new ConcurrentHashMap<>();
+    private final Set<String> unfiltered = ConcurrentHashMap.newKeySet();
+
+    public static String medication(String name) {
+        return "medication:" + name.strip().toLowerCase(Locale.ROOT);
+    }
+
+    public static String atc(String prefix) {
+        return "atc:" + prefix.strip().toUpperCase(Locale.ROOT);
+    }
+
+    public static String eventType(String type) {
+        return "type:" + type.strip().toUpperCase(Locale.ROOT);
+    }
+
+    // Темы сообщения о препарате с кодом АТХ: подписка на любой префикс кода совпадает
+    // с одной из них. Коды не длиннее 7 символов, поэтому тем не больше 7
+    public static List<String> atcPrefixes(String code) {
+        String normalized = code.strip().toUpperCase(Locale.ROOT);
+        List<String> topics = new ArrayList<>(normalized.length());
+        for (int length = 1; length <= normalized.length(); length++) {
+            topics.add("atc:" + normalized.substring(0, length));
+        }
+        return topics;
+    }
+
+    public void register(String sessionId) {
+        topicsBySession.put(sessionId, ConcurrentHashMap.newKeySet());
+        unfiltered.add(sessionId);
+    }
+
+    public void unregister(String sessionId) {
+        unfiltered.remove(sessionId);
+        Set<String> topics = topicsBySession.remove(sessionId);
+        if (topics != null) {
+            for (String topic : topics) {
+                removeFromTopic(topic, sessionId);
+            }
+        }
+    }
+
+    // Темы сессии после подписки. Сверх MAX_TOPICS_PER_SESSION темы не добавляются.
+    // Подписки одной сессии меняет только её поток обработки сообщений, поэтому без блокировок
+    public Set<String> subscribe(String sessionId, Collection<String> topics) {
+        Set<String> current = topicsBySession.get(sessionId);
+        if (current == null) {
+            return Set.of();
+        }
+        for (String topic : topics) {
+            if (current.size() >= MAX_TOPICS_PER_SESSION) {
+                break;
+            }
+            if (current.add(topic)) {
+                // compute, а не computeIfAbsent: иначе множество могли бы удалить как пустое до добавления
+                sessionsByTopic.compute(topic, (key, sessions) -> {
+                    Set<String> result = sessions == null ? ConcurrentHashMap.newKeySet() : sessions;
+                    result.add(sessionId);
+                    return result;
+                });
+            }
+        }
+        if (!current.isEmpty()) {
+            unfiltered.remove(sessionId);
+        }
+        return Set.copyOf(current);
+    }
+
+    // Пустой список — отписка от всего: сессия снова получает все сообщения
+    public Set<String> unsubscribe(String sessionId, Collection<String> topics) {
+        Set<String> current = topicsBySession.get(sessionId);
+        if (current == null) {
+            return Set.of();
+        }
+        for (String topic : topics.isEmpty() ? List.copyOf(current) : topics) {
+            if (current.remove(topic)) {
+                removeFromTopic(topic, sessionId);
+            }
+        }
+        if (current.isEmpty()) {
+            unfiltered.add(sessionId);
+        }
+        return Set.copyOf(current);
+    }
+
+    // Сессии, подписанные хотя бы на одну из тем, и сессии без подписок
+    public Set<String> recipients(Collection<String> topics) {
+        Set<String> recipients = new HashSet<>(unfiltered);
+        for (String topic : topics) {
+            Set<String> sessions = sessionsByTopic.get(topic);
+            if (sessions != null) {
+                recipients.addAll(sessions);
+            }
+        }
+        return recipients;
+    }
+
+    public int topicCount() {
+        return sessionsByTopic.size();
+    }
+
+    // Пустое множество удаляется атомарно с последней отпиской, чтобы индекс не рос
+    private void removeFromTopic(String topic, String sessionId) {
+        sessionsByTopic.computeIfPresent(topic, (key, sessions) -> {
+            sessions.remove(sessionId);
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+}
@@ -0,0 +1,34 @@
+package com.pharmacy.notification.cluster;
+
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Режим кластера: узлы обмениваются изменениями склада через fanout-exchange.
+// У каждого узла своя временная очередь; её имя узел передаёт в запросе снимка как адрес ответа
+@Configuration
+@ConditionalOnProperty(name = "notifications.cluster.enabled", havingValue = "true")
+public class ClusterConfig {
+
+    public static final String CLUSTER_EXCHANGE = "notifications-cluster";
+
+    @Bean
+    public FanoutExchange clusterExchange() {
+        return new FanoutExchange(CLUSTER_EXCHANGE, true, false);
+    }
+
+    @Bean
+    public Queue clusterQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding clusterBinding(FanoutExchange clusterExchange, Queue clusterQueue) {
+        return BindingBuilder.bind(clusterQueue).to(clusterExchange);
+    }
+}
@@ -0,0 +1,27 @@
+package com.pharmacy.notification.cluster;
+
+import java.util.Map;
+
+// Сообщения между узлами сервиса уведомлений (JSON, тип — в заголовке TYPE_HEADER)
+final class ClusterMessages {
+
+    static final String TYPE_HEADER = "cluster-message-type";
+
+    static final String STOCK_CHANGE = "STOCK_CHANGE";
+    static final String SYNC_REQUEST = "SYNC_REQUEST";
+    static final String SNAPSHOT = "SNAPSHOT";
+
+    private ClusterMessages() {
+    }
+
+    // Изменение склада на узле nodeId с номером sequence; notification — уведомление для клиентов
+    record StockChange(String nodeId, long sequence, String medicationName, int delta,
+                       Map<String, Object> notification) {}
+
+    // Запрос снимка склада; ответ уходит в очередь replyTo
+    record SyncRequest(String nodeId, String requestId, String replyTo) {}
+
+    // Склад узла и номера изменений, которые в нём учтены (включая собственные изменения узла)
+    record StockSnapshot(String nodeId, String requestId, Map<String, Integer> stock,
+                         Map<String, String> atcCodes, Map<String, Long> applied) {}
+}
@@ -0,0 +1,267 @@
+package com.pharmacy.notification.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pharmacy.notification.handler.MedicationWebSocketHandler;
+import com.pharmacy.notification.handler.StockReplication;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Узел кластера сервиса уведомлений. Каждый узел держит свой склад и свои сессии; локальные
+// изменения склада с номером узла (1, 2, 3...) уходят в fanout-exchange, остальные узлы
+// применяют их к своему складу и рассылают уведомление своим клиентам. Так число подключений
+// растёт с числом узлов, а склад на всех узлах сходится.
+// Повторы отбрасываются по номеру. Пропуск номера (потерянные при обрыве связи с брокером
+// сообщения) и запуск узла заканчиваются синхронизацией: узел запрашивает снимок склада
+// у остальных, заменяет им свой склад и заново применяет свои изменения, которых в снимке нет.
+// Изменения других узлов на время синхронизации откладываются.
+// Всё состояние узла меняется под блокировкой склада обработчика (withStockLock)
+@Component
+@ConditionalOnProperty(name = "notifications.cluster.enabled", havingValue = "true")
+public class ClusterNode implements StockReplication, SmartInitializingSingleton, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterNode.class);
+
+    // Свои изменения для повторного применения после снимка
+    static final int REPLAY_LOG_SIZE = 10_000;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final MedicationWebSocketHandler handler;
+    private final AmqpTemplate amqpTemplate;
+    private final String replyTo;
+    private final Duration syncTimeout;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Отправка в брокер идёт в своём потоке по порядку номеров и не держит блокировку склада
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("ws-cluster").daemon().factory());
+
+    // Под блокировкой склада
+    private final PeerSequences peers = new PeerSequences();
+    private final ArrayDeque<ClusterMessages.StockChange> replayLog = new ArrayDeque<>();
+    private final List<ClusterMessages.StockChange> deferred = new ArrayList<>();
+    private long sequence;
+    private String pendingSync;
+
+    private final Counter gaps;
+    private final Counter duplicates;
+    private final Counter syncs;
+
+    public ClusterNode(MedicationWebSocketHandler handler,
+                       AmqpTemplate amqpTemplate,
+                       Queue clusterQueue,
+                       MeterRegistry meterRegistry,
+                       @Value("${notifications.cluster.sync-timeout:2s}") Duration syncTimeout) {
+        this.handler = handler;
+        this.amqpTemplate = amqpTemplate;
+        this.replyTo = clusterQueue.getName();
+        this.syncTimeout = syncTimeout;
+        this.gaps = Counter.builder("ws.cluster.gaps").register(meterRegistry);
+        this.duplicates = Counter.builder("ws.cluster.duplicates").register(meterRegistry);
+        this.syncs = Counter.builder("ws.cluster.syncs").register(meterRegistry);
+        Gauge.builder("ws.cluster.peers", peers, PeerSequences::size).register(meterRegistry);
+    }
+
+    // До старта слушателей: изменения других узлов, пришедшие раньше снимка, будут отложены
+    @Override
+    public void afterSingletonsInstantiated() {
+        handler.withStockLock(() -> {
+            handler.setReplication(this);
+            requestSync();
+        });
+        log.info("Узел кластера {} запущен, очередь {}", nodeId, replyTo);
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    // Узел ждёт снимка склада
+    boolean synchronizing() {
+        boolean[] result = new boolean[1];
+        handler.withStockLock(() -> result[0] = pendingSync != null);
+        return result[0];
+    }
+
+    @Override
+    public void changed(String medicationName, int delta, Map<String, Object> notification) {
+        ClusterMessages.StockChange change =
+                new ClusterMessages.StockChange(nodeId, ++sequence, medicationName, delta, notification);
+        replayLog.addLast(change);
+        if (replayLog.size() > REPLAY_LOG_SIZE) {
+            replayLog.removeFirst();
+        }
+        send(ClusterConfig.CLUSTER_EXCHANGE, "", ClusterMessages.STOCK_CHANGE, change);
+    }
+
+    @RabbitListener(queues = "#{clusterQueue.name}")
+    public void onMessage(Message message) {
+        String type = message.getMessageProperties().getHeader(ClusterMessages.TYPE_HEADER);
+        try {
+            switch (type) {
+                case ClusterMessages.STOCK_CHANGE -> {
+                    ClusterMessages.StockChange change =
+                            objectMapper.readValue(message.getBody(), ClusterMessages.StockChange.class);
+                    if (!nodeId.equals(change.nodeId())) {
+                        handler.withStockLock(() -> receive(change));
+                    }
+                }
+                case ClusterMessages.SYNC_REQUEST -> {
+                    ClusterMessages.SyncRequest request =
+                            objectMapper.readValue(message.getBody(), ClusterMessages.SyncRequest.class);
+                    if (!nodeId.equals(request.nodeId())) {
+                        handler.withStockLock(() -> answer(request));
+                    }
+                }
+                case ClusterMessages.SNAPSHOT -> {
+                    ClusterMessages.StockSnapshot snapshot =
+                            objectMapper.readValue(message.getBody(), ClusterMessages.StockSnapshot.class);
+                    handler.withStockLock(() -> adopt(snapshot));
+                }
+                case null, default -> log.warn("Неизвестное сообщение кластера: {}", type);
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось разобрать сообщение кластера {}: {}", type, e.getMessage());
+        }
+    }
+
+    private void receive(ClusterMessages.StockChange change) {
+        if (pendingSync != null) {
+            deferred.add(change);
+            return;
+        }
+        switch (peers.accept(change.nodeId(), change.sequence())) {
+            case NEXT -> handler.applyReplicatedChange(
+                    change.medicationName(), change.delta(), change.notification(), true);
+            case DUPLICATE -> duplicates.increment();
+            case GAP -> {
+                gaps.increment();
+                log.warn("Пропущены изменения узла {} до номера {}, синхронизация склада",
+                        change.nodeId(), change.sequence());
+                deferred.add(change);
+                requestSync();
+            }
+        }
+    }
+
+    // Узел, который сам ждёт снимка, не отвечает: его склад может быть неполным
+    private void answer(ClusterMessages.SyncRequest request) {
+        if (pendingSync != null) {
+            return;
+        }
+        Map<String, Long> applied = peers.snapshot();
+        applied.put(nodeId, sequence);
+        ClusterMessages.StockSnapshot snapshot = new ClusterMessages.StockSnapshot(nodeId, request.requestId(),
+                handler.stockQuantities(), handler.stockAtcCodes(), applied);
+        send("", request.replyTo(), ClusterMessages.SNAPSHOT, snapshot);
+    }
+
+    // Принимается первый ответ на текущий запрос, остальные отбрасываются
+    private void adopt(ClusterMessages.StockSnapshot snapshot) {
+        if (pendingSync == null || !pendingSync.equals(snapshot.requestId())) {
+            return;
+        }
+        handler.replaceStock(snapshot.stock(), snapshot.atcCodes());
+        long ownApplied = snapshot.applied().getOrDefault(nodeId, 0L);
+        if (!replayLog.isEmpty() && replayLog.peekFirst().sequence() > ownApplied + 1) {
+            log.warn("Часть собственных изменений старше журнала повтора и не попала в снимок узла {}",
+                    snapshot.nodeId());
+        }
+        for (ClusterMessages.StockChange own : replayLog) {
+            if (own.sequence() > ownApplied) {
+                handler.applyReplicatedChange(own.medicationName(), own.delta(), own.notification(), false);
+            }
+        }
+        Map<String, Long> applied = snapshot.applied();
+        applied.remove(nodeId);
+        peers.reset(applied);
+        log.info("Склад синхронизирован по снимку узла {}: препаратов {}",
+                snapshot.nodeId(), snapshot.stock().size());
+        finishSync().forEach(this::receive);
+    }
+
+    private void requestSync() {
+        if (pendingSync != null) {
+            return;
+        }
+        String requestId = UUID.randomUUID().toString();
+        pendingSync = requestId;
+        syncs.increment();
+        send(ClusterConfig.CLUSTER_EXCHANGE, "", ClusterMessages.SYNC_REQUEST,
+                new ClusterMessages.SyncRequest(nodeId, requestId, replyTo));
+        executor.schedule(() -> handler.withStockLock(() -> syncTimedOut(requestId)),
+                syncTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // Никто не ответил (первый узел кластера или остальные сами синхронизируются):
+    // отложенные изменения применяются как есть, пропуски в них больше не проверяются
+    private void syncTimedOut(String requestId) {
+        if (!requestId.equals(pendingSync)) {
+            return;
+        }
+        if (!deferred.isEmpty()) {
+            log.warn("Нет ответа на запрос снимка склада, применяются отложенные изменения: {}", deferred.size());
+        }
+        for (ClusterMessages.StockChange change : finishSync()) {
+            peers.advance(change.nodeId(), change.sequence() - 1);
+            receive(change);
+        }
+    }
+
+    private List<ClusterMessages.StockChange> finishSync() {
+        pendingSync = null;
+        List<ClusterMessages.StockChange> changes = new ArrayList<>(deferred);
+        deferred.clear();
+        return changes;
+    }
+
+    private void send(String exchange, String routingKey, String type, Object payload) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(payload);
+        } catch (IOException e) {
+            log.error("Ошибка сериализации сообщения кластера {}: {}", type, e.getMessage());
+            return;
+        }
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setHeader(ClusterMessages.TYPE_HEADER, type);
+        Message message = new Message(body, properties);
+        executor.execute(() -> {
+            try {
+                amqpTemplate.send(exchange, routingKey, message);
+            } catch (AmqpException e) {
+                // Остальные узлы заметят пропуск номера и запросят снимок
+                log.warn("Не удалось отправить сообщение кластера {}: {}", type, e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,44 @@
+package com.pharmacy.notification.cluster;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Последний применённый номер изменения каждого узла кластера.
+// Узел нумерует свои изменения с 1 подряд; номер не больше применённого — повтор,
+// номер через один и дальше — пропуск: часть изменений узла потеряна. Не потокобезопасен
+final class PeerSequences {
+
+    enum Result { NEXT, DUPLICATE, GAP }
+
+    private final Map<String, Long> applied = new HashMap<>();
+
+    Result accept(String nodeId, long sequence) {
+        long last = applied.getOrDefault(nodeId, 0L);
+        if (sequence <= last) {
+            return Result.DUPLICATE;
+        }
+        if (sequence != last + 1) {
+            return Result.GAP;
+        }
+        applied.put(nodeId, sequence);
+        return Result.NEXT;
+    }
+
+    // Принять номер без проверки пропуска
+    void advance(String nodeId, long sequence) {
+        applied.merge(nodeId, sequence, Math::max);
+    }
+
+    void reset(Map<String, Long> sequences) {
+        applied.clear();
+        applied.putAll(sequences);
+    }
+
+    Map<String, Long> snapshot() {
+        return new HashMap<>(applied);
+    }
+
+    int size() {
+        return applied.size();
+    }
+}
@@ -0,0 +1,105 @@
+package com.pharmacy.notification.events;
+
+import com.pharmacy.notification.handler.MedicationWebSocketHandler;
+import edu.rutmiit.demo.events.DrugInteractionCheckedEvent;
+import edu.rutmiit.demo.events.EventHeaders;
+import edu.rutmiit.demo.events.MedicationCreatedEvent;
+import edu.rutmiit.demo.events.RecentEventIds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+// Доменные события из RabbitMQ превращаются в уведомления клиентов WebSocket.
+// У каждого экземпляра сервиса своя временная очередь (@Queue без имени: эксклюзивная, удаляется
+// при отключении), поэтому событие получают клиенты всех экземпляров, а пока сервис не запущен,
+// события для него не копятся. Партия событий уходит в BroadcastEngine одним вызовом: поток
+// слушателя только раскладывает её по шардам и не ждёт отправки в сокеты
+@Component
+public class DomainEventBridge {
+
+    private static final Logger log = LoggerFactory.getLogger(DomainEventBridge.class);
+
+    private final MedicationWebSocketHandler handler;
+    private final RecentEventIds recentEventIds;
+
+    public DomainEventBridge(MedicationWebSocketHandler handler, RecentEventIds recentEventIds) {
+        this.handler = handler;
+        this.recentEventIds = recentEventIds;
+    }
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(name = EventBridgeConfig.MEDICATIONS_EXCHANGE, type = "topic"),
+            key = "medication.created"
+    ), containerFactory = EventBridgeConfig.BATCH_CONTAINER_FACTORY)
+    public void onMedicationsCreated(List<Message<MedicationCreatedEvent>> messages) {
+        forward(messages, DomainEventBridge::medicationCreated);
+    }
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(name = EventBridgeConfig.INTERACTIONS_EXCHANGE, type = "topic"),
+            key = "interaction.checked"
+    ), containerFactory = EventBridgeConfig.BATCH_CONTAINER_FACTORY)
+    public void onInteractionsChecked(List<Message<DrugInteractionCheckedEvent>> messages) {
+        forward(messages, DomainEventBridge::interactionChecked);
+    }
+
+    private <T> void forward(List<Message<T>> messages, Function<T, Map<String, Object>> toNotification) {
+        List<Map<String, Object>> notifications = new ArrayList<>(messages.size());
+        Set<String> batchIds = new HashSet<>();
+        for (Message<T> message : messages) {
+            String eventId = message.getHeaders().get(EventHeaders.EVENT_ID, String.class);
+            if (eventId != null && (recentEventIds.contains(eventId) || !batchIds.add(eventId))) {
+                continue;
+            }
+            notifications.add(toNotification.apply(message.getPayload()));
+        }
+        handler.broadcastAll(notifications);
+        batchIds.forEach(recentEventIds::add);
+        if (notifications.size() < messages.size()) {
+            log.debug("Пропущено повторно доставленных событий: {}", messages.size() - notifications.size());
+        }
+    }
+
+    static Map<String, Object> medicationCreated(MedicationCreatedEvent event) {
+        Map<String, Object> notification = notification("MEDICATION_CREATED");
+        notification.put("medicationId", event.medicationId());
+        notification.put("medicationName", event.medicationName());
+        notification.put("inn", event.inn());
+        notification.put("manufacturerName", event.manufacturerName());
+        notification.put("prescriptionRequired", event.prescriptionRequired());
+        return notification;
+    }
+
+    static Map<String, Object> interactionChecked(DrugInteractionCheckedEvent event) {
+        Map<String, Object> notification = notification("INTERACTION_CHECKED");
+        notification.put("medicationId", event.medicationId());
+        notification.put("medicationName", event.medicationName());
+        notification.put("riskLevel", event.riskLevel());
+        notification.put("severity", event.severity());
+        notification.put("contraindications", event.contraindications());
+        notification.put("recommendation", event.recommendation());
+        return notification;
+    }
+
+    private static Map<String, Object> notification(String type) {
+        Map<String, Object> notification = new HashMap<>();
+        notification.put("notificationType", type);
+        notification.put("timestamp", System.currentTimeMillis());
+        return notification;
+    }
+}
@@ -0,0 +1,77 @@
+package com.pharmacy.notification.events;
+
+import edu.rutmiit.demo.events.BinaryEventMessageConverter;
+import edu.rutmiit.demo.events.RecentEventIds;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class EventBridgeConfig {
+
+    // Exchange'ы, как в demo-rest
+    public static final String MEDICATIONS_EXCHANGE = "medications-exchange";
+    public static final String INTERACTIONS_EXCHANGE = "interactions-exchange";
+
+    public static final String BATCH_CONTAINER_FACTORY = "eventBridgeContainerFactory";
+
+    // === Пакетное чтение событий ===
+    // Партия отдаётся слушателю, как только набралось batchSize сообщений или receiveTimeout
+    // прошёл без новых: при редких событиях задержка — единицы миллисекунд, под нагрузкой
+    // одна партия расходится по шардам рассылки одной задачей на шард.
+    // Уведомления не хранятся, поэтому партия подтверждается сразу после постановки в очереди сессий
+    @Bean(BATCH_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory eventBridgeContainerFactory(
+            ConnectionFactory connectionFactory,
+            MessageConverter eventMessageConverter,
+            @Value("${notifications.events.batch-size:100}") int batchSize,
+            @Value("${notifications.events.receive-timeout:10ms}") Duration receiveTimeout,
+            @Value("${notifications.events.prefetch:250}") int prefetch,
+            @Value("${spring.rabbitmq.listener.simple.observation-enabled:false}") boolean observationEnabled) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(eventMessageConverter);
+        factory.setObservationEnabled(observationEnabled);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeout.toMillis());
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        return factory;
+    }
+
+    // === Отбрасывание повторных доставок ===
+    // Повтор партии отправителем не должен показываться клиентам второй раз
+    @Bean
+    public RecentEventIds recentEventIds(@Value("${events.dedup.window:2m}") Duration window,
+                                         @Value("${events.dedup.max-entries:100000}") int maxEntries,
+                                         MeterRegistry meterRegistry) {
+        RecentEventIds recentEventIds = new RecentEventIds(window, maxEntries);
+        FunctionCounter.builder("events.dedup.lookups", recentEventIds, RecentEventIds::lookups)
+                .register(meterRegistry);
+        FunctionCounter.builder("events.dedup.duplicates", recentEventIds, RecentEventIds::duplicates)
+                .register(meterRegistry);
+        Gauge.builder("events.dedup.size", recentEventIds, RecentEventIds::size)
+                .register(meterRegistry);
+        return recentEventIds;
+    }
+
+    // === Конвертер ===
+    // Входящие сообщения разбираются по content-type: двоичные события EventCodec и JSON.
+    // Сервис события не отправляет, формат отправки не важен
+    @Bean
+    public MessageConverter eventMessageConverter() {
+        return BinaryEventMessageConverter.byContentType(new Jackson2JsonMessageConverter(), "json");
+    }
+}
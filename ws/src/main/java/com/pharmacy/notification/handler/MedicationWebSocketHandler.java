@@ -2,62 +2,88 @@ package com.pharmacy.notification.handler;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pharmacy.notification.broadcast.BroadcastEngine;
+import com.pharmacy.notification.broadcast.SubscriptionIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Component
 @SuppressWarnings("unchecked")
-public class MedicationWebSocketHandler extends TextWebSocketHandler {
+public class MedicationWebSocketHandler extends TextWebSocketHandler implements DisposableBean {
 
     private static final Logger log = LoggerFactory.getLogger(MedicationWebSocketHandler.class);
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    private final Set<WebSocketSession> sessions = ConcurrentHashMap.newKeySet();
+    private final BroadcastEngine broadcastEngine;
 
     // Хранилище для учета количества препаратов
     private final Map<String, AtomicInteger> medicationStock = new ConcurrentHashMap<>();
 
+    // Коды АТХ препаратов на складе: по ним уведомления о препарате доходят до подписчиков группы АТХ
+    private final Map<String, String> medicationAtcCodes = new ConcurrentHashMap<>();
+
     // Счетчик для уникальных ID
     private final AtomicInteger medicationCounter = new AtomicInteger(1);
 
+    private final StockDeltaBatcher stockDeltas;
+
+    // Изменения склада (локальные операции, изменения других узлов кластера, снимки) идут
+    // под одной блокировкой: операции короткие, а порядок изменений совпадает с порядком их номеров
+    private final ReentrantLock stockLock = new ReentrantLock();
+    private volatile StockReplication replication = StockReplication.LOCAL_ONLY;
+
+    public MedicationWebSocketHandler(BroadcastEngine broadcastEngine,
+                                      @Value("${notifications.stock.delta-window:100ms}") Duration deltaWindow) {
+        this.broadcastEngine = broadcastEngine;
+        this.stockDeltas = new StockDeltaBatcher(deltaWindow, name -> {
+            AtomicInteger count = medicationStock.get(name);
+            return count == null ? null : count.get();
+        }, this::broadcastStockDelta);
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
-        sessions.add(session);
+        broadcastEngine.register(session);
         log.info("Новое подключение WebSocket для уведомлений о медикаментах: id={}, всего активных: {}",
-                session.getId(), sessions.size());
+                session.getId(), broadcastEngine.sessionCount());
 
         // Отправляем приветственное сообщение и текущее состояние
-        try {
-            Map<String, Object> welcomeMessage = new HashMap<>();
-            welcomeMessage.put("type", "CONNECTION_ESTABLISHED");
-            welcomeMessage.put("message", "Добро пожаловать в систему уведомлений для аптеки");
-            welcomeMessage.put("timestamp", System.currentTimeMillis());
-            welcomeMessage.put("activeConnections", sessions.size());
-            welcomeMessage.put("totalMedications", medicationStock.size());
-
-            // Отправляем информацию о текущем состоянии склада
-            if (!medicationStock.isEmpty()) {
-                Map<String, Integer> currentStock = new HashMap<>();
-                medicationStock.forEach((name, count) -> currentStock.put(name, count.get()));
-                welcomeMessage.put("currentStock", currentStock);
-            }
-
-            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(welcomeMessage)));
-        } catch (IOException e) {
-            log.error("Ошибка отправки приветственного сообщения: {}", e.getMessage());
+        Map<String, Object> welcomeMessage = new HashMap<>();
+        welcomeMessage.put("type", "CONNECTION_ESTABLISHED");
+        welcomeMessage.put("message", "Добро пожаловать в систему уведомлений для аптеки");
+        welcomeMessage.put("timestamp", System.currentTimeMillis());
+        welcomeMessage.put("activeConnections", broadcastEngine.sessionCount());
+        welcomeMessage.put("totalMedications", medicationStock.size());
+        // Номер читается до склада: дельты после него клиент применяет к currentStock
+        welcomeMessage.put("stockSequence", stockDeltas.sequence());
+
+        // Отправляем информацию о текущем состоянии склада
+        if (!medicationStock.isEmpty()) {
+            Map<String, Integer> currentStock = new HashMap<>();
+            medicationStock.forEach((name, count) -> currentStock.put(name, count.get()));
+            welcomeMessage.put("currentStock", currentStock);
         }
+
+        sendMessage(session, welcomeMessage);
     }
 
     @Override
@@ -84,9 +110,11 @@ public class MedicationWebSocketHandler extends TextWebSocketHandler {
                 if ("MEDICATION_OPERATION".equals(type)) {
                     // Обработка операций с медикаментами
                     handleMedicationOperation(session, data);
-                } else if ("GET_STOCK_INFO".equals(type)) {
-                    // Запрос информации о складе
+                } else if ("GET_STOCK_INFO".equals(type) || "RESYNC".equals(type)) {
+                    // Запрос информации о складе; RESYNC — клиент пропустил дельту и просит снимок
                     sendStockInfo(session);
+                } else if ("SUBSCRIBE".equals(type) || "UNSUBSCRIBE".equals(type)) {
+                    handleSubscription(session, type, data);
                 }
             } catch (JsonProcessingException e) {
                 log.debug("Сообщение не является JSON: {}", payload);
@@ -98,6 +126,46 @@ public class MedicationWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
+    // {"type":"SUBSCRIBE","medications":["Аспирин"],"atc":["N02"],"events":["MEDICATION_UPDATED"]}.
+    // После первой подписки сессия получает только уведомления по своим темам;
+    // UNSUBSCRIBE без тем снимает все подписки и возвращает полную рассылку
+    private void handleSubscription(WebSocketSession session, String type, Map<String, Object> data) {
+        List<String> topics = new ArrayList<>();
+        for (String name : stringList(data.get("medications"))) {
+            topics.add(SubscriptionIndex.medication(name));
+        }
+        for (String prefix : stringList(data.get("atc"))) {
+            topics.add(SubscriptionIndex.atc(prefix));
+        }
+        for (String eventType : stringList(data.get("events"))) {
+            topics.add(SubscriptionIndex.eventType(eventType));
+        }
+
+        Set<String> current = "SUBSCRIBE".equals(type)
+                ? broadcastEngine.subscribe(session, topics)
+                : broadcastEngine.unsubscribe(session, topics);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("type", "SUBSCRIPTION_UPDATED");
+        response.put("topics", current);
+        response.put("maxTopics", SubscriptionIndex.MAX_TOPICS_PER_SESSION);
+        response.put("timestamp", System.currentTimeMillis());
+        sendMessage(session, response);
+    }
+
+    private static List<String> stringList(Object value) {
+        if (!(value instanceof Collection<?> values)) {
+            return List.of();
+        }
+        List<String> strings = new ArrayList<>(values.size());
+        for (Object item : values) {
+            if (item instanceof String string && !string.isBlank()) {
+                strings.add(string);
+            }
+        }
+        return strings;
+    }
+
     private void handleMedicationOperation(WebSocketSession session, Map<String, Object> data) {
         String operation = (String) data.get("operation");
         String medicationName = (String) data.getOrDefault("name", "Неизвестный препарат");
@@ -108,29 +176,34 @@ public class MedicationWebSocketHandler extends TextWebSocketHandler {
         response.put("medicationName", medicationName);
         response.put("timestamp", System.currentTimeMillis());
 
-        switch(operation) {
-            case "ADD":
-                handleAddMedication(medicationName, response);
-                break;
-            case "REMOVE":
-                handleRemoveMedication(medicationName, response);
-                break;
-            case "UPDATE":
-                handleUpdateMedication(medicationName, response);
-                break;
-            case "GET":
-                handleGetMedication(medicationName, response);
-                break;
-            default:
-                response.put("status", "ERROR");
-                response.put("message", "Неизвестная операция: " + operation);
+        stockLock.lock();
+        try {
+            switch(operation) {
+                case "ADD":
+                    handleAddMedication(medicationName, response);
+                    break;
+                case "REMOVE":
+                    handleRemoveMedication(medicationName, response);
+                    break;
+                case "UPDATE":
+                    handleUpdateMedication(medicationName, response);
+                    break;
+                case "GET":
+                    handleGetMedication(medicationName, response);
+                    break;
+                default:
+                    response.put("status", "ERROR");
+                    response.put("message", "Неизвестная операция: " + operation);
+            }
+        } finally {
+            stockLock.unlock();
         }
 
         sendMessage(session, response);
 
-        // Отправляем обновленную информацию всем клиентам
-        if (!"ERROR".equals(response.get("status"))) {
-            broadcastStockUpdate();
+        // Изменение уйдёт всем клиентам в ближайшей дельте склада
+        if (!"ERROR".equals(response.get("status")) && !"GET".equals(operation)) {
+            stockDeltas.changed(medicationName);
         }
     }
 
@@ -140,7 +213,7 @@ public class MedicationWebSocketHandler extends TextWebSocketHandler {
 
         // Генерируем случайное количество для нового препарата (от 5 до 50)
         int randomQuantity = 5 + (int)(Math.random() * 46);
-        count.set(randomQuantity);
+        int previousCount = count.getAndSet(randomQuantity);
 
         int medicationId = medicationCounter.getAndIncrement();
 
@@ -154,6 +227,7 @@ public class MedicationWebSocketHandler extends TextWebSocketHandler {
         Map<String, Object> notification = createMedicationNotification(
                 "NEW_MEDICATION", medicationName, count.get(), medicationId);
         broadcast(notification);
+        replication.changed(medicationName, randomQuantity - previousCount, notification);
     }
 
     private void handleRemoveMedication(String medicationName, Map<String, Object> response) {
@@ -190,11 +264,13 @@ public class MedicationWebSocketHandler extends TextWebSocketHandler {
             Map<String, Object> notification = createMedicationNotification(
                     "MEDICATION_REMOVED", medicationName, 0, -1);
             broadcast(notification);
+            replication.changed(medicationName, -1, notification);
         } else {
             // Уведомление об уменьшении количества
             Map<String, Object> notification = createMedicationNotification(
                     "MEDICATION_UPDATED", medicationName, newCount, -1);
             broadcast(notification);
+            replication.changed(medicationName, -1, notification);
         }
     }
 
@@ -224,6 +300,7 @@ public class MedicationWebSocketHandler extends TextWebSocketHandler {
         Map<String, Object> notification = createMedicationNotification(
                 "MEDICATION_UPDATED", medicationName, newCount, -1);
         broadcast(notification);
+        replication.changed(medicationName, newCount - oldCount, notification);
     }
 
     private void handleGetMedication(String medicationName, Map<String, Object> response) {
@@ -252,7 +329,9 @@ public class MedicationWebSocketHandler extends TextWebSocketHandler {
                 notification.put("id", id > 0 ? "med_" + id : "med_" + System.currentTimeMillis());
                 notification.put("name", name);
                 notification.put("inn", getRandomINN());
-                notification.put("atcCode", getRandomATCCode());
+                String atcCode = getRandomATCCode();
+                medicationAtcCodes.put(name, atcCode);
+                notification.put("atcCode", atcCode);
                 notification.put("dosageForm", getRandomDosageForm());
                 notification.put("dosage", getRandomDosage());
                 notification.put("unit", "мг");
@@ -276,9 +355,14 @@ public class MedicationWebSocketHandler extends TextWebSocketHandler {
             case "MEDICATION_REMOVED":
                 notification.put("medicationName", name);
                 notification.put("message", "Препарат полностью удален со склада");
+                String removedAtcCode = medicationAtcCodes.remove(name);
+                if (removedAtcCode != null) {
+                    notification.put("atcCode", removedAtcCode);
+                }
                 break;
 
             case "STOCK_INFO":
+                notification.put("sequence", stockDeltas.sequence());
                 notification.put("totalMedications", medicationStock.size());
                 Map<String, Integer> stockDetails = new HashMap<>();
                 medicationStock.forEach((medName, count) -> stockDetails.put(medName, count.get()));
@@ -294,9 +378,14 @@ public class MedicationWebSocketHandler extends TextWebSocketHandler {
         sendMessage(session, stockInfo);
     }
 
-    private void broadcastStockUpdate() {
-        Map<String, Object> stockUpdate = createMedicationNotification("STOCK_INFO", null, 0, -1);
-        broadcast(stockUpdate);
+    private void broadcastStockDelta(StockDeltaBatcher.Delta delta) {
+        Map<String, Object> stockDelta = new HashMap<>();
+        stockDelta.put("notificationType", "STOCK_DELTA");
+        stockDelta.put("sequence", delta.sequence());
+        stockDelta.put("changes", delta.changes());
+        stockDelta.put("removed", delta.removed());
+        stockDelta.put("timestamp", System.currentTimeMillis());
+        broadcast(stockDelta);
     }
 
     // Вспомогательные методы для генерации случайных данных
@@ -331,41 +420,33 @@ public class MedicationWebSocketHandler extends TextWebSocketHandler {
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        sessions.remove(session);
+        broadcastEngine.unregister(session);
         log.info("Отключение от системы уведомлений: id={}, причина={}, осталось: {}",
-                session.getId(), status.getReason(), sessions.size());
+                session.getId(), status.getReason(), broadcastEngine.sessionCount());
     }
 
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) {
         log.error("Ошибка транспорта для сессии уведомлений {}: {}",
                 session.getId(), exception.getMessage());
-        sessions.remove(session);
+        broadcastEngine.unregister(session);
     }
 
     /**
      * Отправить сообщение конкретному клиенту
      */
     private void sendMessage(WebSocketSession session, Map<String, Object> message) {
-        if (!session.isOpen()) {
-            sessions.remove(session);
-            return;
-        }
         try {
-            String json = objectMapper.writeValueAsString(message);
-            session.sendMessage(new TextMessage(json));
+            broadcastEngine.send(session, objectMapper.writeValueAsString(message));
         } catch (JsonProcessingException e) {
             log.warn("Ошибка сериализации сообщения для сессии {}: {}",
                     session.getId(), e.getMessage());
-        } catch (IOException e) {
-            log.warn("Ошибка отправки сообщения в сессию {}: {}",
-                    session.getId(), e.getMessage());
-            sessions.remove(session);
         }
     }
 
     /**
-     * Рассылка сообщения всем подключенным клиентам
+     * Рассылка сообщения всем подключенным клиентам. Не ждёт отправки: сообщение
+     * сериализуется один раз и ставится в очереди сессий
      */
     public void broadcast(Map<String, Object> message) {
         String json;
@@ -375,37 +456,58 @@ public class MedicationWebSocketHandler extends TextWebSocketHandler {
             log.error("Ошибка сериализации сообщения для рассылки: {}", e.getMessage());
             return;
         }
+        broadcastEngine.publish(json, coalesceKey(message), topics(message));
+    }
 
-        TextMessage textMessage = new TextMessage(json);
-        int sent = 0;
-
-        for (WebSocketSession session : sessions) {
-            if (sendMessage(session, textMessage)) {
-                sent++;
+    /**
+     * Рассылка партии сообщений одним вызовом BroadcastEngine; порядок сообщений
+     * для каждого клиента сохраняется
+     */
+    public void broadcastAll(List<Map<String, Object>> messages) {
+        List<BroadcastEngine.Publication> publications = new ArrayList<>(messages.size());
+        for (Map<String, Object> message : messages) {
+            try {
+                publications.add(new BroadcastEngine.Publication(
+                        objectMapper.writeValueAsString(message), coalesceKey(message), topics(message)));
+            } catch (JsonProcessingException e) {
+                log.error("Ошибка сериализации сообщения для рассылки: {}", e.getMessage());
             }
         }
-
-        log.info("Broadcast: отправлено {}/{} клиентам", sent, sessions.size());
+        if (!publications.isEmpty()) {
+            broadcastEngine.publish(publications);
+        }
     }
 
-    /**
-     * Отправить текстовое сообщение
-     */
-    private boolean sendMessage(WebSocketSession session, TextMessage message) {
-        if (!session.isOpen()) {
-            sessions.remove(session);
-            return false;
+    // Темы сообщения: тип события, препарат и все префиксы его кода АТХ
+    private List<String> topics(Map<String, Object> message) {
+        List<String> topics = new ArrayList<>(9);
+        Object type = message.getOrDefault("notificationType", message.get("type"));
+        if (type instanceof String eventType) {
+            topics.add(SubscriptionIndex.eventType(eventType));
         }
-        try {
-            synchronized (session) {
-                session.sendMessage(message);
+        Object name = message.getOrDefault("medicationName", message.get("name"));
+        if (name instanceof String medicationName && !medicationName.isBlank()) {
+            topics.add(SubscriptionIndex.medication(medicationName));
+            Object atcCode = message.getOrDefault("atcCode", medicationAtcCodes.get(medicationName));
+            if (atcCode instanceof String code && !code.isBlank()) {
+                topics.addAll(SubscriptionIndex.atcPrefixes(code));
             }
-            return true;
-        } catch (IOException e) {
-            log.warn("Ошибка отправки в сессию {}: {}", session.getId(), e.getMessage());
-            sessions.remove(session);
-            return false;
         }
+        return topics;
+    }
+
+    // Уведомления об остатке препарата заменяют предыдущие с тем же ключом, как и результаты
+    // проверки взаимодействий препарата; остальные доставляются все.
+    // Дельты склада не заменяются: пропуск дельты клиент замечает по номеру и запрашивает снимок
+    private static String coalesceKey(Map<String, Object> message) {
+        Object type = message.get("notificationType");
+        if ("MEDICATION_UPDATED".equals(type) || "MEDICATION_REMOVED".equals(type)) {
+            return "medication:" + message.get("medicationName");
+        }
+        if ("INTERACTION_CHECKED".equals(type)) {
+            return "interaction:" + message.get("medicationName");
+        }
+        return null;
     }
 
     /**
@@ -413,8 +515,8 @@ public class MedicationWebSocketHandler extends TextWebSocketHandler {
      */
     public Map<String, Object> getConnectionStats() {
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalConnections", sessions.size());
-        stats.put("activeSessions", sessions.stream().filter(WebSocketSession::isOpen).count());
+        stats.put("totalConnections", broadcastEngine.sessionCount());
+        stats.put("activeSessions", broadcastEngine.openSessionCount());
         stats.put("totalMedications", medicationStock.size());
         stats.put("timestamp", System.currentTimeMillis());
         return stats;
@@ -426,6 +528,7 @@ public class MedicationWebSocketHandler extends TextWebSocketHandler {
     public Map<String, Object> getStockInfo() {
         Map<String, Object> stockInfo = new HashMap<>();
         stockInfo.put("type", "STOCK_INFO");
+        stockInfo.put("sequence", stockDeltas.sequence());
         stockInfo.put("totalMedications", medicationStock.size());
         stockInfo.put("timestamp", System.currentTimeMillis());
 
@@ -443,4 +546,69 @@ public class MedicationWebSocketHandler extends TextWebSocketHandler {
 
         return stockInfo;
     }
+
+    // === Кластер (см. ClusterNode) ===
+    // Методы ниже, кроме setReplication и withStockLock, вызываются внутри withStockLock
+
+    public void setReplication(StockReplication replication) {
+        this.replication = replication;
+    }
+
+    public void withStockLock(Runnable action) {
+        stockLock.lock();
+        try {
+            action.run();
+        } finally {
+            stockLock.unlock();
+        }
+    }
+
+    // Изменение склада на другом узле. Уведомление рассылается локальным клиентам, если notify;
+    // количество меняется на delta, поэтому одновременные операции разных узлов складываются
+    public void applyReplicatedChange(String medicationName, int delta, Map<String, Object> notification,
+                                      boolean notify) {
+        Object type = notification == null ? null : notification.get("notificationType");
+        if ("MEDICATION_REMOVED".equals(type)) {
+            medicationStock.remove(medicationName);
+            medicationAtcCodes.remove(medicationName);
+        } else {
+            AtomicInteger count = medicationStock.computeIfAbsent(medicationName, k -> new AtomicInteger(0));
+            if (count.addAndGet(delta) < 0) {
+                count.set(0);
+            }
+            if (notification != null && notification.get("atcCode") instanceof String atcCode) {
+                medicationAtcCodes.put(medicationName, atcCode);
+            }
+        }
+        stockDeltas.changed(medicationName);
+        if (notify && notification != null) {
+            broadcast(notification);
+        }
+    }
+
+    public Map<String, Integer> stockQuantities() {
+        Map<String, Integer> quantities = new HashMap<>();
+        medicationStock.forEach((name, count) -> quantities.put(name, count.get()));
+        return quantities;
+    }
+
+    public Map<String, String> stockAtcCodes() {
+        return new HashMap<>(medicationAtcCodes);
+    }
+
+    // Склад заменяется снимком другого узла; клиенты получат новые количества ближайшей дельтой
+    public void replaceStock(Map<String, Integer> quantities, Map<String, String> atcCodes) {
+        Set<String> changed = new HashSet<>(medicationStock.keySet());
+        changed.addAll(quantities.keySet());
+        medicationStock.clear();
+        quantities.forEach((name, quantity) -> medicationStock.put(name, new AtomicInteger(quantity)));
+        medicationAtcCodes.clear();
+        medicationAtcCodes.putAll(atcCodes);
+        changed.forEach(stockDeltas::changed);
+    }
+
+    @Override
+    public void destroy() {
+        stockDeltas.shutdown();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package com.pharmacy.notification.handler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Изменения склада рассылаются дельтами вместо полного снимка на каждую операцию.
+// Изменённые позиции копятся в течение окна и уходят одним сообщением STOCK_DELTA с номером sequence,
+// который растёт на единицу с каждой дельтой. Дельта несёт текущие (а не относительные) количества,
+// поэтому повторное применение безвредно: клиент пропускает дельты с номером не больше своего,
+// а при пропуске номера запрашивает снимок (RESYNC) и продолжает с его номера
+final class StockDeltaBatcher {
+
+    record Delta(long sequence, Map<String, Integer> changes, List<String> removed) {}
+
+    private final long windowNanos;
+    private final Function<String, Integer> quantities;
+    private final Consumer<Delta> publisher;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("ws-stock-delta").daemon().factory());
+
+    // Под монитором this
+    private final Set<String> pending = new LinkedHashSet<>();
+    private long sequence;
+
+    // quantities — текущее количество препарата или null, если его больше нет на складе
+    StockDeltaBatcher(Duration window, Function<String, Integer> quantities, Consumer<Delta> publisher) {
+        this.windowNanos = window.toNanos();
+        this.quantities = quantities;
+        this.publisher = publisher;
+    }
+
+    // Вызывается после изменения склада
+    synchronized void changed(String medicationName) {
+        if (pending.add(medicationName) && pending.size() == 1) {
+            scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Номер последней разосланной дельты. Снимок склада, прочитанный после него, не старее этой дельты
+    synchronized long sequence() {
+        return sequence;
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // Дельты собираются и рассылаются в одном потоке, поэтому уходят в порядке номеров
+    private void flush() {
+        Delta delta;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            Map<String, Integer> changes = new HashMap<>();
+            List<String> removed = new ArrayList<>();
+            for (String name : pending) {
+                Integer quantity = quantities.apply(name);
+                if (quantity == null) {
+                    removed.add(name);
+                } else {
+                    changes.put(name, quantity);
+                }
+            }
+            pending.clear();
+            delta = new Delta(++sequence, changes, removed);
+        }
+        publisher.accept(delta);
+    }
+}
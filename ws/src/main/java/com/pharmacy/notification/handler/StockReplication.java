@@ -0,0 +1,14 @@
+package com.pharmacy.notification.handler;
+
+import java.util.Map;
+
+// Получатель локальных изменений склада (см. ClusterNode). Вызывается под блокировкой склада
+// обработчика сразу после изменения, поэтому порядок вызовов совпадает с порядком изменений.
+// delta — изменение количества, notification — уведомление, уже разосланное локальным клиентам
+public interface StockReplication {
+
+    StockReplication LOCAL_ONLY = (medicationName, delta, notification) -> {
+    };
+
+    void changed(String medicationName, int delta, Map<String, Object> notification);
+}
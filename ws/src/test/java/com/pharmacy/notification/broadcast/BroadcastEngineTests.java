@@ -0,0 +1,158 @@
+package com.pharmacy.notification.broadcast;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BroadcastEngineTests {
+
+    private final CountDownLatch slowClientBlocked = new CountDownLatch(1);
+    private BroadcastEngine engine;
+
+    @AfterEach
+    void tearDown() {
+        slowClientBlocked.countDown();
+        engine.destroy();
+    }
+
+    @Test
+    void slowClientDoesNotDelayOthers() throws Exception {
+        engine = engine(OverflowPolicy.DROP_OLDEST, 64);
+        List<String> fast = new CopyOnWriteArrayList<>();
+        engine.register(session("fast", fast, false));
+        engine.register(session("slow", new CopyOnWriteArrayList<>(), true));
+
+        for (int i = 0; i < 10; i++) {
+            engine.broadcast("{\"n\":" + i + "}", null);
+        }
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> fast.size() == 10);
+        assertThat(fast).first().isEqualTo("{\"n\":0}");
+        assertThat(fast).last().isEqualTo("{\"n\":9}");
+    }
+
+    @Test
+    void coalescesStaleUpdatesOfSlowClient() throws Exception {
+        engine = engine(OverflowPolicy.COALESCE, 4);
+        List<String> received = new CopyOnWriteArrayList<>();
+        engine.register(session("slow", received, true));
+
+        engine.broadcast("first", null);
+        for (int i = 0; i < 100; i++) {
+            engine.broadcast("stock-" + i, "STOCK_INFO");
+        }
+        engine.broadcast("new-medication", null);
+        // Рассылка идёт через поток шарда: ждём, пока она дойдёт до очереди
+        Thread.sleep(200);
+        slowClientBlocked.countDown();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> received.contains("new-medication"));
+        assertThat(received).containsExactly("first", "stock-99", "new-medication");
+    }
+
+    @Test
+    void disconnectsClientThatCannotKeepUp() throws Exception {
+        engine = engine(OverflowPolicy.DISCONNECT, 4);
+        WebSocketSession slow = session("slow", new CopyOnWriteArrayList<>(), true);
+        engine.register(slow);
+
+        for (int i = 0; i < 10; i++) {
+            engine.broadcast("m" + i, null);
+        }
+
+        verify(slow, timeout(5000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> engine.sessionCount() == 0);
+    }
+
+    @Test
+    void unexpectedSendFailureDisconnectsOnlyThatSession() throws Exception {
+        engine = engine(OverflowPolicy.DROP_OLDEST, 64);
+        WebSocketSession broken = mock(WebSocketSession.class);
+        when(broken.getId()).thenReturn("broken");
+        when(broken.isOpen()).thenReturn(true);
+        doThrow(new IllegalArgumentException("boom")).when(broken).sendMessage(any());
+        List<String> healthy = new CopyOnWriteArrayList<>();
+        engine.register(broken);
+        engine.register(session("healthy", healthy, false));
+
+        engine.broadcast("first", null);
+
+        verify(broken, timeout(5000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> engine.sessionCount() == 1);
+        engine.broadcast("second", null);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> healthy.size() == 2);
+    }
+
+    @Test
+    void publishesOnlyToSubscribersAndUnfilteredSessions() throws Exception {
+        engine = engine(OverflowPolicy.DROP_OLDEST, 64);
+        List<String> aspirin = new CopyOnWriteArrayList<>();
+        List<String> analgesics = new CopyOnWriteArrayList<>();
+        List<String> everything = new CopyOnWriteArrayList<>();
+        WebSocketSession aspirinSession = session("a", aspirin, false);
+        WebSocketSession analgesicsSession = session("b", analgesics, false);
+        engine.register(aspirinSession);
+        engine.register(analgesicsSession);
+        engine.register(session("c", everything, false));
+        engine.subscribe(aspirinSession, List.of(SubscriptionIndex.medication("Аспирин")));
+        engine.subscribe(analgesicsSession, List.of(SubscriptionIndex.atc("n02")));
+
+        engine.publish("aspirin", null, topics("АСПИРИН", "B01AC06"));
+        engine.publish("paracetamol", null, topics("Парацетамол", "N02BE01"));
+        engine.publish("metformin", null, topics("Метформин", "A10BA02"));
+
+        await().atMost(5, TimeUnit.SECONDS)
+                .until(() -> everything.size() == 3 && !aspirin.isEmpty() && !analgesics.isEmpty());
+        assertThat(aspirin).containsExactly("aspirin");
+        assertThat(analgesics).containsExactly("paracetamol");
+
+        // Отписка от всего возвращает полную рассылку
+        engine.unsubscribe(aspirinSession, List.of());
+        engine.publish("metformin", null, topics("Метформин", "A10BA02"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> aspirin.size() == 2);
+    }
+
+    private static List<String> topics(String medication, String atcCode) {
+        List<String> topics = new ArrayList<>(SubscriptionIndex.atcPrefixes(atcCode));
+        topics.add(SubscriptionIndex.medication(medication));
+        return topics;
+    }
+
+    private static BroadcastEngine engine(OverflowPolicy policy, int queueCapacity) {
+        return new BroadcastEngine(new SimpleMeterRegistry(), 2, queueCapacity, policy, 512000, 10000);
+    }
+
+    // slow — отправка первого сообщения висит, пока тест не отпустит клиента
+    private WebSocketSession session(String id, List<String> received, boolean slow) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            if (slow) {
+                slowClientBlocked.await();
+            }
+            received.add(invocation.<TextMessage>getArgument(0).getPayload());
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+}
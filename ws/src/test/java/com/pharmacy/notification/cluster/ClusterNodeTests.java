@@ -0,0 +1,146 @@
+package com.pharmacy.notification.cluster;
+
+import com.pharmacy.notification.broadcast.BroadcastEngine;
+import com.pharmacy.notification.broadcast.OverflowPolicy;
+import com.pharmacy.notification.handler.MedicationWebSocketHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.Queue;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClusterNodeTests {
+
+    // Брокер в памяти: fanout доставляет всем узлам, default exchange — в очередь по имени
+    private final Map<String, ClusterNode> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger dropStockChanges = new AtomicInteger();
+    private final List<Runnable> cleanup = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        cleanup.forEach(Runnable::run);
+    }
+
+    @Test
+    void joiningNodeAdoptsSnapshotAndNodesShareChanges() throws Exception {
+        Node first = node();
+        first.operation("ADD", "Аспирин");
+        first.operation("ADD", "Ибупрофен");
+        // Первому узлу никто не ответит: ждём конца его синхронизации, иначе он не отдаст снимок
+        await().atMost(5, TimeUnit.SECONDS).until(() -> !first.node.synchronizing());
+
+        Node second = node();
+        await().atMost(5, TimeUnit.SECONDS)
+                .until(() -> second.handler.stockQuantities().equals(first.handler.stockQuantities()));
+
+        List<String> received = new CopyOnWriteArrayList<>();
+        first.connect(received);
+        second.operation("REMOVE", "Аспирин");
+        second.operation("ADD", "Метформин");
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> first.handler.stockQuantities().containsKey("Метформин"));
+        assertThat(first.handler.stockQuantities()).isEqualTo(second.handler.stockQuantities());
+        await().atMost(5, TimeUnit.SECONDS)
+                .until(() -> received.stream().anyMatch(message -> message.contains("NEW_MEDICATION")));
+    }
+
+    @Test
+    void lostChangeTriggersResync() throws Exception {
+        Node first = node();
+        Node second = node();
+        first.operation("ADD", "Аспирин");
+        await().atMost(5, TimeUnit.SECONDS).until(() -> second.handler.stockQuantities().containsKey("Аспирин"));
+
+        dropStockChanges.set(1);
+        first.operation("ADD", "Ибупрофен");
+        first.operation("ADD", "Метформин");
+
+        await().atMost(5, TimeUnit.SECONDS)
+                .until(() -> second.handler.stockQuantities().equals(first.handler.stockQuantities()));
+        assertThat(second.handler.stockQuantities()).containsOnlyKeys("Аспирин", "Ибупрофен", "Метформин");
+    }
+
+    private Node node() throws Exception {
+        BroadcastEngine engine =
+                new BroadcastEngine(new SimpleMeterRegistry(), 1, 64, OverflowPolicy.COALESCE, 512000, 10000);
+        MedicationWebSocketHandler handler = new MedicationWebSocketHandler(engine, Duration.ofMillis(20));
+        Queue queue = new AnonymousQueue();
+        ClusterNode node = new ClusterNode(handler, broker(), queue, new SimpleMeterRegistry(),
+                Duration.ofMillis(200));
+        queues.put(queue.getName(), node);
+        node.afterSingletonsInstantiated();
+        cleanup.add(() -> {
+            node.destroy();
+            handler.destroy();
+            engine.destroy();
+        });
+        WebSocketSession operator = session("operator-" + queue.getName(), new CopyOnWriteArrayList<>());
+        return new Node(node, handler, engine, operator);
+    }
+
+    private AmqpTemplate broker() {
+        AmqpTemplate template = mock(AmqpTemplate.class);
+        doAnswer(invocation -> {
+            String exchange = invocation.getArgument(0);
+            Message message = invocation.getArgument(2);
+            if (exchange.isEmpty()) {
+                queues.get(invocation.<String>getArgument(1)).onMessage(message);
+                return null;
+            }
+            String type = message.getMessageProperties().getHeader(ClusterMessages.TYPE_HEADER);
+            if (ClusterMessages.STOCK_CHANGE.equals(type)
+                    && dropStockChanges.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                return null;
+            }
+            queues.values().forEach(node -> node.onMessage(message));
+            return null;
+        }).when(template).send(anyString(), anyString(), any(Message.class));
+        return template;
+    }
+
+    private static WebSocketSession session(String id, List<String> received) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            received.add(invocation.<TextMessage>getArgument(0).getPayload());
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+
+    private record Node(ClusterNode node, MedicationWebSocketHandler handler, BroadcastEngine engine,
+                        WebSocketSession operator) {
+
+        void operation(String operation, String name) throws Exception {
+            handler.handleMessage(operator, new TextMessage(
+                    "{\"type\":\"MEDICATION_OPERATION\",\"operation\":\"" + operation
+                            + "\",\"name\":\"" + name + "\"}"));
+        }
+
+        void connect(List<String> received) throws Exception {
+            engine.register(session("client-" + System.nanoTime(), received));
+        }
+    }
+}
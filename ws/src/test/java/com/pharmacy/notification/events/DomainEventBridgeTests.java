@@ -0,0 +1,102 @@
+package com.pharmacy.notification.events;
+
+import com.pharmacy.notification.broadcast.BroadcastEngine;
+import com.pharmacy.notification.broadcast.OverflowPolicy;
+import com.pharmacy.notification.broadcast.SubscriptionIndex;
+import com.pharmacy.notification.handler.MedicationWebSocketHandler;
+import edu.rutmiit.demo.events.DrugInteractionCheckedEvent;
+import edu.rutmiit.demo.events.EventHeaders;
+import edu.rutmiit.demo.events.MedicationCreatedEvent;
+import edu.rutmiit.demo.events.RecentEventIds;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DomainEventBridgeTests {
+
+    private final BroadcastEngine engine =
+            new BroadcastEngine(new SimpleMeterRegistry(), 2, 64, OverflowPolicy.COALESCE, 512000, 10000);
+    private final MedicationWebSocketHandler handler = new MedicationWebSocketHandler(engine, Duration.ofMillis(100));
+    private final DomainEventBridge bridge =
+            new DomainEventBridge(handler, new RecentEventIds(Duration.ofMinutes(1), 1000));
+
+    @AfterEach
+    void tearDown() {
+        handler.destroy();
+        engine.destroy();
+    }
+
+    @Test
+    void forwardsBatchInOrderAndSkipsRedeliveredEvents() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        engine.register(session("all", received));
+
+        bridge.onMedicationsCreated(List.of(
+                created("e1", "Аспирин"),
+                created("e2", "Парацетамол"),
+                created("e1", "Аспирин")));
+        bridge.onMedicationsCreated(List.of(created("e2", "Парацетамол"), created("e3", "Метформин")));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> received.size() == 3);
+        assertThat(received.get(0)).contains("\"MEDICATION_CREATED\"", "Аспирин");
+        assertThat(received.get(1)).contains("Парацетамол");
+        assertThat(received.get(2)).contains("Метформин");
+    }
+
+    @Test
+    void interactionChecksReachMedicationSubscribers() throws Exception {
+        List<String> aspirin = new CopyOnWriteArrayList<>();
+        List<String> stockOnly = new CopyOnWriteArrayList<>();
+        WebSocketSession aspirinSession = session("a", aspirin);
+        WebSocketSession stockSession = session("b", stockOnly);
+        engine.register(aspirinSession);
+        engine.register(stockSession);
+        engine.subscribe(aspirinSession, List.of(SubscriptionIndex.medication("Аспирин")));
+        engine.subscribe(stockSession, List.of(SubscriptionIndex.eventType("STOCK_DELTA")));
+
+        bridge.onInteractionsChecked(List.of(
+                MessageBuilder.withPayload(new DrugInteractionCheckedEvent(1L, "Аспирин", 8, "HIGH",
+                        List.of("Варфарин"), "Избегать совместного приёма")).build(),
+                MessageBuilder.withPayload(new DrugInteractionCheckedEvent(2L, "Метформин", 2, "LOW",
+                        List.of(), "Совместим")).build()));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> !aspirin.isEmpty());
+        // Поток шарда раскладывает партию целиком, так что лишнее сообщение пришло бы вместе с первым
+        Thread.sleep(100);
+        assertThat(aspirin).singleElement().asString().contains("\"INTERACTION_CHECKED\"", "Варфарин");
+        assertThat(stockOnly).isEmpty();
+    }
+
+    private static Message<MedicationCreatedEvent> created(String eventId, String name) {
+        return MessageBuilder.withPayload(new MedicationCreatedEvent(1L, name, name, "Фармстандарт", false))
+                .setHeader(EventHeaders.EVENT_ID, eventId)
+                .build();
+    }
+
+    private static WebSocketSession session(String id, List<String> received) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            received.add(invocation.<TextMessage>getArgument(0).getPayload());
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+}
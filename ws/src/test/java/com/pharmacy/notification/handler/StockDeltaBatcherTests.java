@@ -0,0 +1,51 @@
+package com.pharmacy.notification.handler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class StockDeltaBatcherTests {
+
+    private final Map<String, Integer> stock = new ConcurrentHashMap<>();
+    private final List<StockDeltaBatcher.Delta> deltas = new CopyOnWriteArrayList<>();
+    private final StockDeltaBatcher batcher =
+            new StockDeltaBatcher(Duration.ofMillis(100), stock::get, deltas::add);
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+    }
+
+    @Test
+    void burstOfChangesBecomesOneNumberedDelta() {
+        stock.put("Аспирин", 10);
+        batcher.changed("Аспирин");
+        stock.put("Ибупрофен", 7);
+        batcher.changed("Ибупрофен");
+        stock.put("Аспирин", 9);
+        batcher.changed("Аспирин");
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> deltas.size() == 1);
+        assertThat(deltas.getFirst().sequence()).isEqualTo(1);
+        assertThat(deltas.getFirst().changes()).containsExactlyInAnyOrderEntriesOf(
+                Map.of("Аспирин", 9, "Ибупрофен", 7));
+        assertThat(batcher.sequence()).isEqualTo(1);
+
+        stock.remove("Ибупрофен");
+        batcher.changed("Ибупрофен");
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> deltas.size() == 2);
+        assertThat(deltas.get(1).sequence()).isEqualTo(2);
+        assertThat(deltas.get(1).changes()).isEmpty();
+        assertThat(deltas.get(1).removed()).containsExactly("Ибупрофен");
+    }
+}